@@ -0,0 +1,2 @@
+#!/bin/bash
+(cd .. && mvn clean install) && mvn clean package
@@ -0,0 +1,5 @@
+#!/bin/bash
+# Runs the JMH benchmarks with the GC profiler and stores the results as JSON in results/,
+# e.g. ./run.sh JabejaBenchmark -p partitions=2,4,8
+mkdir -p results
+java -jar target/benchmarks.jar -prof gc -rf json -rff results/jmh-$(date +%Y%m%d-%H%M%S).json "$@"
@@ -0,0 +1,137 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kth.jabeja.anneal.AnnealingSchedule;
+import se.kth.jabeja.anneal.ExponentialSchedule;
+import se.kth.jabeja.anneal.LinearSchedule;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.cost.PowerCost;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.io.CLI;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The acceptance test of a swap candidate, one call per operation. The costs are those of
+ * the uniform samples of a graph that was partitioned for a few rounds, so the share of
+ * worse candidates is realistic. inlineExp is the test the enhanced mode did before the
+ * schedules, exponential the same decisions through {@link ExponentialSchedule}, for
+ * temperatures from the start to the end of a run with the default -alpha_enh and -iter_enh.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnnealingBenchmark {
+  private static final int WARM_ROUNDS = 20;
+  private static final int MAX_PAIRS = 1 << 16;
+
+  @Param({"3elt.graph", "4elt.graph", "add20.graph"})
+  public String graph;
+
+  @Param({"1.0", "0.35", "0.1"})
+  public float temperature;
+
+  private File outputDir;
+  private RandNoGenerator rand;
+  private double[] oldCosts;
+  private double[] newCosts;
+  private AnnealingSchedule linear;
+  private AnnealingSchedule exponential;
+  private int pair;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    Logger.getRootLogger().setLevel(org.apache.log4j.Level.WARN);
+    outputDir = new File(System.getProperty("java.io.tmpdir"), "jabeja-bench-" + System.nanoTime());
+    String graphDir = System.getProperty("jabeja.graphs", "../graphs");
+    Config config = new CLI().parseArgs(new String[]{
+            "-graph", graphDir + File.separator + graph,
+            "-graphCache", "BYPASS",
+            "-outputDir", outputDir.getPath()});
+    rand = new RandNoGenerator(config.getSeed());
+    CsrGraph csr = new GraphReader(rand).readGraph(config.getGraphFilePath(),
+            config.getGraphInitialColorPolicy(), config.getNumPartitions());
+    Jabeja jabeja = new Jabeja(csr, config, rand);
+    for (int i = 0; i < WARM_ROUNDS; i++) {
+      jabeja.runRound();
+    }
+
+    PowerCost cost = new PowerCost(config.getAlpha(), csr.getMaxDegree());
+    CandidateSample sample = jabeja.newCandidateSample();
+    oldCosts = new double[MAX_PAIRS];
+    newCosts = new double[MAX_PAIRS];
+    int pairs = 0;
+    for (int p = 0; pairs < MAX_PAIRS; p = p + 1 == csr.size() ? 0 : p + 1) {
+      jabeja.getSample(p, rand, sample);
+      int pColor = csr.getColor(p);
+      for (int i = 0; i < sample.size() && pairs < MAX_PAIRS; i++) {
+        int q = sample.candidates()[i];
+        int qColor = csr.getColor(q);
+        oldCosts[pairs] = cost.pairValue(jabeja.getDegree(p, pColor), jabeja.getDegree(q, qColor));
+        newCosts[pairs] = cost.pairValue(jabeja.getDegree(p, qColor), jabeja.getDegree(q, pColor));
+        pairs++;
+      }
+    }
+    jabeja.close();
+    linear = new LinearSchedule(config.getTemperature(), config.getDelta());
+    exponential = new ExponentialSchedule(temperature, config.getMinTempEnh(), config.getAlphaEnh(),
+            config.getIterEnh());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    File[] files = outputDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    outputDir.delete();
+  }
+
+  @Benchmark
+  public boolean inlineExp() {
+    int i = nextPair();
+    double ap = Math.exp((newCosts[i] - oldCosts[i]) / temperature);
+    return ap > rand.nextDouble(1);
+  }
+
+  @Benchmark
+  public boolean exponential() {
+    int i = nextPair();
+    return exponential.accept(oldCosts[i], newCosts[i], rand);
+  }
+
+  @Benchmark
+  public boolean linear() {
+    int i = nextPair();
+    return linear.accept(oldCosts[i], newCosts[i], rand);
+  }
+
+  //-------------------------------------------------------------------
+
+  private int nextPair() {
+    pair = (pair + 1) & (MAX_PAIRS - 1);
+    return pair;
+  }
+}
@@ -0,0 +1,180 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.graph.Reordering;
+import se.kth.jabeja.io.CLI;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hot paths of a JaBeJa round in isolation: one call per operation, on the nodes of the
+ * graph in index order. The graph is read from the directory given by the system property
+ * jabeja.graphs, ../graphs by default, and partitioned for a few rounds first, so the
+ * colors look like those in the middle of a run.
+ * <p>
+ * Graph size, number of partitions, sample sizes, node order and batch size are parameters,
+ * e.g. -p graph=ws-250.graph,ws-25000.graph -p partitions=2,4,8 -p uniform=6,12, or
+ * -p order=NONE,BFS,RCM,DEGREE -p batchSize=0,1024 for the locality of runRound.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JabejaBenchmark {
+  private static final int WARM_ROUNDS = 20;
+  private static final int CANDIDATE_SETS = 4096;
+
+  @Param({"3elt.graph", "4elt.graph", "add20.graph", "synth-0.95-1000.graph",
+          "ws-250.graph", "ws-1000.graph", "ws-5000.graph", "ws-10000.graph", "ws-25000.graph"})
+  public String graph;
+
+  @Param({"4"})
+  public int partitions;
+
+  /**
+   * -randNeighborsSampleSize
+   */
+  @Param({"3"})
+  public int neighbors;
+
+  /**
+   * -uniformRandSampleSize
+   */
+  @Param({"6"})
+  public int uniform;
+
+  /**
+   * -graphOrder
+   */
+  @Param({"NONE"})
+  public String order;
+
+  /**
+   * -batchSize
+   */
+  @Param({"0"})
+  public int batchSize;
+
+  private File outputDir;
+  private Jabeja jabeja;
+  private CsrGraph csr;
+  private RandNoGenerator rand;
+  private CandidateSample sample;
+  private int[][] candidates; // uniform samples of the first nodes, for findPartner
+  private int node;
+  private int color;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    Logger.getRootLogger().setLevel(org.apache.log4j.Level.WARN);
+    outputDir = new File(System.getProperty("java.io.tmpdir"), "jabeja-bench-" + System.nanoTime());
+    String graphDir = System.getProperty("jabeja.graphs", "../graphs");
+    Config config = new CLI().parseArgs(new String[]{
+            "-graph", graphDir + File.separator + graph,
+            "-numPartitions", Integer.toString(partitions),
+            "-randNeighborsSampleSize", Integer.toString(neighbors),
+            "-uniformRandSampleSize", Integer.toString(uniform),
+            "-graphOrder", order,
+            "-batchSize", Integer.toString(batchSize),
+            "-graphCache", "BYPASS",
+            "-outputDir", outputDir.getPath()});
+    rand = new RandNoGenerator(config.getSeed());
+    csr = new GraphReader(rand).readGraph(config.getGraphFilePath(),
+            config.getGraphInitialColorPolicy(), config.getNumPartitions());
+    csr = Reordering.reorder(csr, config.getGraphOrder());
+    jabeja = new Jabeja(csr, config, rand);
+    for (int i = 0; i < WARM_ROUNDS; i++) {
+      jabeja.runRound();
+    }
+    sample = jabeja.newCandidateSample();
+
+    candidates = new int[Math.min(CANDIDATE_SETS, csr.size())][];
+    for (int v = 0; v < candidates.length; v++) {
+      jabeja.getSample(v, rand, sample);
+      candidates[v] = Arrays.copyOf(sample.candidates(), sample.size());
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    jabeja.close();
+    File[] files = outputDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    outputDir.delete();
+  }
+
+  @Benchmark
+  public int findPartner() {
+    int v = node++ % candidates.length;
+    return jabeja.findPartner(v, candidates[v], candidates[v].length, rand);
+  }
+
+  @Benchmark
+  public int getDegree() {
+    color = color + 1 == partitions ? 0 : color + 1;
+    return jabeja.getDegree(nextNode(), color);
+  }
+
+  @Benchmark
+  public int getSample() {
+    jabeja.getSample(nextNode(), rand, sample);
+    return sample.size();
+  }
+
+  @Benchmark
+  public int getNeighbors() {
+    jabeja.getNeighbors(nextNode(), rand, sample);
+    return sample.size();
+  }
+
+  /**
+   * Logs one line and writes one row to the result files, like after every round
+   */
+  @Benchmark
+  public int report() throws IOException {
+    jabeja.report();
+    return jabeja.getEdgeCut();
+  }
+
+  /**
+   * Sample and swap for every node of the graph
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public int runRound() {
+    return jabeja.runRound();
+  }
+
+  //-------------------------------------------------------------------
+
+  private int nextNode() {
+    node = node + 1 >= csr.size() ? 0 : node + 1;
+    return node;
+  }
+}
@@ -0,0 +1,76 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kth.jabeja.config.GraphCachePolicy;
+import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GraphReader#readGraph} from the graph file (BYPASS) and from its binary cache (USE),
+ * which is written in the setup. Graphs are read from the directory given by the system
+ * property jabeja.graphs, ../graphs by default.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphReaderBenchmark {
+
+  @Param({"3elt.graph", "4elt.graph", "add20.graph", "synth-0.95-1000.graph",
+          "ws-250.graph", "ws-1000.graph", "ws-5000.graph", "ws-10000.graph", "ws-25000.graph"})
+  public String graph;
+
+  @Param({"BYPASS", "USE"})
+  public String cache;
+
+  @Param({"1"})
+  public int threads;
+
+  private String path;
+  private GraphCachePolicy cachePolicy;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Logger.getRootLogger().setLevel(org.apache.log4j.Level.WARN);
+    path = System.getProperty("jabeja.graphs", "../graphs") + File.separator + graph;
+    if (!new File(path).isFile()) {
+      throw new IllegalStateException("No graph " + path);
+    }
+    cachePolicy = GraphCachePolicy.valueOf(cache);
+    if (cachePolicy == GraphCachePolicy.USE) {
+      // writes the cache if it is missing or stale
+      read();
+    }
+  }
+
+  @Benchmark
+  public CsrGraph readGraph() {
+    return read();
+  }
+
+  //-------------------------------------------------------------------
+
+  private CsrGraph read() {
+    return new GraphReader(new RandNoGenerator(0), threads)
+            .setCachePolicy(cachePolicy)
+            .readGraph(path, GraphInitColorPolicy.ROUND_ROBIN, 4);
+  }
+}
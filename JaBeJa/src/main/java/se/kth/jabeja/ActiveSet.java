@@ -0,0 +1,138 @@
+package se.kth.jabeja;
+
+import se.kth.jabeja.graph.Graph;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Nodes that sample and swap has to visit in the next round.
+ * <p>
+ * A node is active if it is a boundary node, i.e. it has a neighbour with another
+ * color, or if its neighbourhood changed in the current round. Interior nodes whose
+ * neighbourhood did not change stay interior, so the next set only needs the active
+ * nodes of this round that are still on the boundary plus the nodes marked as changed.
+ * <p>
+ * Every fullSweepInterval rounds all nodes are visited instead, so interior nodes
+ * still get the chance of a swap with a random partner. Nodes are always visited in
+ * ascending index order. Not thread safe.
+ */
+class ActiveSet {
+  private final Graph graph;
+  private final int fullSweepInterval;
+  private final boolean[] marked;
+  private int[] current;
+  private int currentSize;
+  private int[] next;
+  private int nextSize;
+  private boolean fullSweep;
+  private int round;
+
+  /**
+   * @param fullSweepInterval visit all nodes every this many rounds, 0 only visits all nodes in the first round
+   */
+  ActiveSet(Graph graph, int fullSweepInterval) {
+    this.graph = graph;
+    this.fullSweepInterval = fullSweepInterval;
+    this.marked = new boolean[graph.size()];
+    this.current = new int[graph.size()];
+    this.next = new int[graph.size()];
+    this.fullSweep = true;
+  }
+
+  /**
+   * @return number of nodes visited in this round
+   */
+  int size() {
+    return fullSweep ? graph.size() : currentSize;
+  }
+
+  /**
+   * @return the i-th node to visit in this round
+   */
+  int get(int i) {
+    return fullSweep ? i : current[i];
+  }
+
+  /**
+   * Marks the nodes around a swapped node as changed, they are visited in the next round
+   */
+  void swapped(int v) {
+    mark(v);
+    for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+      mark(graph.neighbourAt(i));
+    }
+  }
+
+  /**
+   * Builds the set of the next round from the boundary nodes of this round and the changed nodes
+   */
+  void nextRound() {
+    for (int i = 0, size = size(); i < size; i++) {
+      int v = get(i);
+      if (isBoundary(v)) {
+        mark(v);
+      }
+    }
+    Arrays.sort(next, 0, nextSize);
+    for (int i = 0; i < nextSize; i++) {
+      marked[next[i]] = false;
+    }
+
+    int[] tmp = current;
+    current = next;
+    currentSize = nextSize;
+    next = tmp;
+    nextSize = 0;
+    round++;
+    fullSweep = fullSweepInterval > 0 && round % fullSweepInterval == 0;
+  }
+
+  void writeState(DataOutput out) throws IOException {
+    out.writeInt(round);
+    out.writeInt(currentSize);
+    for (int i = 0; i < currentSize; i++) {
+      out.writeInt(current[i]);
+    }
+  }
+
+  /**
+   * Restores the set of the next round from {@link #writeState(DataOutput)}
+   */
+  void readState(DataInput in) throws IOException {
+    round = in.readInt();
+    currentSize = in.readInt();
+    if (currentSize < 0 || currentSize > current.length) {
+      throw new IOException("Invalid active set size " + currentSize);
+    }
+    for (int i = 0; i < currentSize; i++) {
+      current[i] = in.readInt();
+      if (current[i] < 0 || current[i] >= graph.size()) {
+        throw new IOException("Invalid active node " + current[i]);
+      }
+    }
+    nextSize = 0;
+    fullSweep = round == 0 || fullSweepInterval > 0 && round % fullSweepInterval == 0;
+  }
+
+  //-------------------------------------------------------------------
+
+  private void mark(int v) {
+    if (!marked[v]) {
+      marked[v] = true;
+      next[nextSize++] = v;
+    }
+  }
+
+  private boolean isBoundary(int v) {
+    int color = graph.getColor(v);
+    for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+      if (graph.getColor(graph.neighbourAt(i)) != color) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
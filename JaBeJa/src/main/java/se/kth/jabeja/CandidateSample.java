@@ -0,0 +1,75 @@
+package se.kth.jabeja;
+
+import java.util.Arrays;
+
+/**
+ * Reusable scratch buffer for the swap candidates of one node. Every thread
+ * sampling candidates owns one instance, so sampling does not allocate.
+ * <p>
+ * Membership is checked with a per node stamp array: a node is in the sample if
+ * its stamp equals the stamp of the current sample. Starting a new sample only
+ * increments the stamp, so adding a candidate and checking it are O(1) and
+ * drawing k distinct candidates is O(k) expected.
+ */
+class CandidateSample {
+  private int[] stamps;
+  private int stamp;
+  private int[] candidates;
+  private int size;
+
+  CandidateSample(int numNodes, int capacity) {
+    this.stamps = new int[numNodes];
+    this.candidates = new int[Math.max(capacity, 1)];
+  }
+
+  /**
+   * Makes room for nodes with an index below numNodes, e.g. after nodes were added to the graph
+   */
+  void ensureNodes(int numNodes) {
+    if (numNodes > stamps.length) {
+      stamps = Arrays.copyOf(stamps, Math.max(numNodes, stamps.length * 2));
+    }
+  }
+
+  /**
+   * Starts a new, empty sample
+   */
+  void clear() {
+    size = 0;
+    if (++stamp == 0) {
+      // wrapped around, old stamps could collide
+      Arrays.fill(stamps, 0);
+      stamp = 1;
+    }
+  }
+
+  boolean contains(int node) {
+    return stamps[node] == stamp;
+  }
+
+  /**
+   * @return false if the node is already in the sample
+   */
+  boolean add(int node) {
+    if (stamps[node] == stamp) {
+      return false;
+    }
+    stamps[node] = stamp;
+    if (size == candidates.length) {
+      candidates = Arrays.copyOf(candidates, size * 2);
+    }
+    candidates[size++] = node;
+    return true;
+  }
+
+  /**
+   * @return the candidates, only the first {@link #size()} entries are valid
+   */
+  int[] candidates() {
+    return candidates;
+  }
+
+  int size() {
+    return size;
+  }
+}
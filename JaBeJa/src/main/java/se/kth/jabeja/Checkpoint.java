@@ -0,0 +1,127 @@
+package se.kth.jabeja;
+
+import java.io.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of the state of a run, written next to its result files.
+ * <p>
+ * Layout: int magic, int version, the state written by {@link State#write(DataOutput)},
+ * long CRC32 of everything before it. The file is written under a temporary name and
+ * then renamed, so a crash while writing leaves the previous checkpoint intact.
+ */
+class Checkpoint {
+  static final String EXTENSION = ".ckpt";
+  private static final int MAGIC = 0x4A424A43; // JBJC
+  private static final int VERSION = 2;
+
+  /**
+   * Something that can be saved in a checkpoint
+   */
+  interface State {
+    void write(DataOutput out) throws IOException;
+
+    void read(DataInput in) throws IOException;
+  }
+
+  private final File file;
+
+  /**
+   * @param basePath path of the result files of the run without extension
+   */
+  Checkpoint(String basePath) {
+    this.file = new File(basePath + EXTENSION);
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  void save(State state) throws IOException {
+    File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+    try {
+      FileOutputStream fileOut = new FileOutputStream(tmp);
+      try {
+        CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 16), new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        state.write(out);
+        out.flush();
+        new DataOutputStream(fileOut).writeLong(checked.getChecksum().getValue());
+        fileOut.getChannel().force(false);
+      } finally {
+        fileOut.close();
+      }
+      if (!tmp.renameTo(file)) {
+        // renameTo does not replace an existing file on every platform
+        if (!file.delete() || !tmp.renameTo(file)) {
+          throw new IOException("Unable to move " + tmp + " to " + file);
+        }
+      }
+    } finally {
+      if (tmp.exists() && !tmp.delete()) {
+        tmp.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Reads the whole checkpoint and verifies its checksum before the state reads it, so a
+   * damaged checkpoint never changes the state
+   *
+   * @return false if there is no checkpoint
+   * @throws IOException Thrown if the checkpoint is damaged or has another format
+   */
+  boolean load(State state) throws IOException {
+    if (!file.isFile()) {
+      return false;
+    }
+    long length = file.length();
+    if (length < 16) {
+      throw new IOException(file + " is truncated");
+    }
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException(file + " is too large for a checkpoint");
+    }
+    byte[] bytes = new byte[(int) length];
+    DataInputStream fileIn = new DataInputStream(new FileInputStream(file));
+    try {
+      fileIn.readFully(bytes);
+    } catch (EOFException e) {
+      throw new IOException(file + " is truncated", e);
+    } finally {
+      fileIn.close();
+    }
+
+    int body = bytes.length - 8;
+    ByteArrayInputStream stateBytes = new ByteArrayInputStream(bytes, 0, body);
+    DataInputStream in = new DataInputStream(stateBytes);
+    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+      throw new IOException(file + " is not a checkpoint of this version");
+    }
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, body);
+    long checksum = new DataInputStream(new ByteArrayInputStream(bytes, body, 8)).readLong();
+    if (checksum != crc.getValue()) {
+      throw new IOException(file + " is damaged, checksum mismatch");
+    }
+
+    try {
+      state.read(in);
+    } catch (EOFException e) {
+      throw new IOException(file + " is truncated", e);
+    }
+    if (stateBytes.available() > 0) {
+      throw new IOException(file + " has unexpected data after the state");
+    }
+    return true;
+  }
+
+  void delete() {
+    if (file.exists() && !file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+}
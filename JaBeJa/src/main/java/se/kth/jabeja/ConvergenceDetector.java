@@ -0,0 +1,88 @@
+package se.kth.jabeja;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Decides from the edge cut and the swaps of every round whether a run has converged.
+ * <p>
+ * A run has converged if the edge cut did not improve on its best value for
+ * window rounds, or if the swaps of the last window rounds, divided by the number
+ * of nodes and rounds, are below minSwapRate. Both criteria look at full windows
+ * only, so a run is never stopped in its first window rounds.
+ */
+class ConvergenceDetector {
+  private final int window;
+  private final double minSwapRate;
+  private final int numNodes;
+  private final int[] swaps; // ring buffer of the swaps of the last window rounds
+  private long windowSwaps;
+  private int rounds;
+  private int bestEdgeCut = Integer.MAX_VALUE;
+  private int roundsWithoutImprovement;
+
+  /**
+   * @param window      number of rounds the criteria look at
+   * @param minSwapRate swaps per node and round, 0 disables the swap rate criterion
+   */
+  ConvergenceDetector(int window, double minSwapRate, int numNodes) {
+    this.window = window;
+    this.minSwapRate = minSwapRate;
+    this.numNodes = Math.max(numNodes, 1);
+    this.swaps = new int[window];
+  }
+
+  /**
+   * Adds the state after one round
+   *
+   * @return why the run has converged, null if it has not
+   */
+  StopReason update(int roundSwaps, int edgeCut) {
+    int slot = rounds % window;
+    windowSwaps += roundSwaps - swaps[slot];
+    swaps[slot] = roundSwaps;
+    rounds++;
+
+    if (edgeCut < bestEdgeCut) {
+      bestEdgeCut = edgeCut;
+      roundsWithoutImprovement = 0;
+    } else {
+      roundsWithoutImprovement++;
+    }
+
+    if (roundsWithoutImprovement >= window) {
+      return StopReason.NO_IMPROVEMENT;
+    }
+    if (minSwapRate > 0 && rounds >= window
+            && windowSwaps < minSwapRate * numNodes * window) {
+      return StopReason.LOW_SWAP_RATE;
+    }
+    return null;
+  }
+
+  void writeState(DataOutput out) throws IOException {
+    out.writeInt(window);
+    out.writeInt(rounds);
+    out.writeLong(windowSwaps);
+    out.writeInt(bestEdgeCut);
+    out.writeInt(roundsWithoutImprovement);
+    for (int s : swaps) {
+      out.writeInt(s);
+    }
+  }
+
+  void readState(DataInput in) throws IOException {
+    int savedWindow = in.readInt();
+    if (savedWindow != window) {
+      throw new IOException("Checkpoint has a convergence window of " + savedWindow + " rounds, not " + window);
+    }
+    rounds = in.readInt();
+    windowSwaps = in.readLong();
+    bestEdgeCut = in.readInt();
+    roundsWithoutImprovement = in.readInt();
+    for (int i = 0; i < window; i++) {
+      swaps[i] = in.readInt();
+    }
+  }
+}
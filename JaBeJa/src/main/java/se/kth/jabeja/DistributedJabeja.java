@@ -0,0 +1,294 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.anneal.AnnealingSchedule;
+import se.kth.jabeja.anneal.AnnealingSchedules;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.CoolingSchedule;
+import se.kth.jabeja.config.GraphOrder;
+import se.kth.jabeja.config.NodeSelectionPolicy;
+import se.kth.jabeja.cost.PowerCost;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.io.PartitionFile;
+import se.kth.jabeja.io.ResultWriter;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Simulates JaBeJa on a shared-nothing cluster. The nodes are split into one contiguous
+ * range per shard, and every shard is a {@link ShardWorker} with its own copy of its nodes
+ * and its own thread, standing in for a host. Workers only communicate through
+ * {@link ShardMessage}s, which are counted with their size, so message counts, bytes and
+ * the busy time of every worker can be used to size a real deployment.
+ * <p>
+ * A round takes these supersteps, the next one starts when every worker is done:
+ * <ol>
+ * <li>Every worker samples candidates for its nodes. Local candidates are scored directly,
+ * the degrees of remote ones are queried in one batched message per shard.</li>
+ * <li>The queries are answered, the replies scored. With the HYBRID policy, nodes without
+ * a partner sample the whole graph and the query repeats.</li>
+ * <li>Partners on the same shard are swapped right away. For a remote partner, p is locked
+ * and a prepare is sent to the shard of q, which takes the color of p if q is free and
+ * still has the color p saw, and votes yes or no.</li>
+ * <li>On a yes vote, p takes the color of q. Every node swaps at most once per round, so
+ * the size of every partition stays the same.</li>
+ * <li>Workers query the colors of their ghosts, the remote neighbours of their nodes, and
+ * count edge cut and migrations.</li>
+ * </ol>
+ * Decisions are made on the colors at the start of the round, like with -syncRounds. Every
+ * worker draws from its own stream, derived from the stream of the run, the round and the
+ * shard, so a run is reproducible for a given seed and number of shards. The temperature
+ * follows the {@link AnnealingSchedule} of the config, which the driver cools down after
+ * every round from the total swaps, one number a real cluster would aggregate anyway.
+ */
+public class DistributedJabeja {
+  final static Logger logger = Logger.getLogger(DistributedJabeja.class);
+
+  private final Graph graph;
+  private final Config config;
+  private final RandNoGenerator rand;
+  private final ShardWorker[] workers;
+  private final ExecutorService[] hosts; // one thread per worker
+  private int supersteps; // per round
+  private final AnnealingSchedule schedule;
+
+  public DistributedJabeja(Graph graph, Config config, RandNoGenerator rand) {
+    if (graph.hasEdgeWeights()) {
+      throw new IllegalArgumentException("Graphs with edge weights are not supported");
+    }
+    this.graph = graph;
+    this.config = config;
+    this.rand = rand;
+    this.schedule = AnnealingSchedules.create(config);
+
+    int shards = Math.max(Math.min(config.getShards(), graph.size()), 1);
+    int[] bounds = new int[shards + 1];
+    for (int s = 0; s <= shards; s++) {
+      bounds[s] = (int) ((long) graph.size() * s / shards);
+    }
+    PowerCost cost = new PowerCost(config.getAlpha(), graph.getMaxDegree());
+    this.workers = new ShardWorker[shards];
+    this.hosts = new ExecutorService[shards];
+    for (int s = 0; s < shards; s++) {
+      workers[s] = new ShardWorker(s, bounds, graph, config, cost);
+      final String name = "jabeja-shard-" + s;
+      hosts[s] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, name);
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    for (ShardWorker worker : workers) {
+      worker.connect(workers);
+    }
+  }
+
+  /**
+   * Runs all rounds, then writes the final colors back to the graph
+   */
+  public void run() throws IOException {
+    File outputDir = new File(config.getOutputDir());
+    if (!outputDir.exists() && !outputDir.mkdirs()) {
+      throw new IOException("Unable to create the output directory");
+    }
+    logger.info("distributed run on " + workers.length + " shards");
+    List<ResultWriter> writers = ResultWriter.open(getResultBasePath(), config.getResultFormat(),
+            ResultWriter.MIGRATION_NOTE, config.getFlushInterval(), config.getAsyncResults(),
+            "Round", "Edge-Cut", "Swaps", "Migrations", "Messages", "Bytes", "Round-Millis", "Max-Worker-Millis");
+    try {
+      // fill the ghosts
+      step(ShardWorker.Action.QUERY_GHOSTS, null);
+      step(ShardWorker.Action.NONE, null);
+      step(ShardWorker.Action.COUNT, null);
+      logger.info("initial edge cut: " + getEdgeCut());
+
+      int numberOfSwaps = 0;
+      for (int round = 0; round < config.getRounds(); round++) {
+        long start = System.nanoTime();
+        runRound(rand.split(round));
+        long nanos = System.nanoTime() - start;
+
+        int swaps = 0;
+        int messages = 0;
+        long bytes = 0;
+        long maxWorkerNanos = 0;
+        for (ShardWorker worker : workers) {
+          worker.endRound();
+          swaps += worker.getSwaps();
+          messages += worker.getRoundMessages();
+          bytes += worker.getRoundBytes();
+          maxWorkerNanos = Math.max(maxWorkerNanos, worker.getRoundNanos());
+        }
+        numberOfSwaps += swaps;
+        int edgeCut = getEdgeCut();
+        int migrations = getMigrations();
+        logger.info("round: " + round +
+                ", edge cut:" + edgeCut +
+                ", swaps: " + numberOfSwaps +
+                ", migrations: " + migrations +
+                ", messages: " + messages +
+                ", bytes: " + bytes);
+        for (ResultWriter writer : writers) {
+          writer.write(round, edgeCut, numberOfSwaps, migrations, messages, bytes,
+                  String.format("%.3f", nanos / 1e6), String.format("%.3f", maxWorkerNanos / 1e6));
+        }
+
+        schedule.coolDown(round, graph.size() > 0 ? (double) swaps / graph.size() : 0);
+      }
+    } finally {
+      for (ResultWriter writer : writers) {
+        writer.close();
+      }
+      for (ExecutorService host : hosts) {
+        host.shutdownNow();
+      }
+    }
+
+    writeWorkerSummary();
+    for (ShardWorker worker : workers) {
+      for (int v = 0; v < worker.size(); v++) {
+        graph.setColor(worker.getFirstNode() + v, worker.getColorOf(v));
+      }
+    }
+    if (config.getExportPartition()) {
+      String path = getResultBasePath() + ".part." + config.getNumPartitions();
+      PartitionFile.write(graph, path);
+      logger.info("Wrote partition " + path);
+    }
+  }
+
+  public int getEdgeCut() {
+    long cutEntries = 0;
+    for (ShardWorker worker : workers) {
+      cutEntries += worker.getCutEntries();
+    }
+    return (int) (cutEntries / 2);
+  }
+
+  public int getMigrations() {
+    int migrations = 0;
+    for (ShardWorker worker : workers) {
+      migrations += worker.getMigrations();
+    }
+    return migrations;
+  }
+
+  //-------------------------------------------------------------------
+
+  private void runRound(RandNoGenerator roundRand) {
+    supersteps = 0;
+    NodeSelectionPolicy policy = config.getNodeSelectionPolicy();
+    if (policy == NodeSelectionPolicy.RANDOM) {
+      step(ShardWorker.Action.SAMPLE_RANDOM, roundRand);
+    } else {
+      step(ShardWorker.Action.SAMPLE_NEIGHBOURS, roundRand);
+      if (policy == NodeSelectionPolicy.HYBRID) {
+        step(ShardWorker.Action.NONE, null);
+        step(ShardWorker.Action.SAMPLE_RANDOM, null);
+      }
+    }
+    step(ShardWorker.Action.NONE, null);
+    step(ShardWorker.Action.PREPARE_SWAPS, null);
+    step(ShardWorker.Action.NONE, null);
+    step(ShardWorker.Action.QUERY_GHOSTS, null);
+    step(ShardWorker.Action.NONE, null);
+    step(ShardWorker.Action.COUNT, null);
+  }
+
+  /**
+   * Runs one superstep on every worker and waits until all are done
+   *
+   * @param roundRand stream of the round if this is its first superstep, otherwise null
+   */
+  private void step(final ShardWorker.Action action, final RandNoGenerator roundRand) {
+    List<Future<?>> results = new ArrayList<Future<?>>(workers.length);
+    for (int s = 0; s < workers.length; s++) {
+      final ShardWorker worker = workers[s];
+      final RandNoGenerator workerRand = roundRand != null ? roundRand.split(s) : null;
+      results.add(hosts[s].submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          if (workerRand != null) {
+            worker.startRound(workerRand, schedule);
+          }
+          worker.superstep(action);
+          return null;
+        }
+      }));
+    }
+    try {
+      for (Future<?> result : results) {
+        result.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the workers", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Worker failed", e.getCause());
+    }
+    for (ShardWorker worker : workers) {
+      worker.deliver();
+    }
+    supersteps++;
+  }
+
+  private void writeWorkerSummary() throws IOException {
+    String basePath = getResultBasePath() + "_workers";
+    List<ResultWriter> writers = ResultWriter.open(basePath, config.getResultFormat(), null,
+            config.getFlushInterval(), false,
+            "Shard", "Nodes", "Ghosts", "Local-Swaps", "Remote-Swaps", "Conflicts", "Rejected",
+            "Messages-Sent", "Bytes-Sent", "Messages-Received", "Bytes-Received",
+            "Mean-Round-Millis", "Max-Round-Millis");
+    long messages = 0;
+    long bytes = 0;
+    try {
+      for (int s = 0; s < workers.length; s++) {
+        ShardWorker w = workers[s];
+        messages += w.getMessagesSent();
+        bytes += w.getBytesSent();
+        double meanMillis = config.getRounds() > 0 ? w.getBusyNanos() / 1e6 / config.getRounds() : 0;
+        for (ResultWriter writer : writers) {
+          writer.write(s, w.size(), w.getNumGhosts(), w.getLocalSwaps(), w.getRemoteSwaps(), w.getConflicts(),
+                  w.getRejected(), w.getMessagesSent(), w.getBytesSent(), w.getMessagesReceived(),
+                  w.getBytesReceived(), String.format("%.3f", meanMillis),
+                  String.format("%.3f", w.getMaxRoundNanos() / 1e6));
+        }
+      }
+    } finally {
+      for (ResultWriter writer : writers) {
+        writer.close();
+      }
+    }
+    logger.info("shards: " + workers.length + ", supersteps per round: " + supersteps +
+            ", messages: " + messages + ", bytes: " + bytes + ", final edge cut: " + getEdgeCut());
+    logger.info("Wrote worker summary " + basePath + ".txt");
+  }
+
+  /**
+   * @return path of the result files without extension
+   */
+  private String getResultBasePath() {
+    File inputFile = new File(config.getGraphFilePath());
+    return config.getOutputDir() + File.separator + inputFile.getName() +
+            "_distributed_SH_" + workers.length +
+            "_NS_" + config.getNodeSelectionPolicy() +
+            "_T_" + config.getTemperature() +
+            "_D_" + config.getDelta() +
+            "_R_" + config.getRounds() +
+            (config.getGraphOrder() != GraphOrder.NONE ? "_O_" + config.getGraphOrder() : "") +
+            (config.getCoolingSchedule() != CoolingSchedule.AUTO ? "_S_" + config.getCoolingSchedule() : "");
+  }
+}
@@ -0,0 +1,413 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.anneal.AnnealingSchedule;
+import se.kth.jabeja.anneal.AnnealingSchedules;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.cost.CostFunction;
+import se.kth.jabeja.cost.PowerCost;
+import se.kth.jabeja.graph.DynamicGraph;
+import se.kth.jabeja.graph.GraphUpdate;
+import se.kth.jabeja.io.ResultWriter;
+import se.kth.jabeja.io.UpdateReader;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the partition of a changing graph up to date.
+ * <p>
+ * Every batch of changes is applied to the {@link DynamicGraph}, then new nodes get the
+ * color most of their neighbours have among the colors that are not full, i.e. that
+ * have fewer than size / k nodes rounded up. The nodes touched by the batch, the ends
+ * of added and removed edges, the new nodes and the neighbours of removed nodes, are
+ * the seeds of at most localRounds local rounds. A local round runs JaBeJa's sample
+ * and swap on the nodes of the frontier only, and the nodes around each swap form the
+ * frontier of the next round, so the work depends on the size of the batch and the
+ * neighbourhoods it touches, not on the size of the graph. Local rounds pick partners
+ * with the {@link PartnerSearch} of {@link Jabeja} and accept swaps with the cooling
+ * schedule of the config, held at the temperature localTemp.
+ */
+public class DynamicJabeja {
+  final static Logger logger = Logger.getLogger(DynamicJabeja.class);
+
+  private final DynamicGraph graph;
+  private final Config config;
+  private final RandNoGenerator rand;
+  private final CandidateSample sample;
+  private final PartnerSearch search;
+  private final List<Integer> touched = new ArrayList<Integer>(); // ids of the nodes touched by the batch
+  private final List<Integer> added = new ArrayList<Integer>(); // ids of the nodes added by the batch
+  private boolean[] marked = new boolean[0];
+  private int[] frontier = new int[0];
+  private int frontierSize;
+  private int[] next = new int[0];
+  private int nextSize;
+
+  public DynamicJabeja(DynamicGraph graph, Config config, RandNoGenerator rand) {
+    this.graph = graph;
+    this.config = config;
+    this.rand = rand;
+    int maxDegree = 0;
+    for (int v = 0; v < graph.size(); v++) {
+      maxDegree = Math.max(maxDegree, graph.getDegree(v));
+    }
+    CostFunction cost = new PowerCost(config.getAlpha(), maxDegree);
+    this.sample = new CandidateSample(graph.size(),
+            Math.max(config.getRandomNeighborSampleSize(), config.getUniformRandomSampleSize()));
+    this.search = new PartnerSearch(nodesOf(graph), new PartnerSearch.Degrees() {
+      public int getDegree(int node, int color) {
+        return DynamicJabeja.this.graph.getDegree(node, color);
+      }
+    }, cost, localSchedule(config), config);
+  }
+
+  public DynamicGraph getGraph() {
+    return graph;
+  }
+
+  /**
+   * Applies the changes of the batch and repartitions around them
+   */
+  public Batch apply(GraphUpdate update) {
+    long start = System.nanoTime();
+    touched.clear();
+    added.clear();
+    for (int i = 0; i < update.size(); i++) {
+      applyOperation(update.get(i));
+    }
+    ensureCapacity(graph.size());
+
+    for (int id : added) {
+      int v = graph.indexOf(id);
+      if (v != -1) {
+        graph.setColor(v, selectColor(v));
+        graph.resetInitColor(v);
+      }
+    }
+
+    frontierSize = 0;
+    for (int id : touched) {
+      int v = graph.indexOf(id);
+      if (v != -1) {
+        mark(v);
+      }
+    }
+    swapFrontier();
+
+    int rounds = 0;
+    int visited = 0;
+    int swaps = 0;
+    int seeds = frontierSize;
+    while (frontierSize > 0 && rounds < config.getLocalRounds()) {
+      Arrays.sort(frontier, 0, frontierSize);
+      for (int i = 0; i < frontierSize; i++) {
+        if (sampleAndSwap(frontier[i])) {
+          swaps++;
+        }
+      }
+      visited += frontierSize;
+      rounds++;
+      swapFrontier();
+    }
+    // nodes around the swaps of the last round stay unvisited
+    for (int i = 0; i < frontierSize; i++) {
+      marked[frontier[i]] = false;
+    }
+    frontierSize = 0;
+
+    return new Batch(update.size(), seeds, visited, rounds, swaps, graph.getEdgeCut(),
+            graph.getMigrations(), System.nanoTime() - start);
+  }
+
+  /**
+   * Applies all batches of the update file and writes a row for each of them to the
+   * result files in the output directory
+   */
+  public void replay(File updates) throws IOException {
+    File outputDir = new File(config.getOutputDir());
+    if (!outputDir.exists() && !outputDir.mkdirs()) {
+      throw new IOException("Unable to create the output directory");
+    }
+    File inputFile = new File(config.getGraphFilePath());
+    String basePath = config.getOutputDir() + File.separator + inputFile.getName() +
+            "_updates_LR_" + config.getLocalRounds() + "_LT_" + config.getLocalTemp();
+    List<ResultWriter> writers = ResultWriter.open(basePath, config.getResultFormat(),
+            ResultWriter.MIGRATION_NOTE, config.getFlushInterval(), config.getAsyncResults(),
+            "Batch", "Operations", "Nodes", "Edges", "Seeds", "Visited", "Rounds", "Swaps",
+            "Edge-Cut", "Migrations", "Micros");
+    UpdateReader reader = new UpdateReader(updates);
+    try {
+      GraphUpdate update;
+      int count = 0;
+      while ((update = reader.next()) != null) {
+        Batch batch = apply(update);
+        count++;
+        int verifyInterval = config.getVerifyInterval();
+        if (verifyInterval > 0 && count % verifyInterval == 0) {
+          verifyEdgeCut(count);
+        }
+        logger.info("batch: " + count +
+                ", operations: " + batch.operations +
+                ", seeds: " + batch.seeds +
+                ", visited: " + batch.visited +
+                ", swaps: " + batch.swaps +
+                ", edge cut: " + batch.edgeCut +
+                ", time: " + batch.nanos / 1000 + "us");
+        for (ResultWriter writer : writers) {
+          writer.write(count, batch.operations, graph.size(), graph.getNumEdges(), batch.seeds,
+                  batch.visited, batch.rounds, batch.swaps, batch.edgeCut, batch.migrations,
+                  batch.nanos / 1000);
+        }
+      }
+    } finally {
+      reader.close();
+      for (ResultWriter writer : writers) {
+        writer.close();
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------
+
+  private void applyOperation(GraphUpdate.Operation operation) {
+    int a = operation.getIdA();
+    int b = operation.getIdB();
+    switch (operation.getType()) {
+      case ADD_NODE:
+        graph.addNode(a, lightestColor());
+        added.add(a);
+        touched.add(a);
+        break;
+      case REMOVE_NODE:
+        int v = graph.indexOf(a);
+        if (v == -1) {
+          throw new IllegalArgumentException("Node " + a + " does not exist");
+        }
+        for (int i = 0; i < graph.getDegree(v); i++) {
+          touched.add(graph.getId(graph.getNeighbour(v, i)));
+        }
+        graph.removeNode(a);
+        break;
+      case ADD_EDGE:
+        graph.addEdge(a, b);
+        touched.add(a);
+        touched.add(b);
+        break;
+      case REMOVE_EDGE:
+        if (!graph.removeEdge(a, b)) {
+          throw new IllegalArgumentException("No edge between nodes " + a + " and " + b);
+        }
+        touched.add(a);
+        touched.add(b);
+        break;
+    }
+  }
+
+  private int lightestColor() {
+    int lightest = 0;
+    for (int c = 1; c < graph.getNumPartitions(); c++) {
+      if (graph.getPartitionSize(c) < graph.getPartitionSize(lightest)) {
+        lightest = c;
+      }
+    }
+    return lightest;
+  }
+
+  /**
+   * @return the color most neighbours of node v have among the colors that are not full,
+   * the smaller partition if there is a tie
+   */
+  private int selectColor(int v) {
+    int k = graph.getNumPartitions();
+    int limit = (graph.size() + k - 1) / k;
+    int best = -1;
+    int bestDegree = -1;
+    int bestSize = 0;
+    for (int c = 0; c < k; c++) {
+      int size = graph.getPartitionSize(c) - (graph.getColor(v) == c ? 1 : 0);
+      if (size >= limit) {
+        continue;
+      }
+      int degree = graph.getDegree(v, c);
+      if (degree > bestDegree || (degree == bestDegree && size < bestSize)) {
+        best = c;
+        bestDegree = degree;
+        bestSize = size;
+      }
+    }
+    return best;
+  }
+
+  private void ensureCapacity(int size) {
+    if (marked.length < size) {
+      int capacity = Math.max(size, marked.length * 2);
+      marked = Arrays.copyOf(marked, capacity);
+      frontier = Arrays.copyOf(frontier, capacity);
+      next = Arrays.copyOf(next, capacity);
+    }
+    sample.ensureNodes(size);
+  }
+
+  private void mark(int v) {
+    if (!marked[v]) {
+      marked[v] = true;
+      next[nextSize++] = v;
+    }
+  }
+
+  private void markAround(int v) {
+    mark(v);
+    for (int i = 0; i < graph.getDegree(v); i++) {
+      mark(graph.getNeighbour(v, i));
+    }
+  }
+
+  /**
+   * Makes the marked nodes the frontier of the next round
+   */
+  private void swapFrontier() {
+    for (int i = 0; i < nextSize; i++) {
+      marked[next[i]] = false;
+    }
+    int[] tmp = frontier;
+    frontier = next;
+    frontierSize = nextSize;
+    next = tmp;
+    nextSize = 0;
+  }
+
+  private boolean sampleAndSwap(int nodep) {
+    int partner = search.selectPartner(nodep, rand, sample, null);
+    int nodepColor = graph.getColor(nodep);
+    if (partner != -1 && nodepColor != graph.getColor(partner)) {
+      graph.setColor(nodep, graph.getColor(partner));
+      graph.setColor(partner, nodepColor);
+      markAround(nodep);
+      markAround(partner);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return the schedule of the config at the temperature localTemp, which is never cooled
+   */
+  private static AnnealingSchedule localSchedule(Config config) {
+    return AnnealingSchedules.create(config.copy()
+            .setTemperature(config.getLocalTemp())
+            .setTempEnh(config.getLocalTemp()));
+  }
+
+  /**
+   * @return the nodes of the dynamic graph, which can have parallel edges
+   */
+  private static PartnerSearch.Nodes nodesOf(final DynamicGraph graph) {
+    return new PartnerSearch.Nodes() {
+      public int size() {
+        return graph.size();
+      }
+
+      public int getColor(int node) {
+        return graph.getColor(node);
+      }
+
+      public int getDegree(int node) {
+        return graph.getDegree(node);
+      }
+
+      public int getNeighbour(int node, int i) {
+        return graph.getNeighbour(node, i);
+      }
+
+      public boolean hasParallelEdges() {
+        return true;
+      }
+
+      public boolean hasNodeWeights() {
+        return false;
+      }
+
+      public int getNodeWeight(int node) {
+        return 1;
+      }
+    };
+  }
+
+  private void verifyEdgeCut(int batch) {
+    int actual = graph.countEdgeCut();
+    if (actual != graph.getEdgeCut()) {
+      throw new IllegalStateException("batch: " + batch +
+              ", tracked edge cut: " + graph.getEdgeCut() + ", actual: " + actual);
+    }
+    logger.debug("batch: " + batch + ", edge cut verified");
+  }
+
+  /**
+   * What applying one batch did
+   */
+  public static class Batch {
+    private final int operations;
+    private final int seeds;
+    private final int visited;
+    private final int rounds;
+    private final int swaps;
+    private final int edgeCut;
+    private final int migrations;
+    private final long nanos;
+
+    Batch(int operations, int seeds, int visited, int rounds, int swaps, int edgeCut, int migrations,
+          long nanos) {
+      this.operations = operations;
+      this.seeds = seeds;
+      this.visited = visited;
+      this.rounds = rounds;
+      this.swaps = swaps;
+      this.edgeCut = edgeCut;
+      this.migrations = migrations;
+      this.nanos = nanos;
+    }
+
+    public int getOperations() {
+      return operations;
+    }
+
+    /**
+     * @return number of distinct nodes touched by the batch
+     */
+    public int getSeeds() {
+      return seeds;
+    }
+
+    /**
+     * @return number of sample and swap calls of all local rounds
+     */
+    public int getVisited() {
+      return visited;
+    }
+
+    public int getRounds() {
+      return rounds;
+    }
+
+    public int getSwaps() {
+      return swaps;
+    }
+
+    public int getEdgeCut() {
+      return edgeCut;
+    }
+
+    public int getMigrations() {
+      return migrations;
+    }
+
+    public long getNanos() {
+      return nanos;
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.io.ResultWriter;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs JaBeJa with the seeds seed, seed + 1, ..., seed + ensembleSize - 1 on one graph.
+ * <p>
+ * All runs share the nodes and edges of the graph, every run only gets its own color
+ * arrays and the state of its {@link Jabeja}. A run with seed s colors the nodes in the
+ * order of the graph file, also with -graphOrder, and partitions the graph exactly like a
+ * single run with -seed s. It writes its result files to
+ * the directory seed_s of the output directory. Runs are executed on a pool of
+ * ensembleThreads threads. At the end a summary of all runs, best edge cut first,
+ * is written to the output directory.
+ */
+public class Ensemble {
+  final static Logger logger = Logger.getLogger(Ensemble.class);
+
+  private final CsrGraph graph;
+  private final Config config;
+
+  public Ensemble(CsrGraph graph, Config config) {
+    this.graph = graph;
+    this.config = config;
+  }
+
+  /**
+   * @return the results of all runs, best edge cut first
+   */
+  public List<Run> run() throws IOException {
+    int size = config.getEnsembleSize();
+    int threads = Math.max(Math.min(config.getEnsembleThreads(), size), 1);
+    File outputDir = new File(config.getOutputDir());
+    if (!outputDir.exists() && !outputDir.mkdirs()) {
+      throw new IOException("Unable to create the output directory");
+    }
+    logger.info("ensemble of " + size + " runs on " + threads + " threads");
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Run> runs = new ArrayList<Run>(size);
+    try {
+      List<Future<Run>> results = new ArrayList<Future<Run>>(size);
+      for (int i = 0; i < size; i++) {
+        final int seed = config.getSeed() + i;
+        results.add(pool.submit(new Callable<Run>() {
+          @Override
+          public Run call() throws IOException {
+            return runSeed(seed);
+          }
+        }));
+      }
+      for (Future<Run> result : results) {
+        runs.add(result.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the ensemble", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IllegalStateException("Ensemble run failed", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+
+    Collections.sort(runs, new Comparator<Run>() {
+      @Override
+      public int compare(Run a, Run b) {
+        if (a.edgeCut != b.edgeCut) {
+          return a.edgeCut < b.edgeCut ? -1 : 1;
+        }
+        return a.seed < b.seed ? -1 : a.seed > b.seed ? 1 : 0;
+      }
+    });
+    writeSummary(runs);
+
+    Run best = runs.get(0);
+    logger.info("best run: seed " + best.seed + ", edge cut: " + best.edgeCut +
+            ", migrations: " + best.migrations + ", results: " + best.resultFile);
+    return runs;
+  }
+
+  //-------------------------------------------------------------------
+
+  private Run runSeed(int seed) throws IOException {
+    RandNoGenerator rand = new RandNoGenerator(seed);
+    int[] colors = new GraphReader(rand).getInitialColors(graph,
+            config.getGraphInitialColorPolicy(), config.getNumPartitions());
+    Config runConfig = config.copy()
+            .setSeed(seed)
+            .setOutputDir(config.getOutputDir() + File.separator + "seed_" + seed);
+
+    long start = System.nanoTime();
+    Jabeja jabeja = new Jabeja(graph.withColors(colors), runConfig, rand);
+    jabeja.startJabeja();
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    Run run = new Run(seed, jabeja.getRound(), jabeja.getStopReason(), jabeja.getEdgeCut(),
+            jabeja.getNumberOfSwaps(), jabeja.getMigrations(), seconds, jabeja.getResultBasePath() + ".txt");
+    logger.info("seed " + seed + " done, edge cut: " + run.edgeCut +
+            ", time: " + String.format("%.3f", seconds) + "s");
+    return run;
+  }
+
+  private void writeSummary(List<Run> runs) throws IOException {
+    File inputFile = new File(config.getGraphFilePath());
+    String basePath = config.getOutputDir() + File.separator + inputFile.getName() +
+            "_ensemble_S_" + config.getSeed() + "_N_" + config.getEnsembleSize();
+    List<ResultWriter> writers = ResultWriter.open(basePath, config.getResultFormat(),
+            ResultWriter.MIGRATION_NOTE, config.getFlushInterval(), false,
+            "Seed", "Rounds", "Stop-Reason", "Edge-Cut", "Swaps", "Migrations", "Seconds", "Result-File");
+    try {
+      for (Run run : runs) {
+        for (ResultWriter writer : writers) {
+          writer.write(run.seed, run.rounds, run.stopReason, run.edgeCut, run.swaps, run.migrations,
+                  String.format("%.3f", run.seconds), run.resultFile);
+        }
+      }
+    } finally {
+      for (ResultWriter writer : writers) {
+        writer.close();
+      }
+    }
+    logger.info("Wrote ensemble summary " + basePath + ".txt");
+  }
+
+  /**
+   * Final state of one run of the ensemble
+   */
+  public static class Run {
+    private final int seed;
+    private final int rounds;
+    private final StopReason stopReason;
+    private final int edgeCut;
+    private final int swaps;
+    private final int migrations;
+    private final double seconds;
+    private final String resultFile;
+
+    Run(int seed, int rounds, StopReason stopReason, int edgeCut, int swaps, int migrations,
+        double seconds, String resultFile) {
+      this.seed = seed;
+      this.rounds = rounds;
+      this.stopReason = stopReason;
+      this.edgeCut = edgeCut;
+      this.swaps = swaps;
+      this.migrations = migrations;
+      this.seconds = seconds;
+      this.resultFile = resultFile;
+    }
+
+    public int getSeed() {
+      return seed;
+    }
+
+    public int getRounds() {
+      return rounds;
+    }
+
+    public StopReason getStopReason() {
+      return stopReason;
+    }
+
+    public int getEdgeCut() {
+      return edgeCut;
+    }
+
+    public int getSwaps() {
+      return swaps;
+    }
+
+    public int getMigrations() {
+      return migrations;
+    }
+
+    public double getSeconds() {
+      return seconds;
+    }
+
+    public String getResultFile() {
+      return resultFile;
+    }
+  }
+}
@@ -1,11 +1,30 @@
 package se.kth.jabeja;
 
 import org.apache.log4j.Logger;
+import se.kth.jabeja.anneal.AnnealingSchedule;
+import se.kth.jabeja.anneal.AnnealingSchedules;
 import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.CoolingSchedule;
+import se.kth.jabeja.config.EngineMode;
+import se.kth.jabeja.config.GraphOrder;
 import se.kth.jabeja.config.NodeSelectionPolicy;
-import se.kth.jabeja.io.FileIO;
+import se.kth.jabeja.cost.CostFunction;
+import se.kth.jabeja.cost.PowerCost;
+import se.kth.jabeja.graph.ColorHistogram;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.NodeGraphAdapter;
+import se.kth.jabeja.io.PartitionFile;
+import se.kth.jabeja.io.ResultWriter;
+import se.kth.jabeja.metrics.JabejaMetrics;
+import se.kth.jabeja.metrics.RoundCounters;
 import se.kth.jabeja.rand.RandNoGenerator;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
@@ -13,298 +32,842 @@ import java.util.*;
 public class Jabeja {
   final static Logger logger = Logger.getLogger(Jabeja.class);
   private final Config config;
-  private final HashMap<Integer/*id*/, Node/*neighbors*/> entireGraph;
-  private final List<Integer> nodeIds;
+  private final Graph graph;
+  private final ColorHistogram histogram; // null when degrees are scanned
+  private final ParallelRoundExecutor executor; // null when running on one thread
+  private final RandNoGenerator rand;
+  private final CostFunction cost;
+  private final CandidateSample sample; // scratch buffer of the sequential rounds
+  private final ActiveSet activeSet; // null when every node is visited every round
+  private final int[] deferred; // nodes of a batch left for a uniform sample, null without batches
+  private final JabejaMetrics metrics; // null when not instrumented
+  private final RoundCounters counters; // of the sequential rounds, null when not instrumented
+  private final boolean trackCounts; // false if concurrent swaps cannot track the edge cut
   private int numberOfSwaps;
+  private int edgeCut;
+  private int migrations; // number of nodes that have changed the initial color
   private int round;
-  private float T;
-  private boolean resultFileCreated = false;
-  private boolean enhancedSA;
-  private float T_enh;
+  private int activeNodes; // nodes visited in the last round
+  private long swapNanos; // spent in sample and swap, without counting and cooling
+  private final AnnealingSchedule schedule;
+  private final PartnerSearch search;
+  private List<ResultWriter> resultWriters; // opened by the first report
+  private List<ResultWriter> metricsWriters; // null without a metrics file
   private int restartCounter;
+  private int restarts; // number of times the temperature was restarted
+  private final ConvergenceDetector convergence; // null when all rounds are run
+  private StopReason stopReason; // null while the run is not over
 
   //-------------------------------------------------------------------
-  public Jabeja(HashMap<Integer, Node> graph, Config config) {
-    this.entireGraph = graph;
-    this.nodeIds = new ArrayList(entireGraph.keySet());
+  public Jabeja(Graph graph, Config config, RandNoGenerator rand, CostFunction cost) {
+    this.graph = graph;
+    this.rand = rand;
+    this.cost = cost;
     this.round = 0;
     this.numberOfSwaps = 0;
     this.config = config;
-    this.T = config.getTemperature();
-    this.enhancedSA = config.getEnhanced();
-    this.T_enh = config.getTempEnh();
+    this.schedule = AnnealingSchedules.create(config);
     this.restartCounter = 0;
+    this.convergence = config.getConvergenceWindow() > 0
+            ? new ConvergenceDetector(config.getConvergenceWindow(), config.getMinSwapRate(), graph.size())
+            : null;
+    this.histogram = config.getEngineMode() == EngineMode.HISTOGRAM
+            ? new ColorHistogram(graph, config.getNumPartitions())
+            : null;
+    this.search = new PartnerSearch(PartnerSearch.nodesOf(graph), new PartnerSearch.Degrees() {
+      public int getDegree(int node, int color) {
+        return Jabeja.this.getDegree(node, color);
+      }
+    }, cost, schedule, config);
+    this.metrics = config.getMetrics() ? new JabejaMetrics() : null;
+    this.executor = config.getThreads() > 1
+            ? new ParallelRoundExecutor(this, config.getThreads(), config.getSyncRounds())
+            : null;
+    this.sample = executor == null ? newCandidateSample() : null;
+    this.counters = metrics != null && executor == null ? new RoundCounters() : null;
+    this.trackCounts = executor == null || config.getSyncRounds() || histogram != null;
+    if (config.getActiveSet() && executor != null) {
+      logger.warn("The active set is only used by single threaded rounds, visiting all nodes");
+    }
+    this.activeSet = config.getActiveSet() && executor == null
+            ? new ActiveSet(graph, config.getFullSweepInterval())
+            : null;
+    if (config.getBatchSize() > 0 && (executor != null || activeSet != null)) {
+      logger.warn("Batches are only used by single threaded rounds over all nodes, ignoring -batchSize");
+    }
+    this.deferred = config.getBatchSize() > 0 && executor == null && activeSet == null
+            ? new int[Math.min(config.getBatchSize(), graph.size())]
+            : null;
+    recount();
+    if (metrics != null) {
+      metrics.register(getResultBasePath());
+    }
+  }
+
+  /**
+   * Uses the energy function of the paper with the alpha of the config
+   */
+  public Jabeja(Graph graph, Config config, RandNoGenerator rand) {
+    this(graph, config, rand, new PowerCost(config.getAlpha(), maxWeightedDegree(graph)));
+  }
+
+  /**
+   * @return the largest sum of the edge weights of any node, its degree if there are none
+   */
+  private static int maxWeightedDegree(Graph graph) {
+    if (!graph.hasEdgeWeights()) {
+      return graph.getMaxDegree();
+    }
+    int max = 0;
+    for (int v = 0; v < graph.size(); v++) {
+      int degree = 0;
+      for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+        degree += graph.edgeWeightAt(i);
+      }
+      max = Math.max(max, degree);
+    }
+    return max;
+  }
+
+  public Jabeja(Graph graph, Config config) {
+    this(graph, config, new RandNoGenerator(config.getSeed()));
+  }
+
+  /**
+   * Runs on the object model. The node colors are not updated,
+   * use {@link #getGraph()} to read the result.
+   */
+  public Jabeja(HashMap<Integer, Node> graph, Config config) {
+    this(NodeGraphAdapter.fromNodes(graph), config);
+  }
+
+  public Graph getGraph() {
+    return graph;
+  }
+
+  ColorHistogram getHistogram() {
+    return histogram;
+  }
+
+  CandidateSample newCandidateSample() {
+    return new CandidateSample(graph.size(),
+            Math.max(config.getRandomNeighborSampleSize(), config.getUniformRandomSampleSize()));
   }
 
+  RandNoGenerator getRand() {
+    return rand;
+  }
+
+  /**
+   * @return the metrics of the run, null when not instrumented
+   */
+  public JabejaMetrics getMetrics() {
+    return metrics;
+  }
+
+  public int getEdgeCut() {
+    return edgeCut;
+  }
+
+  public int getMigrations() {
+    return migrations;
+  }
+
+  public int getNumberOfSwaps() {
+    return numberOfSwaps;
+  }
+
+  /**
+   * @return number of nodes visited by sample and swap in the last round
+   */
+  public int getActiveNodes() {
+    return activeSet != null ? activeNodes : graph.size();
+  }
 
   //-------------------------------------------------------------------
   public void startJabeja() throws IOException {
-    for (round = 0; round < config.getRounds(); round++) {
-      for (int id : entireGraph.keySet()) {
-        sampleAndSwap(id);
+    try {
+      if (config.getResume()) {
+        resume();
       }
+      runRounds(config.getRounds());
+    } finally {
+      close();
+    }
+  }
 
-      //one cycle for all nodes have completed.
-      //reduce the temperature
-      if (enhancedSA) {
-        saCoolDownEnhanced();
-      } else {
-        saCoolDown();
-      }
+  /**
+   * Runs and reports the next rounds, never more than the rounds of the config in total.
+   * The run ends early if it has converged, see {@link #getStopReason()}.
+   *
+   * @param count number of rounds to run
+   * @return true if there are rounds left
+   */
+  public boolean runRounds(int count) throws IOException {
+    if (stopReason != null) {
+      return false;
+    }
+    int end = (int) Math.min((long) round + count, config.getRounds());
+    while (round < end) {
+      int swaps = runRound();
+      report();
+      round++;
 
-      //restart if necessary
-      if (config.getRestart() == true) {
-        restartCheck();
+      StopReason reason = checkConvergence(swaps);
+      if (reason != null) {
+        logger.info("stopped after " + round + " rounds, reason: " + reason);
+        finish(reason);
+        return false;
+      }
+      int exportInterval = config.getExportInterval();
+      if (config.getExportPartition() && exportInterval > 0 && round % exportInterval == 0
+              && round < config.getRounds()) {
+        exportPartition(getResultBasePath() + "_round_" + round);
+      }
+      int checkpointInterval = config.getCheckpointInterval();
+      if (checkpointInterval > 0 && round % checkpointInterval == 0 && round < config.getRounds()) {
+        saveCheckpoint();
       }
+    }
+    if (round >= config.getRounds()) {
+      finish(StopReason.ROUNDS);
+      return false;
+    }
+    return true;
+  }
 
-      report();
+  private void finish(StopReason reason) throws IOException {
+    stopReason = reason;
+    if (config.getExportPartition()) {
+      exportPartition(getResultBasePath());
+    }
+    if (config.getCheckpointInterval() > 0) {
+      // the run is complete, nothing left to resume
+      new Checkpoint(getResultBasePath()).delete();
     }
   }
 
   /**
-   * Simulated annealing cooling function
+   * Writes the current colors to basePath.part.k
    */
-  private void saCoolDown(){
-    if (T > 1)
-      T -= config.getDelta();
-    if (T < 1)
-      T = 1;
+  private void exportPartition(String basePath) throws IOException {
+    String path = basePath + ".part." + config.getNumPartitions();
+    PartitionFile.write(graph, path);
+    logger.info("round: " + round + ", wrote partition " + path);
   }
 
   /**
-   * An enhanced version of method `saCoolDown`
+   * Continues the run from its checkpoint in the output directory, if there is one.
+   * Result file rows written after the checkpoint are dropped, so the result files end
+   * up the same as those of a run that was never interrupted.
+   *
+   * @return true if a checkpoint was loaded
    */
-  private void saCoolDownEnhanced(){
-    float tMin = config.getMinTempEnh();
-    float alpha = config.getAlphaEnh();
-    int iter = config.getIterEnh();
+  public boolean resume() throws IOException {
+    Checkpoint checkpoint = new Checkpoint(getResultBasePath());
+    if (!checkpoint.load(checkpointState())) {
+      logger.warn("No checkpoint " + checkpoint.getFile() + ", starting from round 0");
+      return false;
+    }
+    if (trackCounts) {
+      verifyCounts();
+    } else {
+      recount();
+    }
+    closeResultWriters();
+    openResultWriters(true);
+    logger.info("Resumed from " + checkpoint.getFile() + " after round " + round);
+    return true;
+  }
 
-    if (T_enh >= tMin && round % iter == iter - 1) {
-      T_enh *= alpha;
+  /**
+   * Writes the state after the current round to the checkpoint file
+   */
+  private void saveCheckpoint() throws IOException {
+    if (resultWriters != null) {
+      for (ResultWriter writer : resultWriters) {
+        writer.flush();
+      }
+    }
+    if (metricsWriters != null) {
+      for (ResultWriter writer : metricsWriters) {
+        writer.flush();
+      }
+    }
+    Checkpoint checkpoint = new Checkpoint(getResultBasePath());
+    checkpoint.save(checkpointState());
+    logger.debug("round: " + round + ", wrote checkpoint " + checkpoint.getFile());
+  }
+
+  private Checkpoint.State checkpointState() {
+    return new Checkpoint.State() {
+      @Override
+      public void write(DataOutput out) throws IOException {
+        writeState(out);
+      }
 
-      if (T_enh < tMin) {
-        T_enh = 0.0f;
+      @Override
+      public void read(DataInput in) throws IOException {
+        readState(in);
       }
+    };
+  }
+
+  private void writeState(DataOutput out) throws IOException {
+    out.writeInt(graph.size());
+    out.writeInt(config.getNumPartitions());
+    out.writeLong(rand.getSeed());
+    out.writeInt(round);
+    out.writeInt(numberOfSwaps);
+    out.writeInt(edgeCut);
+    out.writeInt(migrations);
+    out.writeUTF(AnnealingSchedules.resolve(config).toString());
+    schedule.writeState(out);
+    out.writeInt(restartCounter);
+    out.writeInt(restarts);
+    out.writeLong(rand.getState());
+    out.writeLong(executor != null ? executor.getRounds() : 0);
+    for (int v = 0; v < graph.size(); v++) {
+      out.writeInt(graph.getColor(v));
+    }
+    for (int v = 0; v < graph.size(); v++) {
+      out.writeInt(graph.getInitColor(v));
+    }
+    out.writeBoolean(activeSet != null);
+    if (activeSet != null) {
+      activeSet.writeState(out);
+    }
+    out.writeBoolean(convergence != null);
+    if (convergence != null) {
+      convergence.writeState(out);
     }
   }
 
   /**
-   * Restart SA if it is required
+   * Reads and checks the whole checkpoint before anything is applied, so a checkpoint that
+   * does not fit the run leaves it untouched. The schedule, active set and convergence
+   * detector are first restored into new instances, whose state is then copied.
    */
-  public void restartCheck(){
-    if (enhancedSA) {
-      if (T_enh == 0) {
-        restartCounter ++;
-      }
-      if (restartCounter == config.getRestartInterval()) {
-        T_enh = config.getTempEnh();
-        restartCounter = 0;
-      }
+  private void readState(DataInput in) throws IOException {
+    int size = in.readInt();
+    int partitions = in.readInt();
+    long seed = in.readLong();
+    if (size != graph.size() || partitions != config.getNumPartitions() || seed != rand.getSeed()) {
+      throw new IOException("Checkpoint of another run: " + size + " nodes, " + partitions +
+              " partitions, seed " + seed);
     }
-    else {
-      if (T == 1) {
-        restartCounter ++;
+    int savedRound = in.readInt();
+    int savedSwaps = in.readInt();
+    int savedEdgeCut = in.readInt();
+    int savedMigrations = in.readInt();
+    String scheduleName = in.readUTF();
+    if (!scheduleName.equals(AnnealingSchedules.resolve(config).toString())) {
+      throw new IOException("Checkpoint has the cooling schedule " + scheduleName + ", not " +
+              AnnealingSchedules.resolve(config));
+    }
+    AnnealingSchedule savedSchedule = AnnealingSchedules.create(config);
+    savedSchedule.readState(in);
+    int savedRestartCounter = in.readInt();
+    int savedRestarts = in.readInt();
+    long randState = in.readLong();
+    long executorRounds = in.readLong();
+    int[] colors = new int[size];
+    for (int v = 0; v < size; v++) {
+      colors[v] = in.readInt();
+      if (colors[v] < 0 || colors[v] >= partitions) {
+        throw new IOException("Invalid color " + colors[v] + " of node " + graph.getId(v));
       }
-      if (restartCounter == config.getRestartInterval()) {
-        T = config.getTemperature();
-        restartCounter = 0;
+    }
+    for (int v = 0; v < size; v++) {
+      if (in.readInt() != graph.getInitColor(v)) {
+        throw new IOException("Checkpoint has other initial colors, node " + graph.getId(v));
       }
     }
+    if (in.readBoolean() != (activeSet != null)) {
+      throw new IOException("Checkpoint and config disagree on the active set");
+    }
+    ActiveSet savedActiveSet = null;
+    if (activeSet != null) {
+      savedActiveSet = new ActiveSet(graph, config.getFullSweepInterval());
+      savedActiveSet.readState(in);
+    }
+    if (in.readBoolean() != (convergence != null)) {
+      throw new IOException("Checkpoint and config disagree on convergence detection");
+    }
+    ConvergenceDetector savedConvergence = null;
+    if (convergence != null) {
+      savedConvergence = new ConvergenceDetector(config.getConvergenceWindow(), config.getMinSwapRate(),
+              graph.size());
+      savedConvergence.readState(in);
+    }
 
+    ByteArrayOutputStream states = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(states);
+    savedSchedule.writeState(out);
+    if (savedActiveSet != null) {
+      savedActiveSet.writeState(out);
+    }
+    if (savedConvergence != null) {
+      savedConvergence.writeState(out);
+    }
+    out.flush();
+    DataInputStream checked = new DataInputStream(new ByteArrayInputStream(states.toByteArray()));
+    schedule.readState(checked);
+    if (activeSet != null) {
+      activeSet.readState(checked);
+    }
+    if (convergence != null) {
+      convergence.readState(checked);
+    }
+    round = savedRound;
+    numberOfSwaps = savedSwaps;
+    edgeCut = savedEdgeCut;
+    migrations = savedMigrations;
+    restartCounter = savedRestartCounter;
+    restarts = savedRestarts;
+    rand.setState(randState);
+    if (executor != null) {
+      executor.setRounds(executorRounds);
+    }
+    for (int v = 0; v < size; v++) {
+      graph.setColor(v, colors[v]);
+    }
+    if (histogram != null) {
+      histogram.rebuild();
+    }
+  }
 
+  /**
+   * @return why the run ended, null if it is not over yet
+   */
+  public StopReason getStopReason() {
+    return stopReason;
   }
 
   /**
-   * Sample and swap algorithm at node p
-   * @param nodeId
+   * @return number of rounds run by {@link #runRounds(int)}
    */
-  private void sampleAndSwap(int nodeId) {
-    Node partner = null;
-    Node nodep = entireGraph.get(nodeId);
+  public int getRound() {
+    return round;
+  }
 
-    if (config.getNodeSelectionPolicy() == NodeSelectionPolicy.HYBRID
-            || config.getNodeSelectionPolicy() == NodeSelectionPolicy.LOCAL) {
-      // swap with random neighbors
-      partner = findPartner(nodeId, getNeighbors(nodep));
+  /**
+   * Stops the worker threads and closes the result files
+   */
+  public void close() throws IOException {
+    shutdown();
+    closeResultWriters();
+    if (metrics != null) {
+      metrics.unregister();
     }
+  }
 
-    if (config.getNodeSelectionPolicy() == NodeSelectionPolicy.HYBRID
-            || config.getNodeSelectionPolicy() == NodeSelectionPolicy.RANDOM) {
-      // if local policy fails then randomly sample the entire graph
-      if (partner == null) {
-        partner = findPartner(nodeId, getSample(nodeId));
+  /**
+   * Runs sample and swap once for every node, or for the nodes of the active set,
+   * then cools down
+   * and restarts the temperature if needed.
+   *
+   * @return number of swaps done in this round
+   */
+  public int runRound() {
+    long start = System.nanoTime();
+    int swaps;
+    if (executor != null) {
+      swaps = executor.runRound();
+    } else if (activeSet != null) {
+      swaps = 0;
+      activeNodes = activeSet.size();
+      for (int i = 0; i < activeNodes; i++) {
+        if (sampleAndSwap(activeSet.get(i), rand)) {
+          swaps++;
+        }
+      }
+      activeSet.nextRound();
+    } else if (deferred != null) {
+      swaps = runBatches();
+    } else {
+      swaps = 0;
+      for (int v = 0; v < graph.size(); v++) {
+        if (sampleAndSwap(v, rand)) {
+          swaps++;
+        }
       }
     }
+    swapNanos += System.nanoTime() - start;
+    numberOfSwaps += swaps;
+    if (!trackCounts) {
+      recount();
+    }
+
+    //one cycle for all nodes have completed.
+    //reduce the temperature
+    int visited = getActiveNodes();
+    schedule.coolDown(round, visited > 0 ? (double) swaps / visited : 0);
+
+    //restart if necessary
+    if (config.getRestart() == true) {
+      restartCheck();
+    }
+
+    if (metrics != null) {
+      metrics.endRound(round, edgeCut, System.nanoTime() - start,
+              executor != null ? executor.getCounters() : new RoundCounters[]{counters});
+    }
+    return swaps;
+  }
 
-    // swap the colors
-    if (partner != null && nodep.getColor() != partner.getColor()) {
-      int nodepColor = nodep.getColor();
-      nodep.setColor(partner.getColor());
-      partner.setColor(nodepColor);
-      numberOfSwaps++;
+  /**
+   * @return why the run has converged after the current round, null if it has not
+   */
+  private StopReason checkConvergence(int swaps) {
+    if (config.getStopAtTempFloor() && isAtTemperatureFloor() && !hasRestartsLeft()) {
+      return StopReason.TEMPERATURE_FLOOR;
+    }
+    if (convergence != null) {
+      return convergence.update(swaps, edgeCut);
     }
+    return null;
   }
 
-  public Node findPartner(int nodeId, Integer[] nodes){
-    Node nodep = entireGraph.get(nodeId);
+  private boolean isAtTemperatureFloor() {
+    return schedule.isAtFloor();
+  }
 
-    Node bestPartner = null;
-    double highestBenefit = 0;
+  private boolean hasRestartsLeft() {
+    return config.getRestart() && (config.getMaxRestarts() <= 0 || restarts < config.getMaxRestarts());
+  }
 
-    for (int q : nodes) {
-      Node nodeq = entireGraph.get(q);
-      int d_pp = getDegree(nodep, nodep.getColor());
-      int d_qq = getDegree(nodeq, nodeq.getColor());
-      double old = Math.pow(d_pp, config.getAlpha()) + Math.pow(d_qq, config.getAlpha());
-      int d_pq = getDegree(nodep, nodeq.getColor());
-      int d_qp = getDegree(nodeq, nodep.getColor());
-      double new_ = Math.pow(d_pq, config.getAlpha()) + Math.pow(d_qp, config.getAlpha());
+  /**
+   * Stops the worker threads, if any
+   */
+  /**
+   * @return time spent in sample and swap by all rounds so far, without recounts,
+   * cooling and reports
+   */
+  long getSwapNanos() {
+    return swapNanos;
+  }
 
-      if (getAcceptance(old, new_) && new_ > highestBenefit) {
-        bestPartner = nodeq;
-        highestBenefit = new_;
-      }
+  public void shutdown() {
+    if (executor != null) {
+      executor.shutdown();
     }
+  }
 
-    return bestPartner;
+  /**
+   * Restart SA if it is required
+   */
+  public void restartCheck(){
+    if (schedule.isAtFloor()) {
+      restartCounter ++;
+    }
+    if (restartCounter == config.getRestartInterval() && hasRestartsLeft()) {
+      schedule.restart();
+      restartCounter = 0;
+      restarts++;
+    }
+  }
+
+  /**
+   * Sample and swap algorithm at node p
+   * @param nodep index of the node
+   * @param rand random stream of the calling thread
+   * @return true if the colors were swapped
+   */
+  private boolean sampleAndSwap(int nodep, RandNoGenerator rand) {
+    return swapWith(nodep, selectPartner(nodep, rand, sample, counters));
   }
 
-  public boolean getAcceptance (double oldCost, double newCost){
-      if(enhancedSA) {
-          double ap = Math.exp((newCost - oldCost) / T_enh);
-          return ap > RandNoGenerator.nextDouble(1);
+  /**
+   * Visits the nodes in batches of consecutive indices. All nodes of a batch first look
+   * for a partner among their neighbours, which are mostly in the batch as well if the
+   * nodes were renumbered, so the colors they read stay in cache. Then the nodes without
+   * a partner try a uniform sample, as the node selection policy prescribes.
+   *
+   * @return number of swaps
+   */
+  private int runBatches() {
+    NodeSelectionPolicy policy = config.getNodeSelectionPolicy();
+    boolean local = policy == NodeSelectionPolicy.HYBRID || policy == NodeSelectionPolicy.LOCAL;
+    boolean uniform = policy == NodeSelectionPolicy.HYBRID || policy == NodeSelectionPolicy.RANDOM;
+    int swaps = 0;
+    for (int first = 0; first < graph.size(); first += deferred.length) {
+      int last = Math.min(first + deferred.length, graph.size());
+      int count = 0;
+      for (int v = first; v < last; v++) {
+        int partner = local ? search.selectLocalPartner(v, rand, sample, counters) : -1;
+        if (partner != -1) {
+          if (swapWith(v, partner)) {
+            swaps++;
+          }
+        } else if (uniform) {
+          deferred[count++] = v;
+        }
       }
-      else {
-          return newCost * T > oldCost;
+      for (int i = 0; i < count; i++) {
+        if (swapWith(deferred[i], search.selectUniformPartner(deferred[i], rand, sample, counters))) {
+          swaps++;
+        }
       }
+    }
+    return swaps;
   }
 
   /**
-   * The the degree of the node based on color
-   * @param node
-   * @param colorId
-   * @return how many neighbors of the node have color == colorId
+   * Swaps the colors of p and its partner, if it has one with another color
+   *
+   * @return true if the colors were swapped
    */
-  private int getDegree(Node node, int colorId){
-    int degree = 0;
-    for(int neighborId : node.getNeighbours()){
-      Node neighbor = entireGraph.get(neighborId);
-      if(neighbor.getColor() == colorId){
-        degree++;
+  private boolean swapWith(int nodep, int partner) {
+    if (partner != -1 && graph.getColor(nodep) != graph.getColor(partner)) {
+      long start = counters != null ? System.nanoTime() : 0;
+      swapColors(nodep, partner);
+      if (activeSet != null) {
+        activeSet.swapped(nodep);
+        activeSet.swapped(partner);
       }
+      if (counters != null) {
+        counters.swapped(System.nanoTime() - start);
+      }
+      return true;
     }
-    return degree;
+    return false;
   }
 
   /**
-   * Returns a uniformly random sample of the graph
-   * @param currentNodeId
-   * @return Returns a uniformly random sample of the graph
+   * Exchanges the colors of two nodes and updates edge cut and migrations.
+   * The nodes are recolored one after the other, each step changes the edge cut by
+   * (neighbours with the old color) - (neighbours with the new color), which also
+   * accounts for an edge between p and q. Self loops are never cut, but
+   * they are counted as neighbours with the old color. Nodes of the same color are left
+   * as they are. Not thread safe.
    */
-  private Integer[] getSample(int currentNodeId) {
-    int count = config.getUniformRandomSampleSize();
-    int rndId;
-    int size = entireGraph.size();
-    ArrayList<Integer> rndIds = new ArrayList<Integer>();
+  void swapColors(int nodep, int nodeq) {
+    int nodepColor = graph.getColor(nodep);
+    int nodeqColor = graph.getColor(nodeq);
+    if (nodepColor == nodeqColor) {
+      return;
+    }
 
-    while (true) {
-      rndId = nodeIds.get(RandNoGenerator.nextInt(size));
-      if (rndId != currentNodeId && !rndIds.contains(rndId)) {
-        rndIds.add(rndId);
-        count--;
-      }
+    edgeCut += getDegree(nodep, nodepColor) - getDegree(nodep, nodeqColor);
+    if (graph.hasSelfLoops()) {
+      edgeCut -= graph.getSelfLoops(nodep) + graph.getSelfLoops(nodeq);
+    }
+    graph.setColor(nodep, nodeqColor);
+    if (histogram != null) {
+      histogram.recolor(nodep, nodepColor, nodeqColor);
+    }
 
-      if (count == 0)
-        break;
+    edgeCut += getDegree(nodeq, nodeqColor) - getDegree(nodeq, nodepColor);
+    graph.setColor(nodeq, nodepColor);
+    if (histogram != null) {
+      histogram.recolor(nodeq, nodeqColor, nodepColor);
     }
 
-    Integer[] ids = new Integer[rndIds.size()];
-    return rndIds.toArray(ids);
+    migrations += migrationDelta(nodep, nodepColor, nodeqColor)
+            + migrationDelta(nodeq, nodeqColor, nodepColor);
   }
 
   /**
-   * Get random neighbors. The number of random neighbors is controlled using
-   * -closeByNeighbors command line argument which can be obtained from the config
-   * using {@link Config#getRandomNeighborSampleSize()}
-   * @param node
-   * @return
+   * Adds the changes of the swaps of a parallel round
    */
-  private Integer[] getNeighbors(Node node) {
-    ArrayList<Integer> list = node.getNeighbours();
-    int count = config.getRandomNeighborSampleSize();
-    int rndId;
-    int index;
-    int size = list.size();
-    ArrayList<Integer> rndIds = new ArrayList<Integer>();
+  void addCounts(int edgeCutDelta, int migrationDelta) {
+    edgeCut += edgeCutDelta;
+    migrations += migrationDelta;
+  }
 
-    if (size <= count)
-      rndIds.addAll(list);
-    else {
-      while (true) {
-        index = RandNoGenerator.nextInt(size);
-        rndId = list.get(index);
-        if (!rndIds.contains(rndId)) {
-          rndIds.add(rndId);
-          count--;
-        }
+  int migrationDelta(int node, int oldColor, int newColor) {
+    int initColor = graph.getInitColor(node);
+    return (newColor != initColor ? 1 : 0) - (oldColor != initColor ? 1 : 0);
+  }
 
-        if (count == 0)
-          break;
-      }
-    }
+  /**
+   * Picks the swap partner of node p according to the node selection policy
+   * @param nodep index of the node
+   * @param rand random stream of the calling thread
+   * @param sample scratch buffer of the calling thread
+   * @param counters counters of the calling thread, null when not instrumented
+   * @return index of the partner, -1 if none
+   */
+  int selectPartner(int nodep, RandNoGenerator rand, CandidateSample sample, RoundCounters counters) {
+    return search.selectPartner(nodep, rand, sample, counters);
+  }
+
+  /**
+   * @param nodes candidates, only the first count entries are used
+   * @return index of the best partner for nodep among the candidates, -1 if none
+   */
+  public int findPartner(int nodep, int[] nodes, int count, RandNoGenerator rand){
+    return search.findPartner(nodep, nodes, count, rand, null);
+  }
 
-    Integer[] arr = new Integer[rndIds.size()];
-    return rndIds.toArray(arr);
+  public boolean getAcceptance (double oldCost, double newCost, RandNoGenerator rand){
+    return schedule.accept(oldCost, newCost, rand);
   }
 
+  public AnnealingSchedule getSchedule() {
+    return schedule;
+  }
+
+  /**
+   * The the degree of the node based on color
+   * @param node index of the node
+   * @param colorId
+   * @return how many neighbors of the node have color == colorId
+   */
+  int getDegree(int node, int colorId){
+    if (histogram != null) {
+      int degree = histogram.getDegree(node, colorId);
+      if (degree < 0) {
+        throw new IllegalStateException("Negative degree " + degree + " of node " + graph.getId(node) +
+                " for color " + colorId);
+      }
+      return degree;
+    }
+    int degree = 0;
+    for (int i = graph.neighbourStart(node), end = graph.neighbourEnd(node); i < end; i++) {
+      if (graph.getColor(graph.neighbourAt(i)) == colorId) {
+        degree += graph.edgeWeightAt(i);
+      }
+    }
+    return degree;
+  }
 
   /**
    * Generate a report which is stored in a file in the output dir.
    *
    * @throws IOException
    */
-  private void report() throws IOException {
+  void report() throws IOException {
+    int verifyInterval = config.getVerifyInterval();
+    if (verifyInterval > 0 && round % verifyInterval == 0) {
+      verifyCounts();
+    }
+
+    if (activeSet != null) {
+      logger.info("round: " + round +
+              ", edge cut:" + edgeCut +
+              ", swaps: " + numberOfSwaps +
+              ", migrations: " + migrations +
+              ", active nodes: " + activeNodes);
+    } else {
+      logger.info("round: " + round +
+              ", edge cut:" + edgeCut +
+              ", swaps: " + numberOfSwaps +
+              ", migrations: " + migrations);
+    }
+
+    saveToFile(edgeCut, migrations);
+
+    if (metricsWriters != null && round % config.getMetricsInterval() == 0) {
+      Object[] row = metrics.intervalRow();
+      for (ResultWriter writer : metricsWriters) {
+        writer.write(row);
+      }
+    }
+  }
+
+  /**
+   * Counts edge cut and migrations from scratch
+   */
+  private void recount() {
+    int[] counts = countEdgeCutAndMigrations();
+    edgeCut = counts[0];
+    migrations = counts[1];
+  }
+
+  /**
+   * Compares the tracked edge cut and migrations with a full recount
+   */
+  private void verifyCounts() {
+    int[] counts = countEdgeCutAndMigrations();
+    if (counts[0] != edgeCut || counts[1] != migrations) {
+      throw new IllegalStateException("round: " + round +
+              ", tracked edge cut: " + edgeCut + ", actual: " + counts[0] +
+              ", tracked migrations: " + migrations + ", actual: " + counts[1]);
+    }
+    logger.debug("round: " + round + ", edge cut and migrations verified");
+  }
+
+  /**
+   * @return {edge cut, migrations}
+   */
+  private int[] countEdgeCutAndMigrations() {
     int grayLinks = 0;
-    int migrations = 0; // number of nodes that have changed the initial color
-    int size = entireGraph.size();
+    int migrations = 0;
 
-    for (int i : entireGraph.keySet()) {
-      Node node = entireGraph.get(i);
-      int nodeColor = node.getColor();
-      ArrayList<Integer> nodeNeighbours = node.getNeighbours();
+    for (int v = 0; v < graph.size(); v++) {
+      int nodeColor = graph.getColor(v);
 
-      if (nodeColor != node.getInitColor()) {
+      if (nodeColor != graph.getInitColor(v)) {
         migrations++;
       }
 
-      if (nodeNeighbours != null) {
-        for (int n : nodeNeighbours) {
-          Node p = entireGraph.get(n);
-          int pColor = p.getColor();
-
-          if (nodeColor != pColor)
-            grayLinks++;
-        }
+      for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+        if (nodeColor != graph.getColor(graph.neighbourAt(i)))
+          grayLinks += graph.edgeWeightAt(i);
       }
     }
 
-    int edgeCut = grayLinks / 2;
+    return new int[]{grayLinks / 2, migrations};
+  }
 
-    logger.info("round: " + round +
-            ", edge cut:" + edgeCut +
-            ", swaps: " + numberOfSwaps +
-            ", migrations: " + migrations);
+  private void saveToFile(int edgeCuts, int migrations) throws IOException {
+    if (resultWriters == null) {
+      openResultWriters(false);
+    }
 
-    saveToFile(edgeCut, migrations);
+    for (ResultWriter writer : resultWriters) {
+      if (activeSet != null) {
+        writer.write(round, edgeCuts, numberOfSwaps, migrations, activeNodes);
+      } else {
+        writer.write(round, edgeCuts, numberOfSwaps, migrations);
+      }
+    }
   }
 
-  private void saveToFile(int edgeCuts, int migrations) throws IOException {
-    String delimiter = "\t\t";
-    String outputFilePath;
+  /**
+   * @param reopen continue the result files of a resumed run after its current round
+   */
+  private void openResultWriters(boolean reopen) throws IOException {
+    File outputDir = new File(config.getOutputDir());
+    if (!outputDir.exists()) {
+      if (!outputDir.mkdirs()) {
+        throw new IOException("Unable to create the output directory");
+      }
+    }
+    String[] columns = activeSet != null
+            ? new String[]{"Round", "Edge-Cut", "Swaps", "Migrations", "Active-Nodes"}
+            : new String[]{"Round", "Edge-Cut", "Swaps", "Migrations"};
+    if (reopen) {
+      resultWriters = ResultWriter.reopen(getResultBasePath(), config.getResultFormat(),
+              ResultWriter.MIGRATION_NOTE, config.getFlushInterval(), config.getAsyncResults(), round, columns);
+    } else {
+      resultWriters = ResultWriter.open(getResultBasePath(), config.getResultFormat(),
+              ResultWriter.MIGRATION_NOTE, config.getFlushInterval(), config.getAsyncResults(), columns);
+    }
+
+    int metricsInterval = config.getMetricsInterval();
+    if (metrics != null && metricsInterval > 0) {
+      String metricsPath = getResultBasePath() + "_metrics";
+      if (reopen) {
+        // a row was written in every round divisible by the interval
+        int rows = (round + metricsInterval - 1) / metricsInterval;
+        metricsWriters = ResultWriter.reopen(metricsPath, config.getResultFormat(), null,
+                config.getFlushInterval(), config.getAsyncResults(), rows, JabejaMetrics.COLUMNS);
+      } else {
+        metricsWriters = ResultWriter.open(metricsPath, config.getResultFormat(), null,
+                config.getFlushInterval(), config.getAsyncResults(), JabejaMetrics.COLUMNS);
+      }
+    }
+  }
 
-    //output file name
+  /**
+   * @return path of the result files without extension
+   */
+  String getResultBasePath() {
     File inputFile = new File(config.getGraphFilePath());
-    outputFilePath = config.getOutputDir() +
+    return config.getOutputDir() +
             File.separator +
             inputFile.getName() + "_" +
             "NS" + "_" + config.getNodeSelectionPolicy() + "_" +
@@ -314,22 +877,26 @@ public class Jabeja {
             "RNSS" + "_" + config.getRandomNeighborSampleSize() + "_" +
             "URSS" + "_" + config.getUniformRandomSampleSize() + "_" +
             "A" + "_" + config.getAlpha() + "_" +
-            "R" + "_" + config.getRounds() + ".txt";
+            "R" + "_" + config.getRounds() +
+            (config.getEngineMode() != EngineMode.SCAN ? "_E_" + config.getEngineMode() : "") +
+            (activeSet != null ? "_AS_" + config.getFullSweepInterval() : "") +
+            (config.getGraphOrder() != GraphOrder.NONE ? "_O_" + config.getGraphOrder() : "") +
+            (deferred != null ? "_B_" + deferred.length : "") +
+            (config.getCoolingSchedule() != CoolingSchedule.AUTO ? "_S_" + config.getCoolingSchedule() : "");
+  }
 
-    if (!resultFileCreated) {
-      File outputDir = new File(config.getOutputDir());
-      if (!outputDir.exists()) {
-        if (!outputDir.mkdir()) {
-          throw new IOException("Unable to create the output directory");
-        }
+  private void closeResultWriters() throws IOException {
+    if (resultWriters != null) {
+      for (ResultWriter writer : resultWriters) {
+        writer.close();
       }
-      // create folder and result file with header
-      String header = "# Migration is number of nodes that have changed color.";
-      header += "\n\nRound" + delimiter + "Edge-Cut" + delimiter + "Swaps" + delimiter + "Migrations" + delimiter + "Skipped" + "\n";
-      FileIO.write(header, outputFilePath);
-      resultFileCreated = true;
+      resultWriters = null;
+    }
+    if (metricsWriters != null) {
+      for (ResultWriter writer : metricsWriters) {
+        writer.close();
+      }
+      metricsWriters = null;
     }
-
-    FileIO.append(round + delimiter + (edgeCuts) + delimiter + numberOfSwaps + delimiter + migrations + "\n", outputFilePath);
   }
 }
@@ -1,14 +1,21 @@
 package se.kth.jabeja;
 
 import org.apache.log4j.Logger;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.graph.DynamicGraph;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.Reordering;
 import se.kth.jabeja.io.CLI;
 import se.kth.jabeja.io.GraphReader;
 import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.GraphOrder;
+import se.kth.jabeja.config.GraphStorage;
+import se.kth.jabeja.config.ParameterGrid;
 import se.kth.jabeja.rand.RandNoGenerator;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashMap;
 
 
 public class Main {
@@ -19,7 +26,12 @@ public class Main {
      */
     private Config config;
 
-    HashMap<Integer, Node> graph;
+    /**
+     * Root random stream of the run.
+     */
+    private RandNoGenerator rand;
+
+    Graph graph;
 
     public static void main(String[] args) throws IOException {
         new Main().startApp(args);
@@ -29,12 +41,13 @@ public class Main {
         config = (new CLI()).parseArgs(args);
 
         //set seed for the application
-        //Note for the results to be deterministic use
-        //only one random generator.
-        RandNoGenerator.setSeed(config.getSeed());
+        //Note for the results to be deterministic the graph reader
+        //and the algorithm share this stream, worker threads derive
+        //their own streams from it.
+        rand = new RandNoGenerator(config.getSeed());
 
         //read the input graph
-        HashMap<Integer, Node> graph = readGraph();
+        Graph graph = readGraph();
 
         //start JaBeJa
         startJabeja(graph);
@@ -45,9 +58,31 @@ public class Main {
      *
      * @return
      */
-    private HashMap<Integer, Node> readGraph() {
-        GraphReader graphReader = new GraphReader();
-        graph = graphReader.readGraph(config.getGraphFilePath(), config.getGraphInitialColorPolicy(), config.getNumPartitions());
+    private Graph readGraph() {
+        GraphReader graphReader = new GraphReader(rand, config.getThreads())
+                .setCachePolicy(config.getGraphCachePolicy())
+                .setFormat(config.getGraphFormat())
+                .setEdgeBufferSize(config.getEdgeBufferSize());
+        GraphStorage storage = config.getGraphStorage();
+        if (storage != GraphStorage.HEAP && (config.getMultilevel() || config.getSweepFile() != null
+                || config.getEnsembleSize() > 1)) {
+            // these modes copy the graph per run or level, which only the heap graph supports
+            logger.warn("Graph storage " + storage + " is only supported for single runs, using " + GraphStorage.HEAP);
+            storage = GraphStorage.HEAP;
+        }
+        graph = graphReader.readGraph(config.getGraphFilePath(), config.getGraphInitialColorPolicy(),
+                config.getNumPartitions(), storage);
+        if (config.getGraphOrder() != GraphOrder.NONE) {
+            if (graph instanceof CsrGraph) {
+                long start = System.currentTimeMillis();
+                graph = Reordering.reorder((CsrGraph) graph, config.getGraphOrder());
+                logger.info("Renumbered the nodes in " + config.getGraphOrder() + " order in " +
+                        (System.currentTimeMillis() - start) + " ms");
+            } else {
+                logger.warn("Graph order " + config.getGraphOrder() + " is only supported with graph storage " +
+                        GraphStorage.HEAP + ", keeping the order of the file");
+            }
+        }
         return graph;
     }
 
@@ -57,8 +92,28 @@ public class Main {
      * @param graph
      * @return
      */
-    private void startJabeja(HashMap<Integer, Node> graph) throws IOException {
-        Jabeja host = new Jabeja(graph, config);
+    private void startJabeja(Graph graph) throws IOException {
+        if (config.getMultilevel()) {
+            new Multilevel((CsrGraph) graph, config).run();
+            return;
+        }
+        if (config.getSweepFile() != null) {
+            new Sweep((CsrGraph) graph, config, ParameterGrid.parse(new File(config.getSweepFile()))).run();
+            return;
+        }
+        if (config.getEnsembleSize() > 1) {
+            new Ensemble((CsrGraph) graph, config).run();
+            return;
+        }
+        if (config.getShards() > 0) {
+            new DistributedJabeja(graph, config, rand).run();
+            return;
+        }
+        Jabeja host = new Jabeja(graph, config, rand);
         host.startJabeja();
+        if (config.getUpdatesFile() != null) {
+            DynamicGraph dynamic = DynamicGraph.fromCsr(host.getGraph(), config.getNumPartitions());
+            new DynamicJabeja(dynamic, config, rand.split(-1)).replay(new File(config.getUpdatesFile()));
+        }
     }
 }
@@ -0,0 +1,193 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.Coarsener;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.io.ResultWriter;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multilevel JaBeJa.
+ * <p>
+ * The graph is coarsened by {@link Coarsener} until it has at most coarsenTo nodes,
+ * at most maxLevels times, or until matching stops shrinking it. JaBeJa runs for the
+ * configured rounds on the coarsest graph, whose nodes start with colors balanced by
+ * node weight. The colors are then projected level by level back onto the finer
+ * graphs, and each finer graph is refined by refineRounds JaBeJa rounds that start at
+ * temperature refineTemp. Every level writes its result files to the directory level_i
+ * of the output directory, level 0 being the input graph.
+ * <p>
+ * The time and edge cut of every level are logged and written to a summary. With
+ * compareFlat, plain JaBeJa also runs on the input graph for the configured rounds, for
+ * comparison.
+ */
+public class Multilevel {
+  final static Logger logger = Logger.getLogger(Multilevel.class);
+
+  private final CsrGraph graph;
+  private final Config config;
+
+  public Multilevel(CsrGraph graph, Config config) {
+    this.graph = graph;
+    this.config = config;
+  }
+
+  /**
+   * @return the input graph colored with the final partition
+   */
+  public Graph run() throws IOException {
+    RandNoGenerator rand = new RandNoGenerator(config.getSeed());
+    List<Level> summary = new ArrayList<Level>();
+
+    // coarsen
+    List<Coarsener> levels = new ArrayList<Coarsener>();
+    List<Double> coarsenSeconds = new ArrayList<Double>();
+    CsrGraph current = graph;
+    while (current.size() > config.getCoarsenTo() && levels.size() < config.getMaxLevels()) {
+      long start = System.nanoTime();
+      Coarsener coarsener = new Coarsener(current, rand.split(2 * levels.size()));
+      double seconds = (System.nanoTime() - start) / 1e9;
+      CsrGraph coarse = coarsener.getCoarseGraph();
+      if (coarse.size() > current.size() * 0.95) {
+        logger.info("stopped coarsening, matching only shrinks " + current.size() + " to " + coarse.size() + " nodes");
+        break;
+      }
+      levels.add(coarsener);
+      coarsenSeconds.add(seconds);
+      current = coarse;
+      logger.info("level " + levels.size() + ": " + coarse.size() + " nodes, " + coarse.getNumEdges() +
+              " edges, coarsened in " + String.format("%.3f", seconds) + "s");
+    }
+
+    // partition the coarsest graph
+    int level = levels.size();
+    int[] colors = level > 0 ? balancedColors(current, config.getNumPartitions()) : copyColors(current);
+    Jabeja jabeja = runLevel(current.withColors(colors), level, config.getRounds(), config.getTemperature(),
+            rand.split(2 * level + 1), level > 0 ? coarsenSeconds.get(level - 1) : 0, summary);
+
+    // project and refine
+    while (level > 0) {
+      Coarsener coarsener = levels.get(--level);
+      colors = coarsener.projectColors(jabeja.getGraph());
+      jabeja = runLevel(coarsener.getFineGraph().withColors(colors), level, config.getRefineRounds(),
+              config.getRefineTemp(), rand.split(2 * level + 1), level > 0 ? coarsenSeconds.get(level - 1) : 0, summary);
+    }
+    Graph result = jabeja.getGraph();
+
+    if (config.getCompareFlat()) {
+      Config flatConfig = config.copy().setOutputDir(config.getOutputDir() + File.separator + "flat");
+      long start = System.nanoTime();
+      Jabeja flat = new Jabeja(graph.withColors(copyColors(graph)), flatConfig,
+              new RandNoGenerator(config.getSeed()).split(-1));
+      flat.startJabeja();
+      double seconds = (System.nanoTime() - start) / 1e9;
+      summary.add(new Level("flat", graph, 0, flat.getRound(), seconds, flat.getEdgeCut()));
+      logger.info("flat: " + flat.getRound() + " rounds, edge cut: " + flat.getEdgeCut() +
+              ", time: " + String.format("%.3f", seconds) + "s");
+    }
+
+    writeSummary(summary);
+    return result;
+  }
+
+  //-------------------------------------------------------------------
+
+  private Jabeja runLevel(CsrGraph levelGraph, int level, int rounds, float temperature, RandNoGenerator rand,
+                          double coarsenSeconds, List<Level> summary) throws IOException {
+    Config levelConfig = config.copy()
+            .setRounds(rounds)
+            .setTemperature(temperature)
+            .setOutputDir(config.getOutputDir() + File.separator + "level_" + level);
+    long start = System.nanoTime();
+    Jabeja jabeja = new Jabeja(levelGraph, levelConfig, rand);
+    int startEdgeCut = jabeja.getEdgeCut();
+    jabeja.startJabeja();
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    summary.add(new Level(String.valueOf(level), levelGraph, coarsenSeconds, jabeja.getRound(), seconds,
+            jabeja.getEdgeCut()));
+    logger.info("level " + level + ": " + levelGraph.size() + " nodes, " + jabeja.getRound() +
+            " rounds, edge cut: " + startEdgeCut + " -> " + jabeja.getEdgeCut() +
+            ", time: " + String.format("%.3f", seconds) + "s");
+    return jabeja;
+  }
+
+  /**
+   * Colors the nodes in index order, every node gets the color with the least weight so far
+   */
+  private static int[] balancedColors(CsrGraph graph, int numPartitions) {
+    long[] load = new long[numPartitions];
+    int[] colors = new int[graph.size()];
+    for (int v = 0; v < graph.size(); v++) {
+      int lightest = 0;
+      for (int c = 1; c < numPartitions; c++) {
+        if (load[c] < load[lightest]) {
+          lightest = c;
+        }
+      }
+      colors[v] = lightest;
+      load[lightest] += graph.getNodeWeight(v);
+    }
+    return colors;
+  }
+
+  private static int[] copyColors(CsrGraph graph) {
+    int[] colors = new int[graph.size()];
+    for (int v = 0; v < graph.size(); v++) {
+      colors[v] = graph.getColor(v);
+    }
+    return colors;
+  }
+
+  private void writeSummary(List<Level> summary) throws IOException {
+    File inputFile = new File(config.getGraphFilePath());
+    String basePath = config.getOutputDir() + File.separator + inputFile.getName() +
+            "_multilevel_R_" + config.getRounds() + "_RR_" + config.getRefineRounds();
+    List<ResultWriter> writers = ResultWriter.open(basePath, config.getResultFormat(), null,
+            config.getFlushInterval(), false,
+            "Level", "Nodes", "Edges", "Coarsen-Seconds", "Rounds", "Seconds", "Edge-Cut");
+    try {
+      for (Level level : summary) {
+        for (ResultWriter writer : writers) {
+          writer.write(level.name, level.nodes, level.edges, String.format("%.3f", level.coarsenSeconds),
+                  level.rounds, String.format("%.3f", level.seconds), level.edgeCut);
+        }
+      }
+    } finally {
+      for (ResultWriter writer : writers) {
+        writer.close();
+      }
+    }
+    logger.info("Wrote multilevel summary " + basePath + ".txt");
+  }
+
+  /**
+   * One row of the summary
+   */
+  private static class Level {
+    final String name;
+    final int nodes;
+    final int edges;
+    final double coarsenSeconds;
+    final int rounds;
+    final double seconds;
+    final int edgeCut;
+
+    Level(String name, CsrGraph graph, double coarsenSeconds, int rounds, double seconds, int edgeCut) {
+      this.name = name;
+      this.nodes = graph.size();
+      this.edges = graph.getNumEdges();
+      this.coarsenSeconds = coarsenSeconds;
+      this.rounds = rounds;
+      this.seconds = seconds;
+      this.edgeCut = edgeCut;
+    }
+  }
+}
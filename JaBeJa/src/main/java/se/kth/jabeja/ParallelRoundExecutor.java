@@ -0,0 +1,350 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.graph.ColorHistogram;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.metrics.RoundCounters;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs one JaBeJa round on several threads. The node index space is split
+ * into one contiguous range per worker and every worker does sample and swap
+ * for the nodes of its range.
+ * <p>
+ * Partners are selected without locking, the swap itself is done while holding
+ * the striped locks of both nodes. Under the locks the color of p is checked
+ * again, if another worker changed it meanwhile the swap is dropped. A swap always
+ * exchanges the two current colors, so the size of every partition stays exactly
+ * the same. In HISTOGRAM mode the stripes of all neighbours of p and q are locked
+ * as well, so the counters of the neighbours change in the same critical section
+ * as the colors. Otherwise another worker could swap p again and decrement a
+ * counter before it was incremented. Stripes are always locked in ascending order.
+ * Since nothing around p and q can change during the swap, every worker also adds up
+ * the changes of edge cut and migrations of its swaps, which are handed to the run
+ * after the round. Without the histogram the neighbours are not locked, so the run
+ * recounts them instead.
+ * <p>
+ * In synchronous mode the workers only select partners, on the colors the nodes
+ * had at the start of the round. The swaps are then applied in node order by the
+ * calling thread, skipping nodes that were already swapped in this round.
+ * <p>
+ * Every worker draws from its own stream, derived from the stream of the run,
+ * the round and the worker number. Synchronous rounds are therefore reproducible
+ * for a given seed and number of threads, while with locking the order in which
+ * workers win the locks also influences the result.
+ */
+class ParallelRoundExecutor {
+  final static Logger logger = Logger.getLogger(ParallelRoundExecutor.class);
+  private static final int STRIPES_PER_THREAD = 256;
+
+  private final Jabeja jabeja;
+  private final Graph graph;
+  private final int threads;
+  private final ReentrantLock[] locks;
+  private final boolean synchronous;
+  private final ExecutorService pool;
+  private final int[] partners; // only used in synchronous mode
+  private final boolean[] swapped; // only used in synchronous mode
+  private final CandidateSample[] samples; // one per worker
+  private final int[][] stripes; // one per worker, stripes locked by the current swap
+  private final RoundCounters[] counters; // one per worker, null when not instrumented
+  private long conflicts;
+  private long rounds;
+
+  ParallelRoundExecutor(Jabeja jabeja, int threads, boolean synchronous) {
+    this.jabeja = jabeja;
+    this.graph = jabeja.getGraph();
+    this.threads = threads;
+    this.synchronous = synchronous;
+    this.partners = synchronous ? new int[graph.size()] : null;
+    this.swapped = synchronous ? new boolean[graph.size()] : null;
+    this.samples = new CandidateSample[threads];
+    this.stripes = new int[threads][];
+    for (int w = 0; w < threads; w++) {
+      samples[w] = jabeja.newCandidateSample();
+      stripes[w] = new int[2];
+    }
+    if (jabeja.getMetrics() != null) {
+      this.counters = new RoundCounters[threads];
+      for (int w = 0; w < threads; w++) {
+        counters[w] = new RoundCounters();
+      }
+    } else {
+      this.counters = null;
+    }
+
+    int stripes = Integer.highestOneBit(threads * STRIPES_PER_THREAD - 1) << 1;
+    this.locks = new ReentrantLock[stripes];
+    for (int i = 0; i < stripes; i++) {
+      locks[i] = new ReentrantLock();
+    }
+
+    this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private int count = 0;
+
+      @Override
+      public synchronized Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "jabeja-worker-" + count++);
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * @return number of swaps done in the round
+   */
+  int runRound() {
+    List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>(threads);
+    RandNoGenerator roundRand = jabeja.getRand().split(rounds++);
+    int size = graph.size();
+    for (int w = 0; w < threads; w++) {
+      final int from = (int) ((long) size * w / threads);
+      final int to = (int) ((long) size * (w + 1) / threads);
+      final RandNoGenerator workerRand = roundRand.split(w);
+      final CandidateSample sample = samples[w];
+      final int worker = w;
+      final RoundCounters workerCounters = counters != null ? counters[w] : null;
+      tasks.add(new Callable<int[]>() {
+        @Override
+        public int[] call() {
+          return synchronous
+                  ? selectPartners(from, to, workerRand, sample, workerCounters)
+                  : sampleAndSwap(worker, from, to, workerRand, sample, workerCounters);
+        }
+      });
+    }
+
+    long start = System.nanoTime();
+    int swaps = 0;
+    int roundConflicts = 0;
+    int edgeCutDelta = 0;
+    int migrationDelta = 0;
+    try {
+      for (Future<int[]> result : pool.invokeAll(tasks)) {
+        int[] counts = result.get();
+        swaps += counts[0];
+        roundConflicts += counts[1];
+        edgeCutDelta += counts[2];
+        migrationDelta += counts[3];
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the workers", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Worker failed", e.getCause());
+    }
+    if (synchronous) {
+      int[] counts = applySwaps();
+      swaps = counts[0];
+      roundConflicts = counts[1];
+    } else if (jabeja.getHistogram() != null) {
+      jabeja.addCounts(edgeCutDelta, migrationDelta);
+    }
+    long elapsed = System.nanoTime() - start;
+    conflicts += roundConflicts;
+
+    logger.debug("threads: " + threads +
+            ", swaps/sec: " + (long) (swaps / (elapsed / 1e9)) +
+            ", conflicts: " + roundConflicts);
+    return swaps;
+  }
+
+  /**
+   * @return number of swaps dropped because a node changed color concurrently
+   */
+  long getConflicts() {
+    return conflicts;
+  }
+
+  /**
+   * @return the counters of the workers, null when not instrumented
+   */
+  RoundCounters[] getCounters() {
+    return counters;
+  }
+
+  /**
+   * @return number of rounds run, which selects the random streams of the next round
+   */
+  long getRounds() {
+    return rounds;
+  }
+
+  void setRounds(long rounds) {
+    this.rounds = rounds;
+  }
+
+  void shutdown() {
+    pool.shutdownNow();
+  }
+
+  //-------------------------------------------------------------------
+
+  /**
+   * @return {swaps, conflicts, edge cut change, migrations change} of the range [from, to),
+   * the changes are only added up in HISTOGRAM mode
+   */
+  private int[] sampleAndSwap(int worker, int from, int to, RandNoGenerator rand, CandidateSample sample,
+                              RoundCounters counters) {
+    ColorHistogram histogram = jabeja.getHistogram();
+    int swaps = 0;
+    int conflicts = 0;
+    int edgeCutDelta = 0;
+    int migrationDelta = 0;
+
+    for (int p = from; p < to; p++) {
+      int pColor = graph.getColor(p);
+      int q = jabeja.selectPartner(p, rand, sample, counters);
+      if (q == -1) {
+        continue;
+      }
+
+      long start = counters != null ? System.nanoTime() : 0;
+      int locked = lockStripes(worker, p, q, histogram != null);
+      try {
+        if (graph.getColor(p) != pColor) {
+          conflicts++;
+          continue;
+        }
+        int qColor = graph.getColor(q);
+        if (qColor == pColor) {
+          continue;
+        }
+        if (histogram != null) {
+          // the same steps as Jabeja.swapColors, all neighbours are locked
+          edgeCutDelta += jabeja.getDegree(p, pColor) - jabeja.getDegree(p, qColor);
+          if (graph.hasSelfLoops()) {
+            edgeCutDelta -= graph.getSelfLoops(p) + graph.getSelfLoops(q);
+          }
+          graph.setColor(p, qColor);
+          histogram.recolor(p, pColor, qColor);
+          edgeCutDelta += jabeja.getDegree(q, qColor) - jabeja.getDegree(q, pColor);
+          graph.setColor(q, pColor);
+          histogram.recolor(q, qColor, pColor);
+          migrationDelta += jabeja.migrationDelta(p, pColor, qColor) + jabeja.migrationDelta(q, qColor, pColor);
+        } else {
+          graph.setColor(p, qColor);
+          graph.setColor(q, pColor);
+        }
+      } finally {
+        unlockStripes(worker, locked);
+      }
+      swaps++;
+
+      if (counters != null) {
+        counters.swapped(System.nanoTime() - start);
+      }
+    }
+    return new int[]{swaps, conflicts, edgeCutDelta, migrationDelta};
+  }
+
+  /**
+   * Only records the partners of the range [from, to), colors are not changed
+   *
+   * @return {0, 0, 0, 0}, swaps are counted by {@link #applySwaps()}
+   */
+  private int[] selectPartners(int from, int to, RandNoGenerator rand, CandidateSample sample,
+                               RoundCounters counters) {
+    for (int p = from; p < to; p++) {
+      partners[p] = jabeja.selectPartner(p, rand, sample, counters);
+    }
+    return new int[]{0, 0, 0, 0};
+  }
+
+  /**
+   * Applies the partners selected in this round in node order. A proposal is
+   * dropped as a conflict if one of the two nodes was already swapped.
+   *
+   * @return {swaps, conflicts}
+   */
+  private int[] applySwaps() {
+    Arrays.fill(swapped, false);
+    int swaps = 0;
+    int conflicts = 0;
+    for (int p = 0; p < partners.length; p++) {
+      int q = partners[p];
+      if (q == -1 || graph.getColor(p) == graph.getColor(q)) {
+        continue;
+      }
+      if (swapped[p] || swapped[q]) {
+        conflicts++;
+        continue;
+      }
+      long start = counters != null ? System.nanoTime() : 0;
+      jabeja.swapColors(p, q);
+      if (counters != null) {
+        // the swaps are applied by the calling thread, after the workers are done
+        counters[0].swapped(System.nanoTime() - start);
+      }
+      swapped[p] = true;
+      swapped[q] = true;
+      swaps++;
+    }
+    return new int[]{swaps, conflicts};
+  }
+
+  /**
+   * Locks the stripes of p and q, and of all their neighbours if withNeighbours,
+   * in ascending order so that workers never wait for each other in a cycle
+   *
+   * @return number of stripes locked, they are the first ones of stripes[worker]
+   */
+  private int lockStripes(int worker, int p, int q, boolean withNeighbours) {
+    int needed = 2;
+    if (withNeighbours) {
+      needed += graph.neighbourEnd(p) - graph.neighbourStart(p) + graph.neighbourEnd(q) - graph.neighbourStart(q);
+    }
+    if (stripes[worker].length < needed) {
+      stripes[worker] = new int[Math.max(needed, stripes[worker].length * 2)];
+    }
+    int[] buffer = stripes[worker];
+    int count = 0;
+    buffer[count++] = stripeOf(p);
+    buffer[count++] = stripeOf(q);
+    if (withNeighbours) {
+      count = addNeighbourStripes(p, buffer, count);
+      count = addNeighbourStripes(q, buffer, count);
+    }
+    Arrays.sort(buffer, 0, count);
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || buffer[i] != buffer[unique - 1]) {
+        buffer[unique++] = buffer[i];
+      }
+    }
+    for (int i = 0; i < unique; i++) {
+      locks[buffer[i]].lock();
+    }
+    return unique;
+  }
+
+  private int addNeighbourStripes(int v, int[] buffer, int count) {
+    for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+      buffer[count++] = stripeOf(graph.neighbourAt(i));
+    }
+    return count;
+  }
+
+  private void unlockStripes(int worker, int count) {
+    int[] buffer = stripes[worker];
+    for (int i = count - 1; i >= 0; i--) {
+      locks[buffer[i]].unlock();
+    }
+  }
+
+  private int stripeOf(int v) {
+    return v & (locks.length - 1);
+  }
+}
@@ -0,0 +1,77 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.io.CLI;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Measures swaps/sec of JaBeJa rounds for 1, 2, 4, ... up to -threads worker threads.
+ * Every measurement starts from the initial coloring of the graph and runs -rounds rounds.
+ * Only sample and swap is timed, runs that recount the edge cut every round, the SCAN
+ * engine with locking, would otherwise look slower than they are.
+ * Takes the same arguments as {@link Main}, no result files are written.
+ */
+public class ParallelScaling {
+  final static Logger logger = Logger.getLogger(ParallelScaling.class);
+
+  public static void main(String[] args) throws IOException {
+    Config config = (new CLI()).parseArgs(args);
+    RandNoGenerator rand = new RandNoGenerator(config.getSeed());
+
+    CsrGraph graph = new GraphReader(rand).readGraph(config.getGraphFilePath(),
+            config.getGraphInitialColorPolicy(), config.getNumPartitions());
+    int[] initialSizes = partitionSizes(graph, config.getNumPartitions());
+    int maxThreads = Math.max(config.getThreads(), 1);
+
+    double baseline = 0;
+    for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+      graph.resetColors();
+      config.setThreads(threads);
+      Jabeja jabeja = new Jabeja(graph, config, rand.split(threads));
+
+      long swaps = 0;
+      try {
+        for (int round = 0; round < config.getRounds(); round++) {
+          swaps += jabeja.runRound();
+        }
+      } finally {
+        jabeja.close();
+      }
+      double seconds = jabeja.getSwapNanos() / 1e9;
+      double swapsPerSec = swaps / seconds;
+      if (threads == 1) {
+        baseline = swapsPerSec;
+      }
+
+      int[] sizes = partitionSizes(graph, config.getNumPartitions());
+      if (!Arrays.equals(sizes, initialSizes)) {
+        throw new IllegalStateException("Partition sizes changed with " + threads + " threads");
+      }
+
+      logger.info("threads: " + threads +
+              ", rounds: " + config.getRounds() +
+              ", time: " + String.format("%.3f", seconds) + "s" +
+              ", swaps: " + swaps +
+              ", swaps/sec: " + (long) swapsPerSec +
+              ", speedup: " + String.format("%.2f", swapsPerSec / baseline));
+
+      if (threads == maxThreads) {
+        break;
+      }
+    }
+  }
+
+  private static int[] partitionSizes(CsrGraph graph, int numPartitions) {
+    int[] sizes = new int[numPartitions];
+    for (int v = 0; v < graph.size(); v++) {
+      sizes[graph.getColor(v)]++;
+    }
+    return sizes;
+  }
+}
@@ -0,0 +1,56 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.graph.PartitionQuality;
+import se.kth.jabeja.io.CLI;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.io.PartitionFile;
+
+import java.io.IOException;
+
+/**
+ * Evaluates the partition file given by -partition on the graph given by -graph, e.g. a
+ * reference partition like graphs/add20.graph.part.4 or one written with -exportPartition.
+ * Takes the same arguments as {@link Main}, the ranges of nodes are evaluated on -threads
+ * threads. The number of partitions is -partitions, or more if the file has higher colors.
+ */
+public class PartitionEvaluator {
+  final static Logger logger = Logger.getLogger(PartitionEvaluator.class);
+
+  public static void main(String[] args) throws IOException {
+    Config config = (new CLI()).parseArgs(args);
+    if (config.getPartitionFile() == null) {
+      throw new IllegalArgumentException("No partition file, use -partition");
+    }
+
+    CsrGraph graph = new GraphReader()
+            .setCachePolicy(config.getGraphCachePolicy())
+            .setFormat(config.getGraphFormat())
+            .setEdgeBufferSize(config.getEdgeBufferSize())
+            .readGraph(config.getGraphFilePath(), config.getGraphInitialColorPolicy(), config.getNumPartitions());
+
+    long start = System.nanoTime();
+    int[] colors = PartitionFile.read(config.getPartitionFile(), graph.size());
+    int numPartitions = config.getNumPartitions();
+    for (int color : colors) {
+      numPartitions = Math.max(numPartitions, color + 1);
+    }
+    PartitionQuality quality = PartitionQuality.evaluate(graph.withColors(colors), numPartitions,
+            Math.max(config.getThreads(), 1));
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    logger.info(config.getPartitionFile() +
+            ", partitions: " + numPartitions +
+            ", edge cut: " + quality.getEdgeCut() +
+            ", balance: " + String.format("%.4f", quality.getBalance()) +
+            ", communication volume: " + quality.getCommunicationVolume() +
+            ", time: " + String.format("%.3f", seconds) + "s");
+    for (int c = 0; c < numPartitions; c++) {
+      logger.info("partition: " + c +
+              ", nodes: " + quality.getSize(c) +
+              ", boundary nodes: " + quality.getBoundarySize(c));
+    }
+  }
+}
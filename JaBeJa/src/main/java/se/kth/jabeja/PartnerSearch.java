@@ -0,0 +1,258 @@
+package se.kth.jabeja;
+
+import se.kth.jabeja.anneal.AnnealingSchedule;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.NodeSelectionPolicy;
+import se.kth.jabeja.cost.CostFunction;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.metrics.RoundCounters;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+/**
+ * Sampling and scoring of the swap partners of sample and swap, shared by the rounds of
+ * {@link Jabeja} and the local rounds of {@link DynamicJabeja}.
+ * <p>
+ * The graph is read through {@link Nodes}, the colored degrees through a {@link Degrees}
+ * source, e.g. a scan of the neighbours or a color histogram, and a candidate is accepted
+ * by the {@link AnnealingSchedule} of the caller. Only reads the graph, so several threads
+ * may search at once, each with its own sample and random stream.
+ */
+class PartnerSearch {
+  /**
+   * Topology and colors of the searched graph
+   */
+  interface Nodes {
+    int size();
+
+    int getColor(int node);
+
+    /**
+     * @return number of neighbour entries of the node
+     */
+    int getDegree(int node);
+
+    /**
+     * @return index of the i-th neighbour of the node
+     */
+    int getNeighbour(int node, int i);
+
+    /**
+     * @return true if a node can have the same neighbour more than once
+     */
+    boolean hasParallelEdges();
+
+    boolean hasNodeWeights();
+
+    int getNodeWeight(int node);
+  }
+
+  /**
+   * Colored degrees of the nodes
+   */
+  interface Degrees {
+    /**
+     * @return weight of the edges from the node to neighbours with the color
+     */
+    int getDegree(int node, int color);
+  }
+
+  private final Nodes nodes;
+  private final Degrees degrees;
+  private final CostFunction cost;
+  private final AnnealingSchedule schedule;
+  private final Config config;
+
+  PartnerSearch(Nodes nodes, Degrees degrees, CostFunction cost, AnnealingSchedule schedule, Config config) {
+    this.nodes = nodes;
+    this.degrees = degrees;
+    this.cost = cost;
+    this.schedule = schedule;
+    this.config = config;
+  }
+
+  /**
+   * @return the nodes of a CSR graph
+   */
+  static Nodes nodesOf(final Graph graph) {
+    return new Nodes() {
+      public int size() {
+        return graph.size();
+      }
+
+      public int getColor(int node) {
+        return graph.getColor(node);
+      }
+
+      public int getDegree(int node) {
+        return graph.getDegree(node);
+      }
+
+      public int getNeighbour(int node, int i) {
+        return graph.neighbourAt(graph.neighbourStart(node) + i);
+      }
+
+      public boolean hasParallelEdges() {
+        return graph.hasParallelEdges();
+      }
+
+      public boolean hasNodeWeights() {
+        return graph.hasNodeWeights();
+      }
+
+      public int getNodeWeight(int node) {
+        return graph.getNodeWeight(node);
+      }
+    };
+  }
+
+  /**
+   * Picks the swap partner of node p according to the node selection policy
+   * @param nodep index of the node
+   * @param rand random stream of the calling thread
+   * @param sample scratch buffer of the calling thread
+   * @param counters counters of the calling thread, null when not instrumented
+   * @return index of the partner, -1 if none
+   */
+  int selectPartner(int nodep, RandNoGenerator rand, CandidateSample sample, RoundCounters counters) {
+    int partner = -1;
+
+    if (config.getNodeSelectionPolicy() == NodeSelectionPolicy.HYBRID
+            || config.getNodeSelectionPolicy() == NodeSelectionPolicy.LOCAL) {
+      // swap with random neighbors
+      partner = selectLocalPartner(nodep, rand, sample, counters);
+    }
+
+    if (config.getNodeSelectionPolicy() == NodeSelectionPolicy.HYBRID
+            || config.getNodeSelectionPolicy() == NodeSelectionPolicy.RANDOM) {
+      // if local policy fails then randomly sample the entire graph
+      if (partner == -1) {
+        partner = selectUniformPartner(nodep, rand, sample, counters);
+      }
+    }
+    return partner;
+  }
+
+  /**
+   * @return index of the best partner among random neighbours of p, -1 if none
+   */
+  int selectLocalPartner(int nodep, RandNoGenerator rand, CandidateSample sample, RoundCounters counters) {
+    long start = counters != null ? System.nanoTime() : 0;
+    getNeighbors(nodep, rand, sample);
+    long sampled = counters != null ? System.nanoTime() : 0;
+    int partner = findPartner(nodep, sample.candidates(), sample.size(), rand, counters);
+    if (counters != null) {
+      count(counters, start, sampled, sample.size(), partner, true);
+    }
+    return partner;
+  }
+
+  /**
+   * @return index of the best partner among a uniform sample of the graph, -1 if none
+   */
+  int selectUniformPartner(int nodep, RandNoGenerator rand, CandidateSample sample, RoundCounters counters) {
+    long start = counters != null ? System.nanoTime() : 0;
+    getSample(nodep, rand, sample);
+    long sampled = counters != null ? System.nanoTime() : 0;
+    int partner = findPartner(nodep, sample.candidates(), sample.size(), rand, counters);
+    if (counters != null) {
+      count(counters, start, sampled, sample.size(), partner, false);
+    }
+    return partner;
+  }
+
+  private static void count(RoundCounters counters, long start, long sampled, int candidates, int partner,
+                            boolean local) {
+    counters.sampled(sampled - start);
+    counters.scored(candidates, System.nanoTime() - sampled);
+    if (partner != -1) {
+      counters.partnerFound(local);
+    }
+  }
+
+  /**
+   * @param candidates candidates, only the first count entries are used
+   * @param counters counters of the calling thread, null when not instrumented
+   * @return index of the best partner for nodep among the candidates, -1 if none
+   */
+  int findPartner(int nodep, int[] candidates, int count, RandNoGenerator rand, RoundCounters counters) {
+    int bestPartner = -1;
+    double highestBenefit = 0;
+    int nodepColor = nodes.getColor(nodep);
+    int d_pp = degrees.getDegree(nodep, nodepColor);
+    boolean weighted = nodes.hasNodeWeights();
+
+    for (int i = 0; i < count; i++) {
+      int nodeq = candidates[i];
+      if (weighted && nodes.getNodeWeight(nodeq) != nodes.getNodeWeight(nodep)) {
+        // swapping would change the size of both partitions
+        continue;
+      }
+      int nodeqColor = nodes.getColor(nodeq);
+      int d_qq = degrees.getDegree(nodeq, nodeqColor);
+      double old = cost.pairValue(d_pp, d_qq);
+      int d_pq = degrees.getDegree(nodep, nodeqColor);
+      int d_qp = degrees.getDegree(nodeq, nodepColor);
+      double new_ = cost.pairValue(d_pq, d_qp);
+
+      if (schedule.accept(old, new_, rand)) {
+        if (counters != null) {
+          counters.accepted();
+        }
+        if (new_ > highestBenefit) {
+          bestPartner = nodeq;
+          highestBenefit = new_;
+        }
+      }
+    }
+
+    return bestPartner;
+  }
+
+  /**
+   * Fills the sample with a uniformly random sample of the graph
+   * @param currentNodeId
+   * @param rand
+   * @param sample scratch buffer of the calling thread
+   */
+  void getSample(int currentNodeId, RandNoGenerator rand, CandidateSample sample) {
+    int size = nodes.size();
+    // cannot sample more distinct nodes than there are
+    int count = Math.min(config.getUniformRandomSampleSize(), size - 1);
+
+    sample.clear();
+    while (count > 0) {
+      int rndId = rand.nextInt(size);
+      if (rndId != currentNodeId && sample.add(rndId)) {
+        count--;
+      }
+    }
+  }
+
+  /**
+   * Fills the sample with random neighbors. The number of random neighbors is controlled using
+   * -closeByNeighbors command line argument which can be obtained from the config
+   * using {@link Config#getRandomNeighborSampleSize()}
+   * @param node index of the node
+   * @param rand
+   * @param sample scratch buffer of the calling thread
+   */
+  void getNeighbors(int node, RandNoGenerator rand, CandidateSample sample) {
+    int count = config.getRandomNeighborSampleSize();
+    int size = nodes.getDegree(node);
+
+    sample.clear();
+    if (size <= count) {
+      for (int i = 0; i < size; i++) {
+        sample.add(nodes.getNeighbour(node, i));
+      }
+    } else {
+      // with parallel edges there can be fewer distinct neighbours than count
+      int attempts = nodes.hasParallelEdges() ? 4 * size : Integer.MAX_VALUE;
+      while (count > 0 && attempts-- > 0) {
+        if (sample.add(nodes.getNeighbour(node, rand.nextInt(size)))) {
+          count--;
+        }
+      }
+    }
+  }
+}
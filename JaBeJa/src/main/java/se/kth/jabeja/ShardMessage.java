@@ -0,0 +1,56 @@
+package se.kth.jabeja;
+
+/**
+ * Message exchanged between the {@link ShardWorker}s of a {@link DistributedJabeja} run.
+ * All payloads are flat int arrays, the size on the wire is estimated as a fixed header
+ * plus four bytes per int, as a compact binary encoding would need.
+ */
+final class ShardMessage {
+  /**
+   * type, sender, receiver and payload length
+   */
+  static final int HEADER_BYTES = 16;
+
+  enum Type {
+    /**
+     * Pairs (q, color of p): the color of q and its neighbours with both colors
+     */
+    DEGREE_QUERY,
+    /**
+     * Triples (color of q, d_qq, d_qp), in the order of the query
+     */
+    DEGREE_REPLY,
+    /**
+     * Quadruples (p, q, color of p, color of q): q takes the color of p if it agrees
+     */
+    SWAP_PREPARE,
+    /**
+     * One vote per prepared swap, 1 if q has taken the color of p, 0 if it refused
+     */
+    SWAP_VOTE,
+    /**
+     * Nodes of the receiver the sender has as neighbours
+     */
+    COLOR_QUERY,
+    /**
+     * Colors of the queried nodes, in the order of the query
+     */
+    COLOR_REPLY
+  }
+
+  final Type type;
+  final int from;
+  final int to;
+  final int[] payload;
+
+  ShardMessage(Type type, int from, int to, int[] payload) {
+    this.type = type;
+    this.from = from;
+    this.to = to;
+    this.payload = payload;
+  }
+
+  int bytes() {
+    return HEADER_BYTES + 4 * payload.length;
+  }
+}
@@ -0,0 +1,667 @@
+package se.kth.jabeja;
+
+import se.kth.jabeja.anneal.AnnealingSchedule;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.cost.CostFunction;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * One host of a {@link DistributedJabeja} run. The worker owns a contiguous range of
+ * nodes with their neighbour lists and colors, and only learns about other nodes through
+ * messages: the colors of its ghosts, the remote neighbours of its nodes, and the degrees
+ * of remote swap candidates.
+ * <p>
+ * Work is done in supersteps. A superstep first handles the messages delivered after the
+ * previous one, in the order of their senders, then performs its {@link Action}. Messages
+ * sent in a superstep are only delivered once all workers are done with it, so the result
+ * does not depend on the timing of the threads.
+ */
+class ShardWorker {
+
+  enum Action {
+    /**
+     * Only handle the messages
+     */
+    NONE,
+    /**
+     * Score random neighbours as candidates, query the degrees of remote ones
+     */
+    SAMPLE_NEIGHBOURS,
+    /**
+     * Score a uniform sample of the graph for every node without a partner
+     */
+    SAMPLE_RANDOM,
+    /**
+     * Swap with local partners, send a prepare to the shards of remote partners
+     */
+    PREPARE_SWAPS,
+    /**
+     * Ask the other shards for the colors of the ghosts
+     */
+    QUERY_GHOSTS,
+    /**
+     * Count the cut edges and migrations of the nodes of this shard
+     */
+    COUNT
+  }
+
+  private final int id;
+  private final int[] bounds; // shard s owns the nodes [bounds[s], bounds[s + 1])
+  private final int from;
+  private final int size;
+  private final int numNodes; // of the whole graph
+  private final int[] offsets;
+  private final int[] adjacency; // global node indices
+  private final int[] colors;
+  private final int[] initColors;
+  private final int[] ghosts; // remote neighbours, sorted, so the ghosts of a shard are consecutive
+  private final int[] ghostColors;
+  private final int[] ghostStart; // ghosts of shard s are [ghostStart[s], ghostStart[s + 1])
+  private final boolean parallelEdges;
+  private final CostFunction cost;
+  private final int neighbourSampleSize;
+  private final int uniformSampleSize;
+  private final Queue<ShardMessage> mailbox = new ConcurrentLinkedQueue<ShardMessage>(); // sent in this superstep
+  private final List<ShardMessage> inbox = new ArrayList<ShardMessage>(); // read in this superstep
+  private ShardWorker[] peers;
+
+  // state of the current round, indexed by local node
+  private final int[] partners; // global index of the best partner, -1 if none
+  private final int[] partnerColors;
+  private final double[] benefits;
+  private final int[] ownDegrees; // neighbours with the node's own color
+  private final boolean[] locked; // swapped, or waiting for the vote on a prepared swap
+  private final boolean[] pending; // waiting for the vote on a prepared swap
+  private final boolean[] mutual; // accepted the prepare of its own pending partner
+  private final Ints[] queried; // per shard, (p, q) of the degree queries waiting for a reply
+  private final Ints[] prepared; // per shard, (p, q) of the swaps waiting for a vote
+  private final Ints[] outbox; // per shard, payload of the next message
+  private int[] candidates = new int[8];
+  private int numCandidates;
+  private RandNoGenerator rand;
+  private AnnealingSchedule schedule; // of the run, only read during a round
+
+  // counts of the current round
+  private int swaps;
+  private int cutEntries;
+  private int migrations;
+  private int roundMessages;
+  private long roundBytes;
+  private long roundNanos;
+
+  // counts of the run
+  private long messagesSent;
+  private long bytesSent;
+  private long messagesReceived;
+  private long bytesReceived;
+  private long localSwaps;
+  private long remoteSwaps;
+  private long conflicts;
+  private long rejected;
+  private long busyNanos;
+  private long maxRoundNanos;
+
+  /**
+   * Copies the nodes [bounds[id], bounds[id + 1]) of the graph, with their neighbour lists
+   * and colors
+   */
+  ShardWorker(int id, int[] bounds, Graph graph, Config config, CostFunction cost) {
+    this.id = id;
+    this.bounds = bounds.clone();
+    this.from = bounds[id];
+    this.size = bounds[id + 1] - from;
+    this.numNodes = graph.size();
+    this.cost = cost;
+    this.neighbourSampleSize = config.getRandomNeighborSampleSize();
+    this.uniformSampleSize = config.getUniformRandomSampleSize();
+    this.parallelEdges = graph.hasParallelEdges();
+
+    this.offsets = new int[size + 1];
+    for (int v = 0; v < size; v++) {
+      offsets[v + 1] = offsets[v] + graph.getDegree(from + v);
+    }
+    this.adjacency = new int[offsets[size]];
+    this.colors = new int[size];
+    this.initColors = new int[size];
+    int remote = 0;
+    for (int v = 0; v < size; v++) {
+      int start = graph.neighbourStart(from + v);
+      for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+        adjacency[i] = graph.neighbourAt(start + i - offsets[v]);
+        if (!isLocal(adjacency[i])) {
+          remote++;
+        }
+      }
+      colors[v] = graph.getColor(from + v);
+      initColors[v] = graph.getInitColor(from + v);
+    }
+
+    int[] remoteNeighbours = new int[remote];
+    remote = 0;
+    for (int u : adjacency) {
+      if (!isLocal(u)) {
+        remoteNeighbours[remote++] = u;
+      }
+    }
+    Arrays.sort(remoteNeighbours);
+    int numGhosts = 0;
+    for (int i = 0; i < remoteNeighbours.length; i++) {
+      if (i == 0 || remoteNeighbours[i] != remoteNeighbours[i - 1]) {
+        remoteNeighbours[numGhosts++] = remoteNeighbours[i];
+      }
+    }
+    this.ghosts = Arrays.copyOf(remoteNeighbours, numGhosts);
+    this.ghostColors = new int[numGhosts];
+    int shards = bounds.length - 1;
+    this.ghostStart = new int[shards + 1];
+    for (int s = 0, g = 0; s < shards; s++) {
+      ghostStart[s] = g;
+      while (g < numGhosts && ghosts[g] < bounds[s + 1]) {
+        g++;
+      }
+      ghostStart[s + 1] = g;
+    }
+
+    this.partners = new int[size];
+    this.partnerColors = new int[size];
+    this.benefits = new double[size];
+    this.ownDegrees = new int[size];
+    this.locked = new boolean[size];
+    this.pending = new boolean[size];
+    this.mutual = new boolean[size];
+    this.queried = new Ints[shards];
+    this.prepared = new Ints[shards];
+    this.outbox = new Ints[shards];
+    for (int s = 0; s < shards; s++) {
+      queried[s] = new Ints();
+      prepared[s] = new Ints();
+      outbox[s] = new Ints();
+    }
+  }
+
+  /**
+   * @param peers all workers of the run, indexed by shard
+   */
+  void connect(ShardWorker[] peers) {
+    this.peers = peers;
+  }
+
+  /**
+   * Forgets the partners of the previous round
+   *
+   * @param rand     stream of this worker in the round
+   * @param schedule decides on the swaps of the round
+   */
+  void startRound(RandNoGenerator rand, AnnealingSchedule schedule) {
+    this.rand = rand;
+    this.schedule = schedule;
+    Arrays.fill(partners, -1);
+    Arrays.fill(benefits, 0);
+    Arrays.fill(locked, false);
+    Arrays.fill(pending, false);
+    Arrays.fill(mutual, false);
+    swaps = 0;
+    roundMessages = 0;
+    roundBytes = 0;
+    roundNanos = 0;
+  }
+
+  /**
+   * Ends the round, after its last superstep
+   */
+  void endRound() {
+    busyNanos += roundNanos;
+    maxRoundNanos = Math.max(maxRoundNanos, roundNanos);
+  }
+
+  /**
+   * Moves the messages sent to this worker in the superstep that just ended to its inbox.
+   * Must be called between supersteps, when no worker is sending.
+   */
+  void deliver() {
+    ShardMessage message;
+    while ((message = mailbox.poll()) != null) {
+      inbox.add(message);
+    }
+    // stable, the messages of one sender stay in the order they were sent
+    Collections.sort(inbox, new Comparator<ShardMessage>() {
+      @Override
+      public int compare(ShardMessage a, ShardMessage b) {
+        return a.from < b.from ? -1 : a.from > b.from ? 1 : 0;
+      }
+    });
+  }
+
+  /**
+   * Handles the messages delivered after the previous superstep, then performs the action
+   */
+  void superstep(Action action) {
+    long start = System.nanoTime();
+    for (ShardMessage m : inbox) {
+      messagesReceived++;
+      bytesReceived += m.bytes();
+      handle(m);
+    }
+    inbox.clear();
+
+    switch (action) {
+      case SAMPLE_NEIGHBOURS:
+        for (int p = 0; p < size; p++) {
+          sampleNeighbours(p);
+          score(p);
+        }
+        flush(ShardMessage.Type.DEGREE_QUERY);
+        break;
+      case SAMPLE_RANDOM:
+        for (int p = 0; p < size; p++) {
+          if (partners[p] == -1) {
+            sampleRandom(p);
+            score(p);
+          }
+        }
+        flush(ShardMessage.Type.DEGREE_QUERY);
+        break;
+      case PREPARE_SWAPS:
+        prepareSwaps();
+        break;
+      case QUERY_GHOSTS:
+        for (int s = 0; s < ghostStart.length - 1; s++) {
+          if (ghostStart[s + 1] > ghostStart[s]) {
+            send(ShardMessage.Type.COLOR_QUERY, s, Arrays.copyOfRange(ghosts, ghostStart[s], ghostStart[s + 1]));
+          }
+        }
+        break;
+      case COUNT:
+        count();
+        break;
+      default:
+        break;
+    }
+    roundNanos += System.nanoTime() - start;
+  }
+
+  //-------------------------------------------------------------------
+
+  private void handle(ShardMessage m) {
+    int[] in = m.payload;
+    int[] out;
+    switch (m.type) {
+      case DEGREE_QUERY:
+        out = new int[in.length / 2 * 3];
+        for (int i = 0, j = 0; i < in.length; i += 2, j += 3) {
+          int q = in[i] - from;
+          out[j] = colors[q];
+          out[j + 1] = getDegree(q, colors[q]);
+          out[j + 2] = getDegree(q, in[i + 1]);
+        }
+        send(ShardMessage.Type.DEGREE_REPLY, m.from, out);
+        break;
+      case DEGREE_REPLY:
+        Ints pairs = queried[m.from];
+        for (int i = 0, j = 0; i < pairs.size; i += 2, j += 3) {
+          consider(pairs.data[i], pairs.data[i + 1], in[j], in[j + 1], in[j + 2]);
+        }
+        pairs.clear();
+        break;
+      case SWAP_PREPARE:
+        out = new int[in.length / 4];
+        for (int i = 0; i < in.length; i += 4) {
+          int p = in[i];
+          int q = in[i + 1] - from;
+          boolean free = !locked[q] || (pending[q] && partners[q] == p);
+          if (free && colors[q] == in[i + 3]) {
+            // a pending q agrees to the swap it has prepared itself, the other side does the same
+            mutual[q] = locked[q];
+            colors[q] = in[i + 2];
+            locked[q] = true;
+            out[i / 4] = 1;
+          }
+        }
+        send(ShardMessage.Type.SWAP_VOTE, m.from, out);
+        break;
+      case SWAP_VOTE:
+        Ints swapsOf = prepared[m.from];
+        for (int i = 0, j = 0; i < swapsOf.size; i += 2, j++) {
+          int p = swapsOf.data[i];
+          int q = swapsOf.data[i + 1];
+          pending[p] = false;
+          if (in[j] == 1) {
+            colors[p] = partnerColors[p];
+            // a mutual swap is counted by the side with the lower node
+            if (!mutual[p] || from + p < q) {
+              swaps++;
+              remoteSwaps++;
+            }
+          } else {
+            rejected++;
+          }
+        }
+        swapsOf.clear();
+        break;
+      case COLOR_QUERY:
+        out = new int[in.length];
+        for (int i = 0; i < in.length; i++) {
+          out[i] = colors[in[i] - from];
+        }
+        send(ShardMessage.Type.COLOR_REPLY, m.from, out);
+        break;
+      case COLOR_REPLY:
+        System.arraycopy(in, 0, ghostColors, ghostStart[m.from], in.length);
+        break;
+      default:
+        throw new IllegalStateException("Unknown message " + m.type);
+    }
+  }
+
+  /**
+   * Scores the local candidates of p, queries the shards of the remote ones
+   */
+  private void score(int p) {
+    int pColor = colors[p];
+    ownDegrees[p] = getDegree(p, pColor);
+    for (int i = 0; i < numCandidates; i++) {
+      int q = candidates[i];
+      if (isLocal(q)) {
+        int qColor = colors[q - from];
+        consider(p, q, qColor, getDegree(q - from, qColor), getDegree(q - from, pColor));
+      } else {
+        int shard = shardOf(q);
+        queried[shard].add(p);
+        queried[shard].add(q);
+        outbox[shard].add(q);
+        outbox[shard].add(pColor);
+      }
+    }
+  }
+
+  /**
+   * Keeps q as the partner of p if the swap is accepted and better than the best so far
+   */
+  private void consider(int p, int q, int qColor, int d_qq, int d_qp) {
+    double old = cost.pairValue(ownDegrees[p], d_qq);
+    double new_ = cost.pairValue(getDegree(p, qColor), d_qp);
+    if (schedule.accept(old, new_, rand) && new_ > benefits[p]) {
+      partners[p] = q;
+      partnerColors[p] = qColor;
+      benefits[p] = new_;
+    }
+  }
+
+  /**
+   * Swaps in node order. Every node takes part in at most one swap per round, a swap
+   * with a node that already has one is dropped as a conflict.
+   */
+  private void prepareSwaps() {
+    for (int p = 0; p < size; p++) {
+      int q = partners[p];
+      if (q == -1 || partnerColors[p] == colors[p]) {
+        continue;
+      }
+      if (locked[p]) {
+        conflicts++;
+        continue;
+      }
+      if (isLocal(q)) {
+        if (locked[q - from]) {
+          conflicts++;
+          continue;
+        }
+        colors[q - from] = colors[p];
+        colors[p] = partnerColors[p];
+        locked[p] = true;
+        locked[q - from] = true;
+        swaps++;
+        localSwaps++;
+      } else {
+        int shard = shardOf(q);
+        locked[p] = true;
+        pending[p] = true;
+        prepared[shard].add(p);
+        prepared[shard].add(q);
+        outbox[shard].add(from + p);
+        outbox[shard].add(q);
+        outbox[shard].add(colors[p]);
+        outbox[shard].add(partnerColors[p]);
+      }
+    }
+    flush(ShardMessage.Type.SWAP_PREPARE);
+  }
+
+  private void count() {
+    cutEntries = 0;
+    migrations = 0;
+    for (int v = 0; v < size; v++) {
+      if (colors[v] != initColors[v]) {
+        migrations++;
+      }
+      for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+        if (getColor(adjacency[i]) != colors[v]) {
+          cutEntries++;
+        }
+      }
+    }
+  }
+
+  private void sampleNeighbours(int p) {
+    numCandidates = 0;
+    int start = offsets[p];
+    int degree = offsets[p + 1] - start;
+    int count = neighbourSampleSize;
+    if (degree <= count) {
+      for (int i = start; i < offsets[p + 1]; i++) {
+        addCandidate(adjacency[i]);
+      }
+    } else {
+      // with parallel edges there can be fewer distinct neighbours than count
+      int attempts = parallelEdges ? 4 * degree : Integer.MAX_VALUE;
+      while (count > 0 && attempts-- > 0) {
+        if (addCandidate(adjacency[start + rand.nextInt(degree)])) {
+          count--;
+        }
+      }
+    }
+  }
+
+  private void sampleRandom(int p) {
+    numCandidates = 0;
+    // cannot sample more distinct nodes than there are
+    int count = Math.min(uniformSampleSize, numNodes - 1);
+    while (count > 0) {
+      int q = rand.nextInt(numNodes);
+      if (q != from + p && addCandidate(q)) {
+        count--;
+      }
+    }
+  }
+
+  /**
+   * @return false if q already is a candidate, samples are small enough to scan
+   */
+  private boolean addCandidate(int q) {
+    for (int i = 0; i < numCandidates; i++) {
+      if (candidates[i] == q) {
+        return false;
+      }
+    }
+    if (numCandidates == candidates.length) {
+      candidates = Arrays.copyOf(candidates, numCandidates * 2);
+    }
+    candidates[numCandidates++] = q;
+    return true;
+  }
+
+  /**
+   * Sends the outbox of every shard that has one as a message of the given type
+   */
+  private void flush(ShardMessage.Type type) {
+    for (int s = 0; s < outbox.length; s++) {
+      if (outbox[s].size > 0) {
+        send(type, s, outbox[s].toArray());
+        outbox[s].clear();
+      }
+    }
+  }
+
+  private void send(ShardMessage.Type type, int to, int[] payload) {
+    ShardMessage message = new ShardMessage(type, id, to, payload);
+    messagesSent++;
+    bytesSent += message.bytes();
+    roundMessages++;
+    roundBytes += message.bytes();
+    peers[to].mailbox.add(message);
+  }
+
+  /**
+   * @param v local index
+   * @return how many neighbours of v have the color, as far as this shard knows
+   */
+  private int getDegree(int v, int color) {
+    int degree = 0;
+    for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+      if (getColor(adjacency[i]) == color) {
+        degree++;
+      }
+    }
+    return degree;
+  }
+
+  /**
+   * @param u global index of a local node or a ghost
+   */
+  private int getColor(int u) {
+    if (isLocal(u)) {
+      return colors[u - from];
+    }
+    return ghostColors[Arrays.binarySearch(ghosts, u)];
+  }
+
+  private boolean isLocal(int u) {
+    return u >= from && u < from + size;
+  }
+
+  private int shardOf(int u) {
+    int s = Arrays.binarySearch(bounds, u);
+    // an exact hit can be the start of empty shards, the owner is the last of them
+    if (s >= 0) {
+      while (s + 1 < bounds.length - 1 && bounds[s + 1] == u) {
+        s++;
+      }
+      return s;
+    }
+    return -s - 2;
+  }
+
+  //-------------------------------------------------------------------
+
+  int size() {
+    return size;
+  }
+
+  int getFirstNode() {
+    return from;
+  }
+
+  int getColorOf(int v) {
+    return colors[v];
+  }
+
+  int getNumGhosts() {
+    return ghosts.length;
+  }
+
+  int getSwaps() {
+    return swaps;
+  }
+
+  int getCutEntries() {
+    return cutEntries;
+  }
+
+  int getMigrations() {
+    return migrations;
+  }
+
+  int getRoundMessages() {
+    return roundMessages;
+  }
+
+  long getRoundBytes() {
+    return roundBytes;
+  }
+
+  long getRoundNanos() {
+    return roundNanos;
+  }
+
+  long getMessagesSent() {
+    return messagesSent;
+  }
+
+  long getBytesSent() {
+    return bytesSent;
+  }
+
+  long getMessagesReceived() {
+    return messagesReceived;
+  }
+
+  long getBytesReceived() {
+    return bytesReceived;
+  }
+
+  long getLocalSwaps() {
+    return localSwaps;
+  }
+
+  long getRemoteSwaps() {
+    return remoteSwaps;
+  }
+
+  long getConflicts() {
+    return conflicts;
+  }
+
+  long getRejected() {
+    return rejected;
+  }
+
+  long getBusyNanos() {
+    return busyNanos;
+  }
+
+  long getMaxRoundNanos() {
+    return maxRoundNanos;
+  }
+
+  /**
+   * Growable list of ints
+   */
+  private static class Ints {
+    int[] data = new int[16];
+    int size;
+
+    void add(int value) {
+      if (size == data.length) {
+        data = Arrays.copyOf(data, size * 2);
+      }
+      data[size++] = value;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(data, size);
+    }
+
+    void clear() {
+      size = 0;
+    }
+  }
+}
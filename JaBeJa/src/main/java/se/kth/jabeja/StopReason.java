@@ -0,0 +1,34 @@
+package se.kth.jabeja;
+
+/**
+ * Why a JaBeJa run ended
+ */
+public enum StopReason {
+    /**
+     * All rounds of the config were run
+     */
+    ROUNDS("ROUNDS"),
+    /**
+     * The edge cut did not improve for a whole convergence window
+     */
+    NO_IMPROVEMENT("NO_IMPROVEMENT"),
+    /**
+     * Too few swaps per node and round over a whole convergence window
+     */
+    LOW_SWAP_RATE("LOW_SWAP_RATE"),
+    /**
+     * The temperature reached its floor and there are no restarts left
+     */
+    TEMPERATURE_FLOOR("TEMPERATURE_FLOOR");
+
+    String name;
+
+    StopReason(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
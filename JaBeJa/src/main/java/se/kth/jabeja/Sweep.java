@@ -0,0 +1,299 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.ParameterGrid;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.io.ResultWriter;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs JaBeJa for every point of a {@link ParameterGrid} on one graph, on a pool of
+ * sweepThreads threads.
+ * <p>
+ * Like the runs of an {@link Ensemble}, the points share the nodes and edges of the
+ * graph and only have their own colors. Point i writes its result files to the
+ * directory sweep_i of the output directory, and a table of all points, best edge
+ * cut first, is written to the output directory at the end.
+ * <p>
+ * With a sweepCheckInterval the points run in steps of that many rounds. After every
+ * step the points whose edge cut is more than sweepStopMargin above the best edge cut
+ * of the step are stopped. All points are compared at the same round, so which points
+ * are stopped does not depend on the number of threads.
+ * <p>
+ * The points are never resumed from their checkpoints, so -resume is rejected.
+ */
+public class Sweep {
+  final static Logger logger = Logger.getLogger(Sweep.class);
+
+  private final CsrGraph graph;
+  private final Config config;
+  private final ParameterGrid grid;
+
+  public Sweep(CsrGraph graph, Config config, ParameterGrid grid) {
+    if (config.getResume()) {
+      throw new IllegalArgumentException("A sweep can not be resumed, run it again without -resume");
+    }
+    this.graph = graph;
+    this.config = config;
+    this.grid = grid;
+  }
+
+  /**
+   * @return all points of the grid, finished points first, best edge cut first
+   */
+  public List<Point> run() throws IOException {
+    List<Config> configs = grid.expand(config);
+    int threads = Math.max(Math.min(config.getSweepThreads(), configs.size()), 1);
+    int checkInterval = config.getSweepCheckInterval();
+    int step = checkInterval > 0 ? checkInterval : config.getRounds();
+    File outputDir = new File(config.getOutputDir());
+    if (!outputDir.exists() && !outputDir.mkdirs()) {
+      throw new IOException("Unable to create the output directory");
+    }
+    logger.info("sweep of " + configs.size() + " points on " + threads + " threads");
+
+    List<Point> points = new ArrayList<Point>(configs.size());
+    for (int i = 0; i < configs.size(); i++) {
+      Config pointConfig = configs.get(i)
+              .setOutputDir(config.getOutputDir() + File.separator + "sweep_" + i);
+      points.add(new Point(i, pointConfig));
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Point> running = new ArrayList<Point>(points);
+    try {
+      while (!running.isEmpty()) {
+        runStep(pool, running, step);
+
+        List<Point> next = new ArrayList<Point>(running.size());
+        for (Point point : running) {
+          if (point.hasMoreRounds) {
+            next.add(point);
+          }
+        }
+        running = next;
+        if (checkInterval > 0 && running.size() > 1) {
+          stopLosers(running);
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+      for (Point point : running) {
+        point.close();
+      }
+    }
+
+    Collections.sort(points, new Comparator<Point>() {
+      @Override
+      public int compare(Point a, Point b) {
+        if (a.stopped != b.stopped) {
+          return a.stopped ? 1 : -1;
+        }
+        if (a.edgeCut != b.edgeCut) {
+          return a.edgeCut < b.edgeCut ? -1 : 1;
+        }
+        return a.index - b.index;
+      }
+    });
+    writeTable(points);
+
+    Point best = points.get(0);
+    logger.info("best point: " + best.index + ", edge cut: " + best.edgeCut + ", " + describe(best.config));
+    return points;
+  }
+
+  //-------------------------------------------------------------------
+
+  private void runStep(ExecutorService pool, List<Point> points, final int rounds) throws IOException {
+    List<Future<Void>> results = new ArrayList<Future<Void>>(points.size());
+    for (final Point point : points) {
+      results.add(pool.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          point.run(graph, rounds);
+          return null;
+        }
+      }));
+    }
+    try {
+      for (Future<Void> result : results) {
+        result.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the sweep", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IllegalStateException("Sweep point failed", e.getCause());
+    }
+  }
+
+  /**
+   * Stops and removes the points that are too far behind the best one
+   */
+  private void stopLosers(List<Point> points) throws IOException {
+    int best = Integer.MAX_VALUE;
+    for (Point point : points) {
+      best = Math.min(best, point.edgeCut);
+    }
+    double limit = best * (1.0 + config.getSweepStopMargin());
+    for (int i = points.size() - 1; i >= 0; i--) {
+      Point point = points.get(i);
+      if (point.edgeCut > limit) {
+        point.stopped = true;
+        point.close();
+        points.remove(i);
+        logger.info("stopped point " + point.index + " at round " + point.rounds +
+                ", edge cut: " + point.edgeCut + ", best: " + best);
+      }
+    }
+  }
+
+  private void writeTable(List<Point> points) throws IOException {
+    File inputFile = new File(config.getGraphFilePath());
+    String basePath = config.getOutputDir() + File.separator + inputFile.getName() +
+            "_sweep_N_" + points.size() + "_R_" + config.getRounds();
+    List<ResultWriter> writers = ResultWriter.open(basePath, config.getResultFormat(),
+            ResultWriter.MIGRATION_NOTE, config.getFlushInterval(), false,
+            "Point", "T", "D", "A", "NS", "GICP", "Seed", "RNSS", "URSS",
+            "Enhanced", "T-Enh", "Min-T-Enh", "A-Enh", "Iter-Enh",
+            "Schedule", "Reheat-Rate", "Reheat-Factor", "Restart", "Restart-Interval",
+            "Rounds", "Stopped", "Stop-Reason", "Edge-Cut", "Swaps", "Migrations", "Seconds", "Result-File");
+    try {
+      for (Point point : points) {
+        Config c = point.config;
+        for (ResultWriter writer : writers) {
+          writer.write(point.index, c.getTemperature(), c.getDelta(), c.getAlpha(),
+                  c.getNodeSelectionPolicy(), c.getGraphInitialColorPolicy(), c.getSeed(),
+                  c.getRandomNeighborSampleSize(), c.getUniformRandomSampleSize(),
+                  c.getEnhanced(), c.getTempEnh(), c.getMinTempEnh(), c.getAlphaEnh(), c.getIterEnh(),
+                  c.getCoolingSchedule(), c.getReheatRate(), c.getReheatFactor(),
+                  c.getRestart(), c.getRestartInterval(),
+                  point.rounds, point.stopped, point.stopReason != null ? point.stopReason : "-",
+                  point.edgeCut, point.swaps, point.migrations,
+                  String.format("%.3f", point.seconds), point.resultFile);
+        }
+      }
+    } finally {
+      for (ResultWriter writer : writers) {
+        writer.close();
+      }
+    }
+    logger.info("Wrote sweep table " + basePath + ".txt");
+  }
+
+  private static String describe(Config c) {
+    return "T: " + c.getTemperature() + ", D: " + c.getDelta() + ", A: " + c.getAlpha() +
+            ", NS: " + c.getNodeSelectionPolicy() + ", GICP: " + c.getGraphInitialColorPolicy() +
+            ", seed: " + c.getSeed() + ", enhanced: " + c.getEnhanced() +
+            ", schedule: " + c.getCoolingSchedule() +
+            ", restart: " + c.getRestart() + ", restart interval: " + c.getRestartInterval();
+  }
+
+  /**
+   * One point of the grid and the state of its run
+   */
+  public static class Point {
+    private final int index;
+    private final Config config;
+    private Jabeja jabeja; // null before the first and after the last step
+    private boolean hasMoreRounds = true;
+    private boolean stopped; // by the sweep, because it was losing
+    private StopReason stopReason; // of the run itself, null if it was stopped by the sweep
+    private int rounds;
+    private int edgeCut;
+    private int swaps;
+    private int migrations;
+    private double seconds;
+    private String resultFile;
+
+    Point(int index, Config config) {
+      this.index = index;
+      this.config = config;
+    }
+
+    private void run(CsrGraph graph, int count) throws IOException {
+      long start = System.nanoTime();
+      if (jabeja == null) {
+        RandNoGenerator rand = new RandNoGenerator(config.getSeed());
+        int[] colors = new GraphReader(rand).getInitialColors(graph,
+                config.getGraphInitialColorPolicy(), config.getNumPartitions());
+        jabeja = new Jabeja(graph.withColors(colors), config, rand);
+        resultFile = jabeja.getResultBasePath() + ".txt";
+      }
+      hasMoreRounds = jabeja.runRounds(count);
+      rounds = jabeja.getRound();
+      edgeCut = jabeja.getEdgeCut();
+      swaps = jabeja.getNumberOfSwaps();
+      migrations = jabeja.getMigrations();
+      stopReason = jabeja.getStopReason();
+      if (!hasMoreRounds) {
+        close();
+      }
+      seconds += (System.nanoTime() - start) / 1e9;
+    }
+
+    private void close() throws IOException {
+      if (jabeja != null) {
+        jabeja.close();
+        jabeja = null;
+      }
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public Config getConfig() {
+      return config;
+    }
+
+    public boolean isStopped() {
+      return stopped;
+    }
+
+    public StopReason getStopReason() {
+      return stopReason;
+    }
+
+    public int getRounds() {
+      return rounds;
+    }
+
+    public int getEdgeCut() {
+      return edgeCut;
+    }
+
+    public int getSwaps() {
+      return swaps;
+    }
+
+    public int getMigrations() {
+      return migrations;
+    }
+
+    public double getSeconds() {
+      return seconds;
+    }
+
+    public String getResultFile() {
+      return resultFile;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package se.kth.jabeja.anneal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * {@link ExponentialSchedule} that reheats once the run freezes. The swap rate is averaged
+ * over every temperature level of iter rounds. If the mean of a level differs by less than
+ * reheatRate, relative, from the one of the previous level, the run no longer makes
+ * progress at this temperature and it goes back up to the next reheat temperature, if that
+ * is above the current one. A frozen JaBeJa run keeps swapping pairs back and forth, so a
+ * flat swap rate tells more than a low one.
+ * <p>
+ * The k-th reheat temperature is factor^k times the initial one, so reheats get colder,
+ * and they stop once that drops below tMin.
+ */
+public class AdaptiveSchedule extends ExponentialSchedule {
+  private final double reheatRate;
+  private final float factor;
+  private int reheats;
+  private double levelSwapRate; // sum over the rounds of the current level
+  private int levelRounds;
+  private double previousLevelRate = -1; // mean of the previous level, -1 before the first
+
+  public AdaptiveSchedule(float initial, float tMin, float alpha, int iter, double reheatRate, float factor) {
+    super(initial, tMin, alpha, iter);
+    this.reheatRate = reheatRate;
+    this.factor = factor;
+  }
+
+  @Override
+  public void coolDown(int round, double swapRate) {
+    super.coolDown(round, swapRate);
+    levelSwapRate += swapRate;
+    levelRounds++;
+    if (round % getIter() != getIter() - 1) {
+      return;
+    }
+    double levelRate = levelSwapRate / levelRounds;
+    boolean frozen = previousLevelRate >= 0 && Math.abs(levelRate - previousLevelRate) <= reheatRate * previousLevelRate;
+    previousLevelRate = levelRate;
+    levelSwapRate = 0;
+    levelRounds = 0;
+    float next = nextReheat();
+    if (frozen && next >= getMinTemperature() && next > T) {
+      setTemperature(next);
+      reheats++;
+      previousLevelRate = -1;
+    }
+  }
+
+  @Override
+  public boolean isAtFloor() {
+    return T == 0 && nextReheat() < getMinTemperature();
+  }
+
+  @Override
+  public void restart() {
+    super.restart();
+    reheats = 0;
+    previousLevelRate = -1;
+  }
+
+  public int getReheats() {
+    return reheats;
+  }
+
+  @Override
+  public void writeState(DataOutput out) throws IOException {
+    super.writeState(out);
+    out.writeInt(reheats);
+    out.writeDouble(levelSwapRate);
+    out.writeInt(levelRounds);
+    out.writeDouble(previousLevelRate);
+  }
+
+  @Override
+  public void readState(DataInput in) throws IOException {
+    super.readState(in);
+    reheats = in.readInt();
+    levelSwapRate = in.readDouble();
+    levelRounds = in.readInt();
+    previousLevelRate = in.readDouble();
+  }
+
+  //-------------------------------------------------------------------
+
+  private float nextReheat() {
+    return (float) (getInitialTemperature() * Math.pow(factor, reheats + 1));
+  }
+}
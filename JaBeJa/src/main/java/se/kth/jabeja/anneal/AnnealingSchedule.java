@@ -0,0 +1,49 @@
+package se.kth.jabeja.anneal;
+
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Temperature of a run and the acceptance test of the swaps it allows. A run picks its
+ * schedule once, with {@link AnnealingSchedules#create}, so the sample and swap loop
+ * does not branch on the config for every candidate.
+ * <p>
+ * {@link #accept} only reads the temperature and may be called by several threads
+ * during a round, the other methods are called between rounds.
+ */
+public interface AnnealingSchedule {
+  /**
+   * @param oldCost value of the pair with the current colors
+   * @param newCost value of the pair with swapped colors
+   * @param rand    stream of the caller, schedules that draw do so exactly once per call
+   * @return true if the swap may be taken
+   */
+  boolean accept(double oldCost, double newCost, RandNoGenerator rand);
+
+  /**
+   * Cools down after a round
+   *
+   * @param round    index of the round that has ended
+   * @param swapRate swaps of the round per visited node
+   */
+  void coolDown(int round, double swapRate);
+
+  /**
+   * @return true if the temperature does not cool down any further
+   */
+  boolean isAtFloor();
+
+  /**
+   * Resets the temperature to its initial value
+   */
+  void restart();
+
+  float getTemperature();
+
+  void writeState(DataOutput out) throws IOException;
+
+  void readState(DataInput in) throws IOException;
+}
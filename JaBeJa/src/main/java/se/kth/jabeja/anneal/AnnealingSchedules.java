@@ -0,0 +1,38 @@
+package se.kth.jabeja.anneal;
+
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.CoolingSchedule;
+
+/**
+ * Creates the schedule of a run from its config
+ */
+public final class AnnealingSchedules {
+  private AnnealingSchedules() {
+  }
+
+  /**
+   * @return the schedule of the config, AUTO resolved by -enhanced
+   */
+  public static CoolingSchedule resolve(Config config) {
+    CoolingSchedule schedule = config.getCoolingSchedule();
+    if (schedule == CoolingSchedule.AUTO) {
+      return config.getEnhanced() ? CoolingSchedule.EXPONENTIAL : CoolingSchedule.LINEAR;
+    }
+    return schedule;
+  }
+
+  public static AnnealingSchedule create(Config config) {
+    switch (resolve(config)) {
+      case LINEAR:
+        return new LinearSchedule(config.getTemperature(), config.getDelta());
+      case EXPONENTIAL:
+        return new ExponentialSchedule(config.getTempEnh(), config.getMinTempEnh(), config.getAlphaEnh(),
+                config.getIterEnh());
+      case ADAPTIVE:
+        return new AdaptiveSchedule(config.getTempEnh(), config.getMinTempEnh(), config.getAlphaEnh(),
+                config.getIterEnh(), config.getReheatRate(), config.getReheatFactor());
+      default:
+        throw new IllegalArgumentException("Cooling schedule " + config.getCoolingSchedule() + " is not supported");
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package se.kth.jabeja.anneal;
+
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Metropolis acceptance with a temperature that is multiplied by alpha every iter rounds,
+ * until it drops below tMin and is set to 0, after which only better swaps are taken.
+ * <p>
+ * A worse swap is taken if exp(diff / T) &gt; u, with u uniform in [0, 1). u is a multiple of
+ * 2^-53, so if diff / T is below ln(2^-53) the test can only pass for u = 0. The threshold
+ * T ln(2^-53) is computed whenever the temperature changes, which rejects most candidates
+ * of a cool run without calling exp(). Every call still draws u, so runs decide exactly
+ * like with the plain test, for the same seed.
+ */
+public class ExponentialSchedule implements AnnealingSchedule {
+  /**
+   * ln(2^-53) minus a margin for the rounding of diff / T and of exp()
+   */
+  private static final double LN_MIN_UNIFORM = -53 * Math.log(2) - 1e-9;
+
+  private final float initial;
+  private final float tMin;
+  private final float alpha;
+  private final int iter;
+  protected float T;
+  private double rejectBelow; // diff below which exp(diff / T) is below every nonzero u
+
+  public ExponentialSchedule(float initial, float tMin, float alpha, int iter) {
+    this.initial = initial;
+    this.tMin = tMin;
+    this.alpha = alpha;
+    this.iter = iter;
+    setTemperature(initial);
+  }
+
+  public boolean accept(double oldCost, double newCost, RandNoGenerator rand) {
+    double diff = newCost - oldCost;
+    double u = rand.nextDouble(1);
+    if (diff > 0) {
+      return true;
+    }
+    if (diff == 0) {
+      return T > 0; // exp(0) = 1 > u, exp(0 / 0) is NaN
+    }
+    if (diff < rejectBelow) {
+      return u == 0 && Math.exp(diff / T) > 0;
+    }
+    return Math.exp(diff / T) > u;
+  }
+
+  public void coolDown(int round, double swapRate) {
+    if (T >= tMin && round % iter == iter - 1) {
+      T *= alpha;
+      if (T < tMin) {
+        T = 0.0f;
+      }
+      setTemperature(T);
+    }
+  }
+
+  public boolean isAtFloor() {
+    return T == 0;
+  }
+
+  public void restart() {
+    setTemperature(initial);
+  }
+
+  public float getTemperature() {
+    return T;
+  }
+
+  public void writeState(DataOutput out) throws IOException {
+    out.writeFloat(T);
+  }
+
+  public void readState(DataInput in) throws IOException {
+    setTemperature(in.readFloat());
+  }
+
+  //-------------------------------------------------------------------
+
+  protected void setTemperature(float T) {
+    this.T = T;
+    this.rejectBelow = T * LN_MIN_UNIFORM;
+  }
+
+  protected float getInitialTemperature() {
+    return initial;
+  }
+
+  protected float getMinTemperature() {
+    return tMin;
+  }
+
+  protected int getIter() {
+    return iter;
+  }
+}
@@ -0,0 +1,56 @@
+package se.kth.jabeja.anneal;
+
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The schedule of the JaBeJa paper: the temperature drops by delta every round down to 1,
+ * and a swap is taken if its new cost times the temperature exceeds the old one.
+ */
+public class LinearSchedule implements AnnealingSchedule {
+  private final float initial;
+  private final float delta;
+  private float T;
+
+  public LinearSchedule(float initial, float delta) {
+    this.initial = initial;
+    this.delta = delta;
+    this.T = initial;
+  }
+
+  public boolean accept(double oldCost, double newCost, RandNoGenerator rand) {
+    return newCost * T > oldCost;
+  }
+
+  public void coolDown(int round, double swapRate) {
+    if (T > 1) {
+      T -= delta;
+    }
+    if (T < 1) {
+      T = 1;
+    }
+  }
+
+  public boolean isAtFloor() {
+    return T == 1;
+  }
+
+  public void restart() {
+    T = initial;
+  }
+
+  public float getTemperature() {
+    return T;
+  }
+
+  public void writeState(DataOutput out) throws IOException {
+    out.writeFloat(T);
+  }
+
+  public void readState(DataInput in) throws IOException {
+    T = in.readFloat();
+  }
+}
@@ -15,6 +15,51 @@ public class Config {
   private Float alpha;
   private boolean restart;
   private int restartInterval;
+  private int maxRestarts;
+  private int convergenceWindow;
+  private float minSwapRate;
+  private boolean stopAtTempFloor;
+  private int checkpointInterval;
+  private boolean resume;
+  private boolean multilevel;
+  private int coarsenTo;
+  private int maxLevels;
+  private int refineRounds;
+  private float refineTemp;
+  private boolean compareFlat;
+  private String updatesFile;
+  private int localRounds;
+  private float localTemp;
+  private boolean exportPartition;
+  private int exportInterval;
+  private String partitionFile;
+  private boolean metrics;
+  private int metricsInterval;
+  private GraphStorage graphStorage;
+  private int shards;
+  private CoolingSchedule coolingSchedule;
+  private float reheatRate;
+  private float reheatFactor;
+  private GraphOrder graphOrder;
+  private int batchSize;
+  private EngineMode engineMode;
+  private int threads;
+  private boolean syncRounds;
+  private int verifyInterval;
+  private boolean activeSet;
+  private int fullSweepInterval;
+  private ResultFormat resultFormat;
+  private long flushInterval;
+  private boolean asyncResults;
+  private GraphCachePolicy graphCachePolicy;
+  private GraphFormat graphFormat;
+  private int edgeBufferSize;
+  private int ensembleSize;
+  private int ensembleThreads;
+  private String sweepFile;
+  private int sweepThreads;
+  private int sweepCheckInterval;
+  private float sweepStopMargin;
 
   //-----------------Added by Denys Tykhoglo----------------------------
   private boolean enhanced;
@@ -24,6 +69,78 @@ public class Config {
   private int iterEnh;
   //-----------------Added by Denys Tykhoglo----------------------------
 
+  /**
+   * @return a new config with the same values
+   */
+  public Config copy() {
+    Config copy = new Config();
+    copy.numPartitions = numPartitions;
+    copy.rounds = rounds;
+    copy.randomNeighborsSampleSize = randomNeighborsSampleSize;
+    copy.temperature = temperature;
+    copy.delta = delta;
+    copy.seed = seed;
+    copy.uniformRandomSampleSize = uniformRandomSampleSize;
+    copy.graphFile = graphFile;
+    copy.outputDir = outputDir;
+    copy.initColorPolicy = initColorPolicy;
+    copy.nodeSelectionPolicy = nodeSelectionPolicy;
+    copy.alpha = alpha;
+    copy.restart = restart;
+    copy.restartInterval = restartInterval;
+    copy.maxRestarts = maxRestarts;
+    copy.convergenceWindow = convergenceWindow;
+    copy.minSwapRate = minSwapRate;
+    copy.stopAtTempFloor = stopAtTempFloor;
+    copy.checkpointInterval = checkpointInterval;
+    copy.resume = resume;
+    copy.multilevel = multilevel;
+    copy.coarsenTo = coarsenTo;
+    copy.maxLevels = maxLevels;
+    copy.refineRounds = refineRounds;
+    copy.refineTemp = refineTemp;
+    copy.compareFlat = compareFlat;
+    copy.updatesFile = updatesFile;
+    copy.localRounds = localRounds;
+    copy.localTemp = localTemp;
+    copy.exportPartition = exportPartition;
+    copy.exportInterval = exportInterval;
+    copy.partitionFile = partitionFile;
+    copy.metrics = metrics;
+    copy.metricsInterval = metricsInterval;
+    copy.graphStorage = graphStorage;
+    copy.shards = shards;
+    copy.coolingSchedule = coolingSchedule;
+    copy.reheatRate = reheatRate;
+    copy.reheatFactor = reheatFactor;
+    copy.graphOrder = graphOrder;
+    copy.batchSize = batchSize;
+    copy.engineMode = engineMode;
+    copy.threads = threads;
+    copy.syncRounds = syncRounds;
+    copy.verifyInterval = verifyInterval;
+    copy.activeSet = activeSet;
+    copy.fullSweepInterval = fullSweepInterval;
+    copy.resultFormat = resultFormat;
+    copy.flushInterval = flushInterval;
+    copy.asyncResults = asyncResults;
+    copy.graphCachePolicy = graphCachePolicy;
+    copy.graphFormat = graphFormat;
+    copy.edgeBufferSize = edgeBufferSize;
+    copy.ensembleSize = ensembleSize;
+    copy.ensembleThreads = ensembleThreads;
+    copy.sweepFile = sweepFile;
+    copy.sweepThreads = sweepThreads;
+    copy.sweepCheckInterval = sweepCheckInterval;
+    copy.sweepStopMargin = sweepStopMargin;
+    copy.enhanced = enhanced;
+    copy.tempEnh = tempEnh;
+    copy.minTempEnh = minTempEnh;
+    copy.alphaEnh = alphaEnh;
+    copy.iterEnh = iterEnh;
+    return copy;
+  }
+
   public Config setAlpha(Float alpha) {
     this.alpha = alpha;
     return this;
@@ -94,6 +211,231 @@ public class Config {
     return this;
   }
 
+  public Config setMaxRestarts(int maxRestarts) {
+    this.maxRestarts = maxRestarts;
+    return this;
+  }
+
+  public Config setConvergenceWindow(int convergenceWindow) {
+    this.convergenceWindow = convergenceWindow;
+    return this;
+  }
+
+  public Config setMinSwapRate(float minSwapRate) {
+    this.minSwapRate = minSwapRate;
+    return this;
+  }
+
+  public Config setStopAtTempFloor(boolean stopAtTempFloor) {
+    this.stopAtTempFloor = stopAtTempFloor;
+    return this;
+  }
+
+  public Config setCheckpointInterval(int checkpointInterval) {
+    this.checkpointInterval = checkpointInterval;
+    return this;
+  }
+
+  public Config setResume(boolean resume) {
+    this.resume = resume;
+    return this;
+  }
+
+  public Config setMultilevel(boolean multilevel) {
+    this.multilevel = multilevel;
+    return this;
+  }
+
+  public Config setCoarsenTo(int coarsenTo) {
+    this.coarsenTo = coarsenTo;
+    return this;
+  }
+
+  public Config setMaxLevels(int maxLevels) {
+    this.maxLevels = maxLevels;
+    return this;
+  }
+
+  public Config setRefineRounds(int refineRounds) {
+    this.refineRounds = refineRounds;
+    return this;
+  }
+
+  public Config setRefineTemp(float refineTemp) {
+    this.refineTemp = refineTemp;
+    return this;
+  }
+
+  public Config setCompareFlat(boolean compareFlat) {
+    this.compareFlat = compareFlat;
+    return this;
+  }
+
+  public Config setUpdatesFile(String updatesFile) {
+    this.updatesFile = updatesFile;
+    return this;
+  }
+
+  public Config setLocalRounds(int localRounds) {
+    this.localRounds = localRounds;
+    return this;
+  }
+
+  public Config setLocalTemp(float localTemp) {
+    this.localTemp = localTemp;
+    return this;
+  }
+
+  public Config setExportPartition(boolean exportPartition) {
+    this.exportPartition = exportPartition;
+    return this;
+  }
+
+  public Config setExportInterval(int exportInterval) {
+    this.exportInterval = exportInterval;
+    return this;
+  }
+
+  public Config setPartitionFile(String partitionFile) {
+    this.partitionFile = partitionFile;
+    return this;
+  }
+
+  public Config setMetrics(boolean metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  public Config setMetricsInterval(int metricsInterval) {
+    this.metricsInterval = metricsInterval;
+    return this;
+  }
+
+  public Config setGraphStorage(GraphStorage graphStorage) {
+    this.graphStorage = graphStorage;
+    return this;
+  }
+
+  public Config setShards(int shards) {
+    this.shards = shards;
+    return this;
+  }
+
+  public Config setCoolingSchedule(CoolingSchedule coolingSchedule) {
+    this.coolingSchedule = coolingSchedule;
+    return this;
+  }
+
+  public Config setReheatRate(float reheatRate) {
+    this.reheatRate = reheatRate;
+    return this;
+  }
+
+  public Config setReheatFactor(float reheatFactor) {
+    this.reheatFactor = reheatFactor;
+    return this;
+  }
+
+  public Config setGraphOrder(GraphOrder graphOrder) {
+    this.graphOrder = graphOrder;
+    return this;
+  }
+
+  public Config setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  public Config setEngineMode(EngineMode engineMode) {
+    this.engineMode = engineMode;
+    return this;
+  }
+
+  public Config setThreads(int threads) {
+    this.threads = threads;
+    return this;
+  }
+
+  public Config setSyncRounds(boolean syncRounds) {
+    this.syncRounds = syncRounds;
+    return this;
+  }
+
+  public Config setVerifyInterval(int verifyInterval) {
+    this.verifyInterval = verifyInterval;
+    return this;
+  }
+
+  public Config setActiveSet(boolean activeSet) {
+    this.activeSet = activeSet;
+    return this;
+  }
+
+  public Config setFullSweepInterval(int fullSweepInterval) {
+    this.fullSweepInterval = fullSweepInterval;
+    return this;
+  }
+
+  public Config setEnsembleSize(int ensembleSize) {
+    this.ensembleSize = ensembleSize;
+    return this;
+  }
+
+  public Config setEnsembleThreads(int ensembleThreads) {
+    this.ensembleThreads = ensembleThreads;
+    return this;
+  }
+
+  public Config setSweepFile(String sweepFile) {
+    this.sweepFile = sweepFile;
+    return this;
+  }
+
+  public Config setSweepThreads(int sweepThreads) {
+    this.sweepThreads = sweepThreads;
+    return this;
+  }
+
+  public Config setSweepCheckInterval(int sweepCheckInterval) {
+    this.sweepCheckInterval = sweepCheckInterval;
+    return this;
+  }
+
+  public Config setSweepStopMargin(float sweepStopMargin) {
+    this.sweepStopMargin = sweepStopMargin;
+    return this;
+  }
+
+  public Config setResultFormat(ResultFormat resultFormat) {
+    this.resultFormat = resultFormat;
+    return this;
+  }
+
+  public Config setFlushInterval(long flushInterval) {
+    this.flushInterval = flushInterval;
+    return this;
+  }
+
+  public Config setAsyncResults(boolean asyncResults) {
+    this.asyncResults = asyncResults;
+    return this;
+  }
+
+  public Config setGraphCachePolicy(GraphCachePolicy graphCachePolicy) {
+    this.graphCachePolicy = graphCachePolicy;
+    return this;
+  }
+
+  public Config setGraphFormat(GraphFormat graphFormat) {
+    this.graphFormat = graphFormat;
+    return this;
+  }
+
+  public Config setEdgeBufferSize(int edgeBufferSize) {
+    this.edgeBufferSize = edgeBufferSize;
+    return this;
+  }
+
   //-----------------Added by Denys Tykhoglo----------------------------
   public Config setEnhanced(boolean enhanced) {
     this.enhanced = enhanced;
@@ -199,6 +541,238 @@ public class Config {
 
   }
 
+  public int getMaxRestarts() {
+    return maxRestarts;
+  }
+
+  public int getConvergenceWindow() {
+    return convergenceWindow;
+  }
+
+  public float getMinSwapRate() {
+    return minSwapRate;
+  }
+
+  public boolean getStopAtTempFloor() {
+    return stopAtTempFloor;
+  }
+
+  public int getCheckpointInterval() {
+    return checkpointInterval;
+  }
+
+  public boolean getResume() {
+    return resume;
+  }
+
+  public boolean getMultilevel() {
+    return multilevel;
+  }
+
+  public int getCoarsenTo() {
+    return coarsenTo;
+  }
+
+  public int getMaxLevels() {
+    return maxLevels;
+  }
+
+  public int getRefineRounds() {
+    return refineRounds;
+  }
+
+  public float getRefineTemp() {
+    return refineTemp;
+  }
+
+  public boolean getCompareFlat() {
+    return compareFlat;
+  }
+
+  /**
+   * @return file with the batches of graph changes, null if the graph does not change
+   */
+  public String getUpdatesFile() {
+    return updatesFile;
+  }
+
+  public int getLocalRounds() {
+    return localRounds;
+  }
+
+  public float getLocalTemp() {
+    return localTemp;
+  }
+
+  public boolean getExportPartition() {
+    return exportPartition;
+  }
+
+  /**
+   * @return with exportPartition, write the partition every this many rounds, 0 only writes the final one
+   */
+  public int getExportInterval() {
+    return exportInterval;
+  }
+
+  /**
+   * @return partition file to evaluate, null if none
+   */
+  public String getPartitionFile() {
+    return partitionFile;
+  }
+
+  /**
+   * @return true if the rounds are instrumented and their metrics are exposed through JMX
+   */
+  public boolean getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * @return with metrics, write a row to the metrics file every this many rounds, 0 writes no file
+   */
+  public int getMetricsInterval() {
+    return metricsInterval;
+  }
+
+  public GraphStorage getGraphStorage() {
+    if (graphStorage == null) {
+      throw new NullPointerException("Graph storage is not defined.");
+    }
+    return graphStorage;
+  }
+
+  /**
+   * @return number of simulated hosts of a distributed run, 0 for a regular run
+   */
+  public int getShards() {
+    return shards;
+  }
+
+  public CoolingSchedule getCoolingSchedule() {
+    if (coolingSchedule == null) {
+      throw new NullPointerException("Cooling schedule is not defined.");
+    }
+    return coolingSchedule;
+  }
+
+  /**
+   * @return relative change of the swap rate of a temperature level below which the
+   * ADAPTIVE schedule reheats
+   */
+  public float getReheatRate() {
+    return reheatRate;
+  }
+
+  /**
+   * @return temperature of a reheat relative to the one of the previous reheat
+   */
+  public float getReheatFactor() {
+    return reheatFactor;
+  }
+
+  public GraphOrder getGraphOrder() {
+    if (graphOrder == null) {
+      throw new NullPointerException("Graph order is not defined.");
+    }
+    return graphOrder;
+  }
+
+  /**
+   * @return nodes per batch of a sequential round, 0 to visit every node in one pass
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public EngineMode getEngineMode() {
+    if (engineMode == null) {
+      throw new NullPointerException("Engine mode is not defined.");
+    }
+    return engineMode;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public boolean getSyncRounds() {
+    return syncRounds;
+  }
+
+  public int getVerifyInterval() {
+    return verifyInterval;
+  }
+
+  public boolean getActiveSet() {
+    return activeSet;
+  }
+
+  public int getFullSweepInterval() {
+    return fullSweepInterval;
+  }
+
+  public int getEnsembleSize() {
+    return ensembleSize;
+  }
+
+  public int getEnsembleThreads() {
+    return ensembleThreads;
+  }
+
+  /**
+   * @return the parameter grid file, null if there is no sweep
+   */
+  public String getSweepFile() {
+    return sweepFile;
+  }
+
+  public int getSweepThreads() {
+    return sweepThreads;
+  }
+
+  public int getSweepCheckInterval() {
+    return sweepCheckInterval;
+  }
+
+  public float getSweepStopMargin() {
+    return sweepStopMargin;
+  }
+
+  public ResultFormat getResultFormat() {
+    if (resultFormat == null) {
+      throw new NullPointerException("Result format is not defined.");
+    }
+    return resultFormat;
+  }
+
+  public long getFlushInterval() {
+    return flushInterval;
+  }
+
+  public boolean getAsyncResults() {
+    return asyncResults;
+  }
+
+  public GraphCachePolicy getGraphCachePolicy() {
+    if (graphCachePolicy == null) {
+      throw new NullPointerException("Graph cache policy is not defined.");
+    }
+    return graphCachePolicy;
+  }
+
+  public GraphFormat getGraphFormat() {
+    if (graphFormat == null) {
+      throw new NullPointerException("Graph format is not defined.");
+    }
+    return graphFormat;
+  }
+
+  public int getEdgeBufferSize() {
+    return edgeBufferSize;
+  }
+
   public Float getAlpha() {
     if (alpha == null) {
     }
@@ -0,0 +1,38 @@
+package se.kth.jabeja.config;
+
+/**
+ * How the temperature of a run cools down, and how it decides on a swap
+ */
+public enum CoolingSchedule {
+    /**
+     * EXPONENTIAL with -enhanced, otherwise LINEAR
+     */
+    AUTO("AUTO"),
+    /**
+     * Starts at -temp and subtracts -delta every round, down to 1. A swap is taken if the
+     * new cost times the temperature exceeds the old one
+     */
+    LINEAR("LINEAR"),
+    /**
+     * Starts at -temp_enh and multiplies by -alpha_enh every -iter_enh rounds, until it
+     * drops below -min_temp_enh. A worse swap is taken with probability exp(diff / T)
+     */
+    EXPONENTIAL("EXPONENTIAL"),
+    /**
+     * EXPONENTIAL that reheats when the swap rate of a temperature level stays within
+     * -reheatRate of the previous level, every reheat to -reheatFactor times the
+     * temperature of the previous one
+     */
+    ADAPTIVE("ADAPTIVE");
+
+    String name;
+
+    CoolingSchedule(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,26 @@
+package se.kth.jabeja.config;
+
+/**
+ * How the color degrees of a node are computed while evaluating swaps
+ */
+public enum EngineMode {
+    /**
+     * Scan the neighbour list of the node for every query
+     */
+    SCAN("SCAN"),
+    /**
+     * Keep a per-node count of neighbours per color, updated on every swap
+     */
+    HISTOGRAM("HISTOGRAM");
+
+    String name;
+
+    EngineMode(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,31 @@
+package se.kth.jabeja.config;
+
+/**
+ * Use of the binary graph cache, a pre-processed copy of the graph file
+ * stored next to it
+ */
+public enum GraphCachePolicy {
+    /**
+     * Load the cache if it is up to date, otherwise parse the graph and write the cache
+     */
+    USE("USE"),
+    /**
+     * Always parse the graph and write a new cache
+     */
+    REBUILD("REBUILD"),
+    /**
+     * Always parse the graph, neither read nor write the cache
+     */
+    BYPASS("BYPASS");
+
+    String name;
+
+    GraphCachePolicy(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
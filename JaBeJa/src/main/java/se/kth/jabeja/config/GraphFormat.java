@@ -0,0 +1,30 @@
+package se.kth.jabeja.config;
+
+/**
+ * Format of the input graph file
+ */
+public enum GraphFormat {
+    /**
+     * EDGE_LIST for files ending with .net, .edges, .el or .tsv, METIS otherwise
+     */
+    AUTO("AUTO"),
+    /**
+     * METIS/Chaco adjacency format, line i lists the neighbours of node i
+     */
+    METIS("METIS"),
+    /**
+     * One edge per line, given as two node ids
+     */
+    EDGE_LIST("EDGE_LIST");
+
+    String name;
+
+    GraphFormat(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
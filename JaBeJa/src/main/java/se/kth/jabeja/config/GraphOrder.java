@@ -0,0 +1,36 @@
+package se.kth.jabeja.config;
+
+/**
+ * How the nodes are renumbered before a run, so that nodes processed one after the other
+ * and their neighbours are close in memory
+ */
+public enum GraphOrder {
+    /**
+     * The order of the graph file
+     */
+    NONE("NONE"),
+    /**
+     * Breadth first, from the node with the lowest degree of every component
+     */
+    BFS("BFS"),
+    /**
+     * Reverse Cuthill-McKee, breadth first from a peripheral node with the neighbours of every
+     * node by ascending degree, reversed. Keeps the bandwidth of the adjacency matrix small
+     */
+    RCM("RCM"),
+    /**
+     * By descending degree, so the hubs most nodes read share a few cache lines
+     */
+    DEGREE("DEGREE");
+
+    String name;
+
+    GraphOrder(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
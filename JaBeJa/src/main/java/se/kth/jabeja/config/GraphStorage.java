@@ -0,0 +1,31 @@
+package se.kth.jabeja.config;
+
+/**
+ * Where the topology and the colors of the graph are kept while it is partitioned
+ */
+public enum GraphStorage {
+    /**
+     * Java arrays on the heap, the fastest for graphs that fit in the heap
+     */
+    HEAP("HEAP"),
+    /**
+     * Direct buffers outside of the heap, the graph is parsed on the heap and copied
+     */
+    DIRECT("DIRECT"),
+    /**
+     * The topology is mapped from the binary graph cache, which is written first if it is
+     * missing or out of date, the colors are kept in direct buffers
+     */
+    MAPPED("MAPPED");
+
+    String name;
+
+    GraphStorage(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,196 @@
+package se.kth.jabeja.config;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Values to try for some of the parameters of a {@link Config}. The grid is the
+ * cartesian product of all values, the last parameter changes fastest.
+ * <p>
+ * A grid file has one parameter per line, named like the command line option
+ * without the dash, followed by a comma separated list of values:
+ * <pre>
+ * # lines starting with # are comments
+ * temp = 1.5, 2, 3
+ * alpha = 1, 2
+ * nodeSelectionPolicy = HYBRID, LOCAL
+ * </pre>
+ */
+public class ParameterGrid {
+  private static final List<String> PARAMETERS = Arrays.asList(
+          "temp", "delta", "alpha", "seed", "randNeighborsSampleSize", "uniformRandSampleSize",
+          "nodeSelectionPolicy", "graphInitColorSelectionPolicy",
+          "enhanced", "temp_enh", "min_temp_enh", "alpha_enh", "iter_enh",
+          "schedule", "reheatRate", "reheatFactor",
+          "restart", "restart_interval");
+
+  private final Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+
+  public static ParameterGrid parse(File file) throws IOException {
+    ParameterGrid grid = new ParameterGrid();
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    try {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        int separator = line.indexOf('=');
+        if (separator < 0) {
+          throw new IOException(file + ":" + lineNumber + ": expected <parameter> = <values>");
+        }
+        try {
+          grid.add(line.substring(0, separator).trim(), line.substring(separator + 1).split(","));
+        } catch (IllegalArgumentException e) {
+          throw new IOException(file + ":" + lineNumber + ": " + e.getMessage());
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return grid;
+  }
+
+  /**
+   * Adds a parameter, or more values for a parameter that is already in the grid
+   */
+  public ParameterGrid add(String parameter, String... parameterValues) {
+    if (!PARAMETERS.contains(parameter)) {
+      throw new IllegalArgumentException("Parameter " + parameter + " is not supported");
+    }
+    List<String> list = values.get(parameter);
+    if (list == null) {
+      list = new ArrayList<String>();
+      values.put(parameter, list);
+    }
+    for (String value : parameterValues) {
+      value = value.trim();
+      // fail here rather than when the grid is expanded
+      apply(new Config(), parameter, value);
+      list.add(value);
+    }
+    return this;
+  }
+
+  /**
+   * @return number of configs of the grid
+   */
+  public int size() {
+    int size = 1;
+    for (List<String> list : values.values()) {
+      size *= list.size();
+    }
+    return size;
+  }
+
+  /**
+   * @return one copy of the base config for every point of the grid
+   */
+  public List<Config> expand(Config base) {
+    List<Config> configs = new ArrayList<Config>(size());
+    configs.add(base.copy());
+    for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+      List<Config> expanded = new ArrayList<Config>(configs.size() * entry.getValue().size());
+      for (Config config : configs) {
+        for (String value : entry.getValue()) {
+          expanded.add(apply(config.copy(), entry.getKey(), value));
+        }
+      }
+      configs = expanded;
+    }
+    return configs;
+  }
+
+  //-------------------------------------------------------------------
+
+  private static Config apply(Config config, String parameter, String value) {
+    try {
+      switch (parameter) {
+        case "temp":
+          return config.setTemperature(Float.parseFloat(value));
+        case "delta":
+          return config.setDelta(Float.parseFloat(value));
+        case "alpha":
+          return config.setAlpha(Float.parseFloat(value));
+        case "seed":
+          return config.setSeed(Integer.parseInt(value));
+        case "randNeighborsSampleSize":
+          return config.setRandNeighborsSampleSize(Integer.parseInt(value));
+        case "uniformRandSampleSize":
+          return config.setUniformRandSampleSize(Integer.parseInt(value));
+        case "nodeSelectionPolicy":
+          return config.setNodeSelectionPolicy(parseNodeSelectionPolicy(value));
+        case "graphInitColorSelectionPolicy":
+          return config.setGraphInitialColorPolicy(parseGraphInitColorPolicy(value));
+        case "enhanced":
+          return config.setEnhanced(parseBoolean(value));
+        case "temp_enh":
+          return config.setTempEnh(Float.parseFloat(value));
+        case "min_temp_enh":
+          return config.setMinTempEnh(Float.parseFloat(value));
+        case "alpha_enh":
+          return config.setAlphaEnh(Float.parseFloat(value));
+        case "iter_enh":
+          return config.setIterEnh(Integer.parseInt(value));
+        case "schedule":
+          return config.setCoolingSchedule(parseCoolingSchedule(value));
+        case "reheatRate":
+          return config.setReheatRate(Float.parseFloat(value));
+        case "reheatFactor":
+          return config.setReheatFactor(Float.parseFloat(value));
+        case "restart":
+          return config.setRestart(parseBoolean(value));
+        case "restart_interval":
+          return config.setRestartInterval(Integer.parseInt(value));
+        default:
+          throw new IllegalArgumentException("Parameter " + parameter + " is not supported");
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value " + value + " for " + parameter);
+    }
+  }
+
+  private static NodeSelectionPolicy parseNodeSelectionPolicy(String value) {
+    for (NodeSelectionPolicy policy : NodeSelectionPolicy.values()) {
+      if (value.compareToIgnoreCase(policy.toString()) == 0) {
+        return policy;
+      }
+    }
+    throw new IllegalArgumentException("Node selection policy " + value + " is not supported");
+  }
+
+  private static GraphInitColorPolicy parseGraphInitColorPolicy(String value) {
+    for (GraphInitColorPolicy policy : GraphInitColorPolicy.values()) {
+      if (value.compareToIgnoreCase(policy.toString()) == 0) {
+        return policy;
+      }
+    }
+    throw new IllegalArgumentException("Initial color selection policy " + value + " is not supported");
+  }
+
+  private static CoolingSchedule parseCoolingSchedule(String value) {
+    for (CoolingSchedule schedule : CoolingSchedule.values()) {
+      if (value.compareToIgnoreCase(schedule.toString()) == 0) {
+        return schedule;
+      }
+    }
+    throw new IllegalArgumentException("Cooling schedule " + value + " is not supported");
+  }
+
+  private static boolean parseBoolean(String value) {
+    if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+      return Boolean.parseBoolean(value);
+    }
+    throw new IllegalArgumentException("Expected true or false, got " + value);
+  }
+}
@@ -0,0 +1,36 @@
+package se.kth.jabeja.config;
+
+/**
+ * Format of the per round result file
+ */
+public enum ResultFormat {
+    /**
+     * Tab delimited columns with a commented header, as read by graph.gnuplot
+     */
+    TEXT("TEXT", ".txt"),
+    /**
+     * Comma separated values with a header line
+     */
+    CSV("CSV", ".csv"),
+    /**
+     * One JSON object per round
+     */
+    JSON("JSON", ".jsonl");
+
+    String name;
+    String extension;
+
+    ResultFormat(String name, String extension) {
+        this.name = name;
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,17 @@
+package se.kth.jabeja.cost;
+
+/**
+ * Energy function of a swap. JaBeJa compares the value of the pair (p, q) with
+ * their current colors, pairValue(d_pp, d_qq), against the value after swapping,
+ * pairValue(d_pq, d_qp), where d_xy is the number of neighbours of x with the
+ * color of y.
+ */
+public interface CostFunction {
+
+  /**
+   * @param d1 neighbours of the first node having its (new) color
+   * @param d2 neighbours of the second node having its (new) color
+   * @return value of the pair, higher is better
+   */
+  double pairValue(int d1, int d2);
+}
@@ -0,0 +1,32 @@
+package se.kth.jabeja.cost;
+
+/**
+ * The energy function of the JaBeJa paper, d1^alpha + d2^alpha.
+ * The powers are looked up in a table of d^alpha for d in [0, maxDegree],
+ * larger degrees fall back to {@link Math#pow(double, double)}. A negative
+ * degree means the degree counters are inconsistent and is rejected.
+ */
+public final class PowerCost implements CostFunction {
+  private final double alpha;
+  private final double[] powers;
+
+  public PowerCost(double alpha, int maxDegree) {
+    this.alpha = alpha;
+    this.powers = new double[maxDegree + 1];
+    for (int d = 0; d <= maxDegree; d++) {
+      powers[d] = Math.pow(d, alpha);
+    }
+  }
+
+  public double power(int d) {
+    if (d < 0) {
+      throw new IllegalStateException("Negative degree " + d);
+    }
+    return d < powers.length ? powers[d] : Math.pow(d, alpha);
+  }
+
+  @Override
+  public double pairValue(int d1, int d2) {
+    return power(d1) + power(d2);
+  }
+}
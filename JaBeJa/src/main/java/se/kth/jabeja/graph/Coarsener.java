@@ -0,0 +1,174 @@
+package se.kth.jabeja.graph;
+
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.util.Arrays;
+
+/**
+ * Builds a coarser version of a graph by heavy edge matching.
+ * <p>
+ * Nodes are visited in random order and every unmatched node is matched with the
+ * unmatched neighbour of the same weight it shares the heaviest edge with. Every matched
+ * pair and every node left unmatched becomes one coarse node, which weighs as much as
+ * its fine nodes together. Edges inside a pair disappear, all fine edges between two
+ * coarse nodes are merged into one coarse edge weighing as much as they do together.
+ * The edge cut of a coloring of the coarse graph is therefore the edge cut of its
+ * projection onto the fine graph, while a coarse round only visits one adjacency entry
+ * per pair of neighbouring coarse nodes.
+ * <p>
+ * Only nodes of equal weight are matched, so all coarse nodes weigh a power of two and
+ * JaBeJa, which only swaps nodes of equal weight, finds enough partners on the coarse
+ * graph without changing the size of the partitions.
+ */
+public class Coarsener {
+  private final CsrGraph fine;
+  private final CsrGraph coarse;
+  private final int[] map; // fine node -> coarse node
+
+  public Coarsener(CsrGraph fine, RandNoGenerator rand) {
+    this.fine = fine;
+    int n = fine.size();
+    int[] match = match(fine, rand);
+
+    this.map = new int[n];
+    Arrays.fill(map, -1);
+    int[] firstMember = new int[n];
+    int coarseSize = 0;
+    for (int v = 0; v < n; v++) {
+      if (map[v] == -1) {
+        map[v] = coarseSize;
+        map[match[v]] = coarseSize;
+        firstMember[coarseSize] = v;
+        coarseSize++;
+      }
+    }
+
+    int[] ids = new int[coarseSize];
+    int[] weights = new int[coarseSize];
+    int[] offsets = new int[coarseSize + 1];
+    // a coarse graph never has more entries than its fine graph, the arrays are trimmed below
+    int[] adjacency = new int[n > 0 ? fine.neighbourEnd(n - 1) : 0];
+    int[] edgeWeights = new int[adjacency.length];
+    int[] merged = new int[coarseSize]; // weight of the edge from the current coarse node to each neighbour
+    for (int c = 0; c < coarseSize; c++) {
+      int v = firstMember[c];
+      int u = match[v];
+      ids[c] = c + 1;
+      weights[c] = fine.getNodeWeight(v) + (u != v ? fine.getNodeWeight(u) : 0);
+      int end = addExternal(v, c, merged, adjacency, offsets[c]);
+      if (u != v) {
+        end = addExternal(u, c, merged, adjacency, end);
+      }
+      Arrays.sort(adjacency, offsets[c], end);
+      for (int i = offsets[c]; i < end; i++) {
+        edgeWeights[i] = merged[adjacency[i]];
+        merged[adjacency[i]] = 0;
+      }
+      offsets[c + 1] = end;
+    }
+    int entries = offsets[coarseSize];
+    this.coarse = new CsrGraph(ids, offsets, Arrays.copyOf(adjacency, entries), new int[coarseSize], weights,
+            Arrays.copyOf(edgeWeights, entries));
+  }
+
+  public CsrGraph getFineGraph() {
+    return fine;
+  }
+
+  public CsrGraph getCoarseGraph() {
+    return coarse;
+  }
+
+  /**
+   * @return index of the coarse node that contains the fine node v
+   */
+  public int getCoarseNode(int v) {
+    return map[v];
+  }
+
+  /**
+   * @param colored the coarse graph, or a graph created from it by {@link CsrGraph#withColors(int[])}
+   * @return colors of the fine nodes, each one gets the current color of its coarse node
+   */
+  public int[] projectColors(Graph colored) {
+    if (colored.size() != coarse.size()) {
+      throw new IllegalArgumentException("Expected a graph of " + coarse.size() + " nodes");
+    }
+    int[] colors = new int[map.length];
+    for (int v = 0; v < map.length; v++) {
+      colors[v] = colored.getColor(map[v]);
+    }
+    return colors;
+  }
+
+  //-------------------------------------------------------------------
+
+  /**
+   * @return the partner of every node, or the node itself if it is not matched
+   */
+  private static int[] match(CsrGraph graph, RandNoGenerator rand) {
+    int n = graph.size();
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    for (int i = n - 1; i > 0; i--) {
+      int j = rand.nextInt(i + 1);
+      int tmp = order[i];
+      order[i] = order[j];
+      order[j] = tmp;
+    }
+
+    int[] match = new int[n];
+    Arrays.fill(match, -1);
+    int[] shared = new int[n]; // edges between the current node and each neighbour
+    for (int u : order) {
+      if (match[u] != -1) {
+        continue;
+      }
+      int weight = graph.getNodeWeight(u);
+      int start = graph.neighbourStart(u);
+      int end = graph.neighbourEnd(u);
+      for (int i = start; i < end; i++) {
+        int w = graph.neighbourAt(i);
+        if (w != u && match[w] == -1 && graph.getNodeWeight(w) == weight) {
+          shared[w] += graph.edgeWeightAt(i);
+        }
+      }
+      int best = u;
+      int bestShared = 0;
+      for (int i = start; i < end; i++) {
+        int w = graph.neighbourAt(i);
+        if (shared[w] > bestShared) {
+          best = w;
+          bestShared = shared[w];
+        }
+      }
+      for (int i = start; i < end; i++) {
+        shared[graph.neighbourAt(i)] = 0;
+      }
+      match[u] = best;
+      match[best] = u;
+    }
+    return match;
+  }
+
+  /**
+   * Adds the weights of the edges of fine node v to coarse nodes other than c to merged,
+   * and every coarse neighbour seen for the first time at entry
+   *
+   * @return the next free entry
+   */
+  private int addExternal(int v, int c, int[] merged, int[] adjacency, int entry) {
+    for (int i = fine.neighbourStart(v), end = fine.neighbourEnd(v); i < end; i++) {
+      int w = map[fine.neighbourAt(i)];
+      if (w != c) {
+        if (merged[w] == 0) {
+          adjacency[entry++] = w;
+        }
+        merged[w] += fine.edgeWeightAt(i);
+      }
+    }
+    return entry;
+  }
+}
@@ -0,0 +1,65 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * Number of neighbours per color for every node of a {@link Graph}, weighted by the
+ * edge weights.
+ * The k counters of node v are stored contiguously at [v * k, v * k + k).
+ * The histogram has to be told about every color change through
+ * {@link #recolor(int, int, int)}, which costs O(degree).
+ */
+public class ColorHistogram {
+  private final Graph graph;
+  private final int numColors;
+  private final int[] counts;
+
+  public ColorHistogram(Graph graph, int numColors) {
+    if ((long) graph.size() * numColors > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many counters for " + graph.size() + " nodes and " + numColors + " colors");
+    }
+    this.graph = graph;
+    this.numColors = numColors;
+    this.counts = new int[graph.size() * numColors];
+    rebuild();
+  }
+
+  /**
+   * Recounts all the histograms from the current colors of the graph
+   */
+  public void rebuild() {
+    Arrays.fill(counts, 0);
+    for (int v = 0; v < graph.size(); v++) {
+      int base = v * numColors;
+      for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+        counts[base + graph.getColor(graph.neighbourAt(i))] += graph.edgeWeightAt(i);
+      }
+    }
+  }
+
+  /**
+   * @return how many neighbours of node v have the given color
+   */
+  public int getDegree(int v, int color) {
+    return counts[v * numColors + color];
+  }
+
+  /**
+   * Updates the histograms of the neighbours of v after v changed color
+   */
+  public void recolor(int v, int oldColor, int newColor) {
+    for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+      moveNeighbour(graph.neighbourAt(i), oldColor, newColor, graph.edgeWeightAt(i));
+    }
+  }
+
+  /**
+   * Moves one neighbour of node w, connected by an edge of the given weight, from
+   * oldColor to newColor
+   */
+  public void moveNeighbour(int w, int oldColor, int newColor, int weight) {
+    int base = w * numColors;
+    counts[base + oldColor] -= weight;
+    counts[base + newColor] += weight;
+  }
+}
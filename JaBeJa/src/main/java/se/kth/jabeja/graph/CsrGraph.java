@@ -0,0 +1,381 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * Graph stored in compressed sparse row form.
+ * Nodes are addressed by a dense index in [0, size()); the neighbours of node v
+ * are the entries of the adjacency array in [neighbourStart(v), neighbourEnd(v)).
+ * The original node ids of the input file are kept in a separate array.
+ * <p>
+ * Edges can have weights, stored per adjacency entry, e.g. in the coarse graphs built by
+ * {@link Coarsener}. A neighbour listed several times also stands for an edge of that
+ * weight. Nodes can have weights as well, by default every node and edge weighs 1.
+ * <p>
+ * The nodes can be renumbered with {@link #permute(int[])}, the graph then remembers the
+ * position of every node in the graph file.
+ */
+public class CsrGraph implements Graph {
+  private final int[] ids;
+  private final int[] offsets;
+  private final int[] adjacency;
+  private final int[] colors;
+  private final int[] initColors;
+  private final int[] nodeWeights; // null if every node weighs 1
+  private final int[] edgeWeights; // weight of every adjacency entry, null if every edge weighs 1
+  private final int[] fileIndices; // null if node v is the v-th node of the graph file
+  private final boolean selfLoops;
+  private final boolean parallelEdges;
+
+  public CsrGraph(int[] ids, int[] offsets, int[] adjacency, int[] colors) {
+    this(ids, offsets, adjacency, colors, null);
+  }
+
+  /**
+   * @param nodeWeights weight of every node, null if every node weighs 1
+   */
+  public CsrGraph(int[] ids, int[] offsets, int[] adjacency, int[] colors, int[] nodeWeights) {
+    this(ids, offsets, adjacency, colors, nodeWeights, null);
+  }
+
+  /**
+   * @param nodeWeights weight of every node, null if every node weighs 1
+   * @param edgeWeights weight of every adjacency entry, the same for both entries of an
+   *                    edge, null if every edge weighs 1
+   */
+  public CsrGraph(int[] ids, int[] offsets, int[] adjacency, int[] colors, int[] nodeWeights, int[] edgeWeights) {
+    if (offsets.length != ids.length + 1 || colors.length != ids.length
+            || (nodeWeights != null && nodeWeights.length != ids.length)
+            || (edgeWeights != null && edgeWeights.length != adjacency.length)) {
+      throw new IllegalArgumentException("Inconsistent CSR arrays");
+    }
+    this.ids = ids;
+    this.offsets = offsets;
+    this.adjacency = adjacency;
+    this.colors = colors;
+    this.initColors = Arrays.copyOf(colors, colors.length);
+    this.nodeWeights = nodeWeights;
+    this.edgeWeights = edgeWeights;
+    this.fileIndices = null;
+    this.selfLoops = findSelfLoops();
+    this.parallelEdges = findParallelEdges();
+  }
+
+  private CsrGraph(CsrGraph topology, int[] colors) {
+    if (colors.length != topology.ids.length) {
+      throw new IllegalArgumentException("Expected " + topology.ids.length + " colors, got " + colors.length);
+    }
+    this.ids = topology.ids;
+    this.offsets = topology.offsets;
+    this.adjacency = topology.adjacency;
+    this.colors = colors;
+    this.initColors = Arrays.copyOf(colors, colors.length);
+    this.nodeWeights = topology.nodeWeights;
+    this.edgeWeights = topology.edgeWeights;
+    this.fileIndices = topology.fileIndices;
+    this.selfLoops = topology.selfLoops;
+    this.parallelEdges = topology.parallelEdges;
+  }
+
+  private CsrGraph(int[] ids, int[] offsets, int[] adjacency, int[] colors, int[] initColors, int[] nodeWeights,
+                   int[] edgeWeights, int[] fileIndices, boolean selfLoops, boolean parallelEdges) {
+    this.ids = ids;
+    this.offsets = offsets;
+    this.adjacency = adjacency;
+    this.colors = colors;
+    this.initColors = initColors;
+    this.nodeWeights = nodeWeights;
+    this.edgeWeights = edgeWeights;
+    this.fileIndices = fileIndices;
+    this.selfLoops = selfLoops;
+    this.parallelEdges = parallelEdges;
+  }
+
+  /**
+   * Creates a graph with the same nodes and edges but its own colors. The id, offset and
+   * adjacency arrays are never modified, so they are shared instead of copied and any number
+   * of graphs created this way can be partitioned concurrently.
+   *
+   * @param colors initial colors, used as is
+   */
+  public CsrGraph withColors(int[] colors) {
+    return new CsrGraph(this, colors);
+  }
+
+  /**
+   * Creates a copy with the nodes renumbered, node v of the copy is node order[v] of this
+   * graph. Ids, colors, initial colors and weights move with the nodes, the neighbours of
+   * every node are sorted by their new index.
+   *
+   * @param order a permutation of [0, size())
+   */
+  public CsrGraph permute(int[] order) {
+    int n = ids.length;
+    if (order.length != n) {
+      throw new IllegalArgumentException("Expected " + n + " nodes, got " + order.length);
+    }
+    int[] rank = new int[n];
+    Arrays.fill(rank, -1);
+    for (int v = 0; v < n; v++) {
+      if (order[v] < 0 || order[v] >= n || rank[order[v]] != -1) {
+        throw new IllegalArgumentException("Not a permutation, node " + order[v] + " at " + v);
+      }
+      rank[order[v]] = v;
+    }
+
+    int[] newIds = new int[n];
+    int[] newOffsets = new int[n + 1];
+    int[] newAdjacency = new int[adjacency.length];
+    int[] newColors = new int[n];
+    int[] newInitColors = new int[n];
+    int[] newWeights = nodeWeights != null ? new int[n] : null;
+    int[] newEdgeWeights = edgeWeights != null ? new int[adjacency.length] : null;
+    long[] entries = edgeWeights != null ? new long[Math.max(getMaxDegree(), 1)] : null;
+    int[] newFileIndices = new int[n];
+    for (int v = 0; v < n; v++) {
+      int old = order[v];
+      newIds[v] = ids[old];
+      newColors[v] = colors[old];
+      newInitColors[v] = initColors[old];
+      if (newWeights != null) {
+        newWeights[v] = nodeWeights[old];
+      }
+      newFileIndices[v] = getFileIndex(old);
+      int start = newOffsets[v];
+      int end = start;
+      if (edgeWeights != null) {
+        // sort the neighbours together with the weights of their entries
+        int count = 0;
+        for (int i = offsets[old]; i < offsets[old + 1]; i++) {
+          entries[count++] = (long) rank[adjacency[i]] << 32 | edgeWeights[i];
+        }
+        Arrays.sort(entries, 0, count);
+        for (int i = 0; i < count; i++) {
+          newAdjacency[end] = (int) (entries[i] >>> 32);
+          newEdgeWeights[end++] = (int) entries[i];
+        }
+      } else {
+        for (int i = offsets[old]; i < offsets[old + 1]; i++) {
+          newAdjacency[end++] = rank[adjacency[i]];
+        }
+        Arrays.sort(newAdjacency, start, end);
+      }
+      newOffsets[v + 1] = end;
+    }
+    return new CsrGraph(newIds, newOffsets, newAdjacency, newColors, newInitColors, newWeights,
+            newEdgeWeights, newFileIndices, selfLoops, parallelEdges);
+  }
+
+  private boolean findSelfLoops() {
+    for (int v = 0; v < ids.length; v++) {
+      if (getSelfLoops(v) > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean findParallelEdges() {
+    int[] seenBy = new int[ids.length]; // node + 1 that last listed the neighbour
+    for (int v = 0; v < ids.length; v++) {
+      for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+        if (seenBy[adjacency[i]] == v + 1) {
+          return true;
+        }
+        seenBy[adjacency[i]] = v + 1;
+      }
+    }
+    return false;
+  }
+
+  public int size() {
+    return ids.length;
+  }
+
+  /**
+   * @return number of undirected edges, i.e. half the adjacency entries, regardless of their weights
+   */
+  public int getNumEdges() {
+    return offsets[ids.length] / 2;
+  }
+
+  public int getId(int v) {
+    return ids[v];
+  }
+
+  public int getFileIndex(int v) {
+    return fileIndices != null ? fileIndices[v] : v;
+  }
+
+  /**
+   * @return the largest degree of any node
+   */
+  public int getMaxDegree() {
+    int max = 0;
+    for (int v = 0; v < ids.length; v++) {
+      max = Math.max(max, offsets[v + 1] - offsets[v]);
+    }
+    return max;
+  }
+
+  public int getDegree(int v) {
+    return offsets[v + 1] - offsets[v];
+  }
+
+  public int neighbourStart(int v) {
+    return offsets[v];
+  }
+
+  public int neighbourEnd(int v) {
+    return offsets[v + 1];
+  }
+
+  public int neighbourAt(int i) {
+    return adjacency[i];
+  }
+
+  public int edgeWeightAt(int i) {
+    return edgeWeights != null ? edgeWeights[i] : 1;
+  }
+
+  /**
+   * @return true if the edges do not all weigh 1
+   */
+  public boolean hasEdgeWeights() {
+    return edgeWeights != null;
+  }
+
+  /**
+   * @return true if any node lists itself as a neighbour
+   */
+  public boolean hasSelfLoops() {
+    return selfLoops;
+  }
+
+  /**
+   * @return true if any node lists a neighbour more than once
+   */
+  public boolean hasParallelEdges() {
+    return parallelEdges;
+  }
+
+  /**
+   * @return true if the nodes do not all weigh 1
+   */
+  public boolean hasNodeWeights() {
+    return nodeWeights != null;
+  }
+
+  public int getNodeWeight(int v) {
+    return nodeWeights != null ? nodeWeights[v] : 1;
+  }
+
+  /**
+   * @return how many times node v lists itself as a neighbour, weighted by the edge weights
+   */
+  public int getSelfLoops(int v) {
+    int count = 0;
+    for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+      if (adjacency[i] == v) {
+        count += edgeWeightAt(i);
+      }
+    }
+    return count;
+  }
+
+  public int getColor(int v) {
+    return colors[v];
+  }
+
+  public void setColor(int v, int color) {
+    colors[v] = color;
+  }
+
+  public int getInitColor(int v) {
+    return initColors[v];
+  }
+
+  /**
+   * Sets every node back to its initial color
+   */
+  public void resetColors() {
+    System.arraycopy(initColors, 0, colors, 0, colors.length);
+  }
+
+  //-------------------------------------------------------------------
+
+  /**
+   * Incrementally assembles a {@link CsrGraph}. Nodes have to be added in
+   * index order and each node's neighbours right after the node itself.
+   */
+  public static class Builder {
+    private int[] ids;
+    private int[] offsets;
+    private int[] adjacency;
+    private int[] colors;
+    private int[] initColors;
+    private int numNodes;
+    private int numEntries;
+
+    public Builder(int expectedNodes, int expectedEntries) {
+      this.ids = new int[Math.max(expectedNodes, 1)];
+      this.offsets = new int[Math.max(expectedNodes, 1) + 1];
+      this.adjacency = new int[Math.max(expectedEntries, 1)];
+      this.colors = new int[Math.max(expectedNodes, 1)];
+      this.initColors = new int[Math.max(expectedNodes, 1)];
+    }
+
+    /**
+     * Adds a node whose color is also its initial color
+     */
+    public Builder addNode(int id, int color) {
+      return addNode(id, color, color);
+    }
+
+    public Builder addNode(int id, int color, int initColor) {
+      if (numNodes == ids.length) {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        colors = Arrays.copyOf(colors, capacity);
+        initColors = Arrays.copyOf(initColors, capacity);
+        offsets = Arrays.copyOf(offsets, capacity + 1);
+      }
+      ids[numNodes] = id;
+      colors[numNodes] = color;
+      initColors[numNodes] = initColor;
+      numNodes++;
+      offsets[numNodes] = numEntries;
+      return this;
+    }
+
+    /**
+     * Adds a neighbour (by index) to the most recently added node
+     */
+    public Builder addNeighbour(int neighbour) {
+      if (numEntries == adjacency.length) {
+        adjacency = Arrays.copyOf(adjacency, adjacency.length * 2);
+      }
+      adjacency[numEntries++] = neighbour;
+      offsets[numNodes] = numEntries;
+      return this;
+    }
+
+    public int getNumNodes() {
+      return numNodes;
+    }
+
+    public CsrGraph build() {
+      for (int i = 0; i < numEntries; i++) {
+        if (adjacency[i] < 0 || adjacency[i] >= numNodes) {
+          throw new IllegalStateException("Neighbour index out of range: " + adjacency[i]);
+        }
+      }
+      CsrGraph graph = new CsrGraph(Arrays.copyOf(ids, numNodes),
+              Arrays.copyOf(offsets, numNodes + 1),
+              Arrays.copyOf(adjacency, numEntries),
+              Arrays.copyOf(colors, numNodes));
+      System.arraycopy(initColors, 0, graph.initColors, 0, numNodes);
+      return graph;
+    }
+  }
+}
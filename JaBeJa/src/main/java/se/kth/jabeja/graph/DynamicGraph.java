@@ -0,0 +1,343 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Colored graph that supports adding and removing nodes and edges.
+ * <p>
+ * Nodes are addressed by a dense index in [0, size()) like in a {@link CsrGraph}, and
+ * by the id they were added with. Every node has its own neighbour array, which grows
+ * by doubling. Removing a node moves the last node to its index, so indices are only
+ * stable while no node is removed, ids always are.
+ * <p>
+ * The edge cut, the migrations and the size of every partition are updated with every
+ * change, each change costs O(degree) of the nodes involved. A node migrates if its
+ * color differs from its initial color, which is the color it had when it was added.
+ * Edges are undirected, a neighbour may be listed several times like in a
+ * {@link CsrGraph}, self loops are not supported. Not thread safe.
+ */
+public class DynamicGraph {
+  private final int numPartitions;
+  private final HashMap<Integer, Integer> indexById;
+  private final int[] partitionSizes;
+  private int[] ids;
+  private int[][] neighbours;
+  private int[] degrees;
+  private int[] colors;
+  private int[] initColors;
+  private int size;
+  private int numEdges;
+  private int edgeCut;
+  private int migrations;
+
+  public DynamicGraph(int numPartitions, int expectedNodes) {
+    int capacity = Math.max(expectedNodes, 1);
+    this.numPartitions = numPartitions;
+    this.indexById = new HashMap<Integer, Integer>(capacity * 4 / 3 + 1);
+    this.partitionSizes = new int[numPartitions];
+    this.ids = new int[capacity];
+    this.neighbours = new int[capacity][];
+    this.degrees = new int[capacity];
+    this.colors = new int[capacity];
+    this.initColors = new int[capacity];
+  }
+
+  /**
+   * Copies the nodes, edges and current colors of a graph, which become the initial
+   * colors. Self loops are dropped.
+   */
+  public static DynamicGraph fromCsr(Graph graph, int numPartitions) {
+    if (graph.hasNodeWeights() || graph.hasEdgeWeights()) {
+      throw new IllegalArgumentException("Graphs with node or edge weights are not supported");
+    }
+    DynamicGraph dynamic = new DynamicGraph(numPartitions, graph.size());
+    for (int v = 0; v < graph.size(); v++) {
+      dynamic.addNode(graph.getId(v), graph.getColor(v));
+    }
+    for (int v = 0; v < graph.size(); v++) {
+      int[] list = new int[Math.max(graph.getDegree(v), 1)];
+      int degree = 0;
+      for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+        int w = graph.neighbourAt(i);
+        if (w != v) {
+          list[degree++] = w;
+          if (v < w) {
+            dynamic.numEdges++;
+            if (graph.getColor(v) != graph.getColor(w)) {
+              dynamic.edgeCut++;
+            }
+          }
+        }
+      }
+      dynamic.neighbours[v] = list;
+      dynamic.degrees[v] = degree;
+    }
+    return dynamic;
+  }
+
+  /**
+   * @return a snapshot of the nodes, edges and colors, the current colors being its initial colors
+   */
+  public CsrGraph toCsr() {
+    CsrGraph.Builder builder = new CsrGraph.Builder(size, numEdges * 2);
+    for (int v = 0; v < size; v++) {
+      builder.addNode(ids[v], colors[v]);
+      for (int i = 0; i < degrees[v]; i++) {
+        builder.addNeighbour(neighbours[v][i]);
+      }
+    }
+    return builder.build();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getNumPartitions() {
+    return numPartitions;
+  }
+
+  /**
+   * @return number of undirected edges
+   */
+  public int getNumEdges() {
+    return numEdges;
+  }
+
+  public int getEdgeCut() {
+    return edgeCut;
+  }
+
+  public int getMigrations() {
+    return migrations;
+  }
+
+  /**
+   * @return number of nodes with the color
+   */
+  public int getPartitionSize(int color) {
+    return partitionSizes[color];
+  }
+
+  /**
+   * @return index of the node with the id, -1 if there is none
+   */
+  public int indexOf(int id) {
+    Integer index = indexById.get(id);
+    return index != null ? index : -1;
+  }
+
+  public int getId(int v) {
+    return ids[v];
+  }
+
+  public int getDegree(int v) {
+    return degrees[v];
+  }
+
+  /**
+   * @return the i-th neighbour of node v, i in [0, getDegree(v))
+   */
+  public int getNeighbour(int v, int i) {
+    return neighbours[v][i];
+  }
+
+  public int getColor(int v) {
+    return colors[v];
+  }
+
+  public int getInitColor(int v) {
+    return initColors[v];
+  }
+
+  /**
+   * @return how many neighbours of node v have the color
+   */
+  public int getDegree(int v, int color) {
+    int[] list = neighbours[v];
+    int degree = 0;
+    for (int i = 0, end = degrees[v]; i < end; i++) {
+      if (colors[list[i]] == color) {
+        degree++;
+      }
+    }
+    return degree;
+  }
+
+  /**
+   * Changes the color of node v and updates edge cut, migrations and partition sizes
+   */
+  public void setColor(int v, int color) {
+    int old = colors[v];
+    if (old == color) {
+      return;
+    }
+    edgeCut += getDegree(v, old) - getDegree(v, color);
+    colors[v] = color;
+    partitionSizes[old]--;
+    partitionSizes[color]++;
+    migrations += (color != initColors[v] ? 1 : 0) - (old != initColors[v] ? 1 : 0);
+  }
+
+  /**
+   * Makes the current color of node v its initial color
+   */
+  public void resetInitColor(int v) {
+    if (colors[v] != initColors[v]) {
+      migrations--;
+      initColors[v] = colors[v];
+    }
+  }
+
+  /**
+   * Adds a node without edges
+   *
+   * @return index of the new node
+   */
+  public int addNode(int id, int color) {
+    if (color < 0 || color >= numPartitions) {
+      throw new IllegalArgumentException("Invalid color " + color + " of node " + id);
+    }
+    if (indexById.containsKey(id)) {
+      throw new IllegalArgumentException("Node " + id + " already exists");
+    }
+    if (size == ids.length) {
+      int capacity = ids.length * 2;
+      ids = Arrays.copyOf(ids, capacity);
+      neighbours = Arrays.copyOf(neighbours, capacity);
+      degrees = Arrays.copyOf(degrees, capacity);
+      colors = Arrays.copyOf(colors, capacity);
+      initColors = Arrays.copyOf(initColors, capacity);
+    }
+    int v = size++;
+    ids[v] = id;
+    neighbours[v] = new int[4];
+    degrees[v] = 0;
+    colors[v] = color;
+    initColors[v] = color;
+    partitionSizes[color]++;
+    indexById.put(id, v);
+    return v;
+  }
+
+  /**
+   * Removes a node and all its edges. The last node moves to the index of the removed node.
+   */
+  public void removeNode(int id) {
+    int v = index(id);
+    while (degrees[v] > 0) {
+      removeEdgeAt(v, neighbours[v][degrees[v] - 1]);
+    }
+    partitionSizes[colors[v]]--;
+    if (colors[v] != initColors[v]) {
+      migrations--;
+    }
+    indexById.remove(id);
+
+    int last = --size;
+    if (v != last) {
+      ids[v] = ids[last];
+      neighbours[v] = neighbours[last];
+      degrees[v] = degrees[last];
+      colors[v] = colors[last];
+      initColors[v] = initColors[last];
+      indexById.put(ids[v], v);
+      for (int i = 0; i < degrees[v]; i++) {
+        int[] list = neighbours[neighbours[v][i]];
+        for (int j = 0, end = degrees[neighbours[v][i]]; j < end; j++) {
+          if (list[j] == last) {
+            list[j] = v;
+          }
+        }
+      }
+    }
+    neighbours[last] = null;
+  }
+
+  /**
+   * Adds an undirected edge, another edge between the same nodes is listed once more
+   */
+  public void addEdge(int idA, int idB) {
+    int a = index(idA);
+    int b = index(idB);
+    if (a == b) {
+      throw new IllegalArgumentException("Self loop of node " + idA + " is not supported");
+    }
+    append(a, b);
+    append(b, a);
+    numEdges++;
+    if (colors[a] != colors[b]) {
+      edgeCut++;
+    }
+  }
+
+  /**
+   * Removes one undirected edge between the nodes
+   *
+   * @return false if there is no edge between the nodes
+   */
+  public boolean removeEdge(int idA, int idB) {
+    int a = index(idA);
+    int b = index(idB);
+    return removeEdgeAt(a, b);
+  }
+
+  /**
+   * Counts the edge cut from scratch, e.g. to verify the tracked one
+   */
+  public int countEdgeCut() {
+    int cut = 0;
+    for (int v = 0; v < size; v++) {
+      for (int i = 0; i < degrees[v]; i++) {
+        if (colors[neighbours[v][i]] != colors[v]) {
+          cut++;
+        }
+      }
+    }
+    return cut / 2;
+  }
+
+  //-------------------------------------------------------------------
+
+  private int index(int id) {
+    Integer index = indexById.get(id);
+    if (index == null) {
+      throw new IllegalArgumentException("Node " + id + " does not exist");
+    }
+    return index;
+  }
+
+  private void append(int v, int w) {
+    if (degrees[v] == neighbours[v].length) {
+      neighbours[v] = Arrays.copyOf(neighbours[v], neighbours[v].length * 2);
+    }
+    neighbours[v][degrees[v]++] = w;
+  }
+
+  /**
+   * Removes w from the neighbours of v, swapping the last neighbour into its place
+   */
+  private boolean removeEntry(int v, int w) {
+    int[] list = neighbours[v];
+    for (int i = degrees[v] - 1; i >= 0; i--) {
+      if (list[i] == w) {
+        list[i] = list[--degrees[v]];
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean removeEdgeAt(int a, int b) {
+    if (!removeEntry(a, b)) {
+      return false;
+    }
+    removeEntry(b, a);
+    numEdges--;
+    if (colors[a] != colors[b]) {
+      edgeCut--;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,87 @@
+package se.kth.jabeja.graph;
+
+/**
+ * Colored graph as seen by {@link se.kth.jabeja.Jabeja}.
+ * <p>
+ * Nodes are addressed by a dense index in [0, size()); the neighbours of node v are
+ * neighbourAt(i) for i in [neighbourStart(v), neighbourEnd(v)). Topology is never
+ * modified, colors are changed with {@link #setColor(int, int)}. Adjacency entry i
+ * stands for edgeWeightAt(i) edges, degrees count entries, not weights. Reading the topology
+ * is thread safe, concurrent color changes of the same node have to be synchronized
+ * by the caller.
+ *
+ * @see CsrGraph
+ * @see OffHeapGraph
+ */
+public interface Graph {
+
+  int size();
+
+  /**
+   * @return number of undirected edges, i.e. half the adjacency entries
+   */
+  int getNumEdges();
+
+  int getId(int v);
+
+  /**
+   * @return position of node v in the graph file, v unless the nodes were renumbered
+   */
+  int getFileIndex(int v);
+
+  /**
+   * @return the largest degree of any node
+   */
+  int getMaxDegree();
+
+  int getDegree(int v);
+
+  int neighbourStart(int v);
+
+  int neighbourEnd(int v);
+
+  int neighbourAt(int i);
+
+  /**
+   * @return weight of adjacency entry i, 1 unless the graph has edge weights
+   */
+  int edgeWeightAt(int i);
+
+  /**
+   * @return true if the edges do not all weigh 1
+   */
+  boolean hasEdgeWeights();
+
+  /**
+   * @return true if any node lists itself as a neighbour
+   */
+  boolean hasSelfLoops();
+
+  /**
+   * @return how many times node v lists itself as a neighbour, weighted by the edge weights
+   */
+  int getSelfLoops(int v);
+
+  /**
+   * @return true if any node lists a neighbour more than once
+   */
+  boolean hasParallelEdges();
+
+  /**
+   * @return true if the nodes do not all weigh 1
+   */
+  boolean hasNodeWeights();
+
+  int getNodeWeight(int v);
+
+  int getColor(int v);
+
+  void setColor(int v, int color);
+
+  int getInitColor(int v);
+
+  /**
+   * Sets every node back to its initial color
+   */
+  void resetColors();
+}
@@ -0,0 +1,83 @@
+package se.kth.jabeja.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch of changes to a {@link DynamicGraph}, applied in the order they were added.
+ * Nodes and edges are given by node id.
+ */
+public class GraphUpdate {
+  private final List<Operation> operations = new ArrayList<Operation>();
+
+  public GraphUpdate addNode(int id) {
+    operations.add(new Operation(Type.ADD_NODE, id, 0));
+    return this;
+  }
+
+  /**
+   * Removes the node and all its edges
+   */
+  public GraphUpdate removeNode(int id) {
+    operations.add(new Operation(Type.REMOVE_NODE, id, 0));
+    return this;
+  }
+
+  public GraphUpdate addEdge(int idA, int idB) {
+    operations.add(new Operation(Type.ADD_EDGE, idA, idB));
+    return this;
+  }
+
+  public GraphUpdate removeEdge(int idA, int idB) {
+    operations.add(new Operation(Type.REMOVE_EDGE, idA, idB));
+    return this;
+  }
+
+  public int size() {
+    return operations.size();
+  }
+
+  public boolean isEmpty() {
+    return operations.isEmpty();
+  }
+
+  public Operation get(int i) {
+    return operations.get(i);
+  }
+
+  //-------------------------------------------------------------------
+
+  public enum Type {
+    ADD_NODE,
+    REMOVE_NODE,
+    ADD_EDGE,
+    REMOVE_EDGE
+  }
+
+  /**
+   * One change, the second node is only used by the edge operations
+   */
+  public static class Operation {
+    private final Type type;
+    private final int idA;
+    private final int idB;
+
+    Operation(Type type, int idA, int idB) {
+      this.type = type;
+      this.idA = idA;
+      this.idB = idB;
+    }
+
+    public Type getType() {
+      return type;
+    }
+
+    public int getIdA() {
+      return idA;
+    }
+
+    public int getIdB() {
+      return idB;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package se.kth.jabeja.graph;
+
+import se.kth.jabeja.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts between the object model ({@link Node} per id) and {@link CsrGraph}.
+ * Only meant for interoperability, the algorithm itself runs on {@link CsrGraph}.
+ */
+public class NodeGraphAdapter {
+
+  private NodeGraphAdapter() {
+  }
+
+  /**
+   * Builds a CSR graph from a node map. Nodes are indexed in ascending id order.
+   * Both current and initial colors of the nodes are kept.
+   */
+  public static CsrGraph fromNodes(Map<Integer, Node> nodes) {
+    int[] ids = new int[nodes.size()];
+    int i = 0;
+    for (int id : nodes.keySet()) {
+      ids[i++] = id;
+    }
+    Arrays.sort(ids);
+
+    Map<Integer, Integer> index = new HashMap<Integer, Integer>();
+    int numEntries = 0;
+    for (i = 0; i < ids.length; i++) {
+      index.put(ids[i], i);
+      numEntries += nodes.get(ids[i]).getDegree();
+    }
+
+    CsrGraph.Builder builder = new CsrGraph.Builder(ids.length, numEntries);
+    for (int id : ids) {
+      Node node = nodes.get(id);
+      builder.addNode(id, node.getColor(), node.getInitColor());
+      for (int neighbour : node.getNeighbours()) {
+        Integer n = index.get(neighbour);
+        if (n == null) {
+          throw new IllegalArgumentException("Node " + id + " has unknown neighbour " + neighbour);
+        }
+        builder.addNeighbour(n);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Builds the node map for a CSR graph, keeping both current and initial colors.
+   */
+  public static HashMap<Integer, Node> toNodes(Graph graph) {
+    HashMap<Integer, Node> nodes = new HashMap<Integer, Node>();
+    for (int v = 0; v < graph.size(); v++) {
+      Node node = new Node(graph.getId(v), graph.getInitColor(v));
+      node.setColor(graph.getColor(v));
+      ArrayList<Integer> neighbours = new ArrayList<Integer>(graph.getDegree(v));
+      for (int i = graph.neighbourStart(v); i < graph.neighbourEnd(v); i++) {
+        // the object model has no edge weights, an edge of weight k is listed k times
+        for (int k = 0; k < graph.edgeWeightAt(i); k++) {
+          neighbours.add(graph.getId(graph.neighbourAt(i)));
+        }
+      }
+      node.setNeighbours(neighbours);
+      nodes.put(node.getId(), node);
+    }
+    return nodes;
+  }
+}
@@ -0,0 +1,149 @@
+package se.kth.jabeja.graph;
+
+/**
+ * Graph in compressed sparse row form like {@link CsrGraph}, with the topology and the
+ * colors stored in {@link OffHeapInts} instead of Java arrays. The topology can be a
+ * memory mapped file, so a graph with hundreds of millions of edges needs neither a large
+ * heap nor enough RAM to hold all of it.
+ * <p>
+ * Every node weighs 1, node weights are only supported by {@link CsrGraph}.
+ */
+public class OffHeapGraph implements Graph {
+  private final OffHeapInts ids; // null if node i has the id i + 1
+  private final OffHeapInts offsets;
+  private final OffHeapInts adjacency;
+  private final OffHeapInts colors;
+  private final OffHeapInts initColors;
+  private final int size;
+  private final int maxDegree;
+  private final boolean selfLoops;
+  private final boolean parallelEdges;
+
+  /**
+   * @param ids    original id of every node, null if node i has the id i + 1
+   * @param colors initial colors, used as is
+   */
+  public OffHeapGraph(OffHeapInts ids, OffHeapInts offsets, OffHeapInts adjacency, OffHeapInts colors) {
+    this.size = colors.length();
+    if (offsets.length() != size + 1 || (ids != null && ids.length() != size)
+            || offsets.get(size) != adjacency.length()) {
+      throw new IllegalArgumentException("Inconsistent CSR arrays");
+    }
+    this.ids = ids;
+    this.offsets = offsets;
+    this.adjacency = adjacency;
+    this.colors = colors;
+    this.initColors = OffHeapInts.allocate(size);
+    this.initColors.copyFrom(colors);
+
+    int max = 0;
+    boolean loops = false;
+    for (int v = 0; v < size; v++) {
+      max = Math.max(max, getDegree(v));
+      loops = loops || getSelfLoops(v) > 0;
+    }
+    this.maxDegree = max;
+    this.selfLoops = loops;
+    this.parallelEdges = findParallelEdges();
+  }
+
+  private boolean findParallelEdges() {
+    OffHeapInts seenBy = OffHeapInts.allocate(size); // node + 1 that last listed the neighbour
+    for (int v = 0; v < size; v++) {
+      for (int i = offsets.get(v), end = offsets.get(v + 1); i < end; i++) {
+        int u = adjacency.get(i);
+        if (seenBy.get(u) == v + 1) {
+          return true;
+        }
+        seenBy.set(u, v + 1);
+      }
+    }
+    return false;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getNumEdges() {
+    return offsets.get(size) / 2;
+  }
+
+  public int getId(int v) {
+    return ids == null ? v + 1 : ids.get(v);
+  }
+
+  public int getFileIndex(int v) {
+    return v;
+  }
+
+  public int getMaxDegree() {
+    return maxDegree;
+  }
+
+  public int getDegree(int v) {
+    return offsets.get(v + 1) - offsets.get(v);
+  }
+
+  public int neighbourStart(int v) {
+    return offsets.get(v);
+  }
+
+  public int neighbourEnd(int v) {
+    return offsets.get(v + 1);
+  }
+
+  public int neighbourAt(int i) {
+    return adjacency.get(i);
+  }
+
+  public int edgeWeightAt(int i) {
+    return 1;
+  }
+
+  public boolean hasEdgeWeights() {
+    return false;
+  }
+
+  public boolean hasSelfLoops() {
+    return selfLoops;
+  }
+
+  public int getSelfLoops(int v) {
+    int count = 0;
+    for (int i = offsets.get(v), end = offsets.get(v + 1); i < end; i++) {
+      if (adjacency.get(i) == v) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public boolean hasParallelEdges() {
+    return parallelEdges;
+  }
+
+  public boolean hasNodeWeights() {
+    return false;
+  }
+
+  public int getNodeWeight(int v) {
+    return 1;
+  }
+
+  public int getColor(int v) {
+    return colors.get(v);
+  }
+
+  public void setColor(int v, int color) {
+    colors.set(v, color);
+  }
+
+  public int getInitColor(int v) {
+    return initColors.get(v);
+  }
+
+  public void resetColors() {
+    colors.copyFrom(initColors);
+  }
+}
@@ -0,0 +1,114 @@
+package se.kth.jabeja.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Array of ints outside of the Java heap, in direct or memory mapped buffers.
+ * <p>
+ * A buffer holds at most 2 GB, so the array is split into chunks of 2^27 ints and
+ * element i is at index i &amp; (2^27 - 1) of chunk i &gt;&gt;&gt; 27. Elements are
+ * only read and written at absolute indices, which is thread safe as long as no two
+ * threads write the same element.
+ */
+public final class OffHeapInts {
+  private static final int CHUNK_SHIFT = 27;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final IntBuffer[] chunks;
+  private final IntBuffer single; // the only chunk, null if there are several
+  private final int length;
+
+  private OffHeapInts(IntBuffer[] chunks, int length) {
+    this.chunks = chunks;
+    this.single = chunks.length == 1 ? chunks[0] : null;
+    this.length = length;
+  }
+
+  /**
+   * @return length zeros in direct buffers, in native byte order
+   */
+  public static OffHeapInts allocate(int length) {
+    IntBuffer[] chunks = new IntBuffer[numChunks(length)];
+    for (int c = 0; c < chunks.length; c++) {
+      chunks[c] = ByteBuffer.allocateDirect(4 * chunkLength(length, c))
+              .order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+    return new OffHeapInts(chunks, length);
+  }
+
+  /**
+   * @return a copy of the values in direct buffers
+   */
+  public static OffHeapInts copyOf(int[] values) {
+    OffHeapInts ints = allocate(values.length);
+    for (int c = 0; c < ints.chunks.length; c++) {
+      ints.chunks[c].put(values, c * CHUNK_SIZE, chunkLength(values.length, c));
+    }
+    return ints;
+  }
+
+  /**
+   * Maps length little endian ints of a file, starting at position. The mapping stays valid
+   * after the channel is closed.
+   */
+  public static OffHeapInts map(FileChannel channel, FileChannel.MapMode mode, long position, int length)
+          throws IOException {
+    IntBuffer[] chunks = new IntBuffer[numChunks(length)];
+    for (int c = 0; c < chunks.length; c++) {
+      int chunkLength = chunkLength(length, c);
+      chunks[c] = channel.map(mode, position + 4L * c * CHUNK_SIZE, 4L * chunkLength)
+              .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+    return new OffHeapInts(chunks, length);
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public int get(int i) {
+    if (single != null) {
+      return single.get(i);
+    }
+    return chunks[i >>> CHUNK_SHIFT].get(i & CHUNK_MASK);
+  }
+
+  public void set(int i, int value) {
+    if (single != null) {
+      single.put(i, value);
+      return;
+    }
+    chunks[i >>> CHUNK_SHIFT].put(i & CHUNK_MASK, value);
+  }
+
+  /**
+   * Copies all elements of source, which has the same length
+   */
+  public void copyFrom(OffHeapInts source) {
+    if (source.length != length) {
+      throw new IllegalArgumentException("Expected " + length + " ints, got " + source.length);
+    }
+    for (int c = 0; c < chunks.length; c++) {
+      IntBuffer from = source.chunks[c].duplicate();
+      IntBuffer to = chunks[c].duplicate();
+      from.clear();
+      to.clear();
+      to.put(from);
+    }
+  }
+
+  //-------------------------------------------------------------------
+
+  private static int numChunks(int length) {
+    return Math.max((int) (((long) length + CHUNK_MASK) >>> CHUNK_SHIFT), 1);
+  }
+
+  private static int chunkLength(int length, int chunk) {
+    return Math.min(length - chunk * CHUNK_SIZE, CHUNK_SIZE);
+  }
+}
@@ -0,0 +1,149 @@
+package se.kth.jabeja.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Quality measures of the current coloring of a graph:
+ * <ul>
+ * <li>edge cut, the number of edges between nodes of different colors</li>
+ * <li>the size of every partition and the balance, the largest size divided by the
+ * average size, 1 being perfectly balanced</li>
+ * <li>communication volume, the sum over all nodes of the number of other colors among
+ * their neighbours</li>
+ * <li>the boundary size of every partition, its nodes with a neighbour of another color</li>
+ * </ul>
+ * Node weights are not taken into account, every node counts as 1. The nodes are split
+ * into ranges that are evaluated concurrently.
+ */
+public class PartitionQuality {
+  private final int numPartitions;
+  private final int[] sizes;
+  private final int[] boundarySizes;
+  private long cutEntries; // every cut edge is listed by both of its nodes
+  private long communicationVolume;
+
+  private PartitionQuality(int numPartitions) {
+    this.numPartitions = numPartitions;
+    this.sizes = new int[numPartitions];
+    this.boundarySizes = new int[numPartitions];
+  }
+
+  /**
+   * @param numPartitions colors have to be in [0, numPartitions)
+   * @param threads       number of threads evaluating the ranges
+   */
+  public static PartitionQuality evaluate(final Graph graph, final int numPartitions, int threads) {
+    for (int v = 0; v < graph.size(); v++) {
+      if (graph.getColor(v) < 0 || graph.getColor(v) >= numPartitions) {
+        throw new IllegalArgumentException("Color " + graph.getColor(v) + " of node " + graph.getId(v) +
+                " is not in [0, " + numPartitions + ")");
+      }
+    }
+    int ranges = Math.max(Math.min(threads, graph.size()), 1);
+    if (ranges == 1) {
+      return evaluate(graph, numPartitions, 0, graph.size());
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(ranges);
+    PartitionQuality total = new PartitionQuality(numPartitions);
+    try {
+      List<Future<PartitionQuality>> results = new ArrayList<Future<PartitionQuality>>(ranges);
+      for (int r = 0; r < ranges; r++) {
+        final int start = (int) ((long) graph.size() * r / ranges);
+        final int end = (int) ((long) graph.size() * (r + 1) / ranges);
+        results.add(pool.submit(new Callable<PartitionQuality>() {
+          @Override
+          public PartitionQuality call() {
+            return evaluate(graph, numPartitions, start, end);
+          }
+        }));
+      }
+      for (Future<PartitionQuality> result : results) {
+        total.add(result.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while evaluating the partition", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Evaluating the partition failed", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+    return total;
+  }
+
+  public int getNumPartitions() {
+    return numPartitions;
+  }
+
+  public long getEdgeCut() {
+    return cutEntries / 2;
+  }
+
+  public long getCommunicationVolume() {
+    return communicationVolume;
+  }
+
+  public int getSize(int color) {
+    return sizes[color];
+  }
+
+  public int getBoundarySize(int color) {
+    return boundarySizes[color];
+  }
+
+  /**
+   * @return size of the largest partition divided by the average size
+   */
+  public double getBalance() {
+    long nodes = 0;
+    int largest = 0;
+    for (int size : sizes) {
+      nodes += size;
+      largest = Math.max(largest, size);
+    }
+    return nodes > 0 ? largest * (double) numPartitions / nodes : 1;
+  }
+
+  //-------------------------------------------------------------------
+
+  private static PartitionQuality evaluate(Graph graph, int numPartitions, int start, int end) {
+    PartitionQuality quality = new PartitionQuality(numPartitions);
+    int[] seenBy = new int[numPartitions]; // node + 1 that last had a neighbour of the color
+    for (int v = start; v < end; v++) {
+      int color = graph.getColor(v);
+      int otherColors = 0;
+      for (int i = graph.neighbourStart(v), last = graph.neighbourEnd(v); i < last; i++) {
+        int neighbourColor = graph.getColor(graph.neighbourAt(i));
+        if (neighbourColor != color) {
+          quality.cutEntries += graph.edgeWeightAt(i);
+          if (seenBy[neighbourColor] != v + 1) {
+            seenBy[neighbourColor] = v + 1;
+            otherColors++;
+          }
+        }
+      }
+      quality.sizes[color]++;
+      if (otherColors > 0) {
+        quality.boundarySizes[color]++;
+        quality.communicationVolume += otherColors;
+      }
+    }
+    return quality;
+  }
+
+  private void add(PartitionQuality range) {
+    for (int c = 0; c < numPartitions; c++) {
+      sizes[c] += range.sizes[c];
+      boundarySizes[c] += range.boundarySizes[c];
+    }
+    cutEntries += range.cutEntries;
+    communicationVolume += range.communicationVolume;
+  }
+}
@@ -0,0 +1,198 @@
+package se.kth.jabeja.graph;
+
+import se.kth.jabeja.config.GraphOrder;
+
+import java.util.Arrays;
+
+/**
+ * Node orders that improve the locality of a round. A round visits the nodes in index order
+ * and reads the colors of their neighbours, in the order of the graph file these are
+ * scattered over the whole color array. After renumbering, nodes close in the graph get
+ * close indices, so the neighbours of the next nodes are mostly in cache already.
+ * <p>
+ * Every order is a permutation of [0, size()), element v is the current index of the node
+ * that gets index v, as {@link CsrGraph#permute(int[])} expects.
+ */
+public final class Reordering {
+  private Reordering() {
+  }
+
+  /**
+   * @return the graph renumbered by the policy, the graph itself for NONE
+   */
+  public static CsrGraph reorder(CsrGraph graph, GraphOrder policy) {
+    if (policy == GraphOrder.NONE) {
+      return graph;
+    }
+    return graph.permute(order(graph, policy));
+  }
+
+  public static int[] order(Graph graph, GraphOrder policy) {
+    switch (policy) {
+      case NONE:
+        int[] identity = new int[graph.size()];
+        for (int v = 0; v < identity.length; v++) {
+          identity[v] = v;
+        }
+        return identity;
+      case BFS:
+        return breadthFirst(graph, false);
+      case RCM:
+        int[] order = breadthFirst(graph, true);
+        for (int i = 0, j = order.length - 1; i < j; i++, j--) {
+          int tmp = order[i];
+          order[i] = order[j];
+          order[j] = tmp;
+        }
+        return order;
+      case DEGREE:
+        return byDescendingDegree(graph);
+      default:
+        throw new IllegalArgumentException("Graph order " + policy + " is not supported");
+    }
+  }
+
+  //-------------------------------------------------------------------
+
+  /**
+   * Visits every component breadth first, components in the order of their node with the
+   * lowest index. A component starts at its node with the lowest degree, for Cuthill-McKee
+   * at a pseudo-peripheral node, and its neighbours are queued by ascending degree.
+   */
+  private static int[] breadthFirst(Graph graph, boolean cuthillMcKee) {
+    int n = graph.size();
+    int[] order = new int[n]; // doubles as the queue
+    boolean[] visited = new boolean[n];
+    long[] scratch = new long[Math.max(graph.getMaxDegree(), 1)];
+    int[] levels = cuthillMcKee ? new int[n] : null;
+    int count = 0;
+    for (int first = 0; first < n; first++) {
+      if (visited[first]) {
+        continue;
+      }
+      int componentStart = count;
+      int start = lowestDegree(graph, first, visited, order, count);
+      if (cuthillMcKee) {
+        start = peripheralNode(graph, start, visited, order, count, levels);
+      }
+      visited[start] = true;
+      order[count++] = start;
+      for (int head = componentStart; head < count; head++) {
+        count = enqueueNeighbours(graph, order[head], visited, order, count, scratch, cuthillMcKee);
+      }
+    }
+    return order;
+  }
+
+  /**
+   * @return the node with the lowest degree in the component of first, ties by index
+   */
+  private static int lowestDegree(Graph graph, int first, boolean[] visited, int[] queue, int from) {
+    int count = from;
+    visited[first] = true;
+    queue[count++] = first;
+    int best = first;
+    for (int head = from; head < count; head++) {
+      int v = queue[head];
+      if (graph.getDegree(v) < graph.getDegree(best) || (graph.getDegree(v) == graph.getDegree(best) && v < best)) {
+        best = v;
+      }
+      for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+        int u = graph.neighbourAt(i);
+        if (!visited[u]) {
+          visited[u] = true;
+          queue[count++] = u;
+        }
+      }
+    }
+    for (int head = from; head < count; head++) {
+      visited[queue[head]] = false;
+    }
+    return best;
+  }
+
+  /**
+   * George-Liu: moves to a node of minimal degree on the last level of a breadth first
+   * search, until the number of levels stops growing
+   */
+  private static int peripheralNode(Graph graph, int start, boolean[] visited, int[] queue, int from,
+                                    int[] levels) {
+    int node = start;
+    int depth = -1;
+    while (true) {
+      int count = from;
+      visited[node] = true;
+      queue[count++] = node;
+      levels[node] = 0;
+      for (int head = from; head < count; head++) {
+        int v = queue[head];
+        for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+          int u = graph.neighbourAt(i);
+          if (!visited[u]) {
+            visited[u] = true;
+            levels[u] = levels[v] + 1;
+            queue[count++] = u;
+          }
+        }
+      }
+      int last = levels[queue[count - 1]];
+      int candidate = queue[count - 1];
+      for (int head = count - 1; head >= from && levels[queue[head]] == last; head--) {
+        int v = queue[head];
+        if (graph.getDegree(v) < graph.getDegree(candidate)) {
+          candidate = v;
+        }
+      }
+      for (int head = from; head < count; head++) {
+        visited[queue[head]] = false;
+      }
+      if (last <= depth) {
+        return node;
+      }
+      depth = last;
+      node = candidate;
+    }
+  }
+
+  /**
+   * Queues the unvisited neighbours of v, by ascending degree and then index if byDegree
+   *
+   * @return the new length of the queue
+   */
+  private static int enqueueNeighbours(Graph graph, int v, boolean[] visited, int[] queue, int count,
+                                       long[] scratch, boolean byDegree) {
+    int found = 0;
+    for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+      int u = graph.neighbourAt(i);
+      if (!visited[u]) {
+        visited[u] = true;
+        scratch[found++] = byDegree ? (long) graph.getDegree(u) << 32 | u : u;
+      }
+    }
+    if (byDegree) {
+      Arrays.sort(scratch, 0, found);
+    }
+    for (int i = 0; i < found; i++) {
+      queue[count++] = (int) scratch[i];
+    }
+    return count;
+  }
+
+  private static int[] byDescendingDegree(Graph graph) {
+    int n = graph.size();
+    int maxDegree = graph.getMaxDegree();
+    // counting sort, stable so ties keep the order of the file
+    int[] starts = new int[maxDegree + 2];
+    for (int v = 0; v < n; v++) {
+      starts[maxDegree - graph.getDegree(v) + 1]++;
+    }
+    for (int d = 1; d < starts.length; d++) {
+      starts[d] += starts[d - 1];
+    }
+    int[] order = new int[n];
+    for (int v = 0; v < n; v++) {
+      order[starts[maxDegree - graph.getDegree(v)]++] = v;
+    }
+    return order;
+  }
+}
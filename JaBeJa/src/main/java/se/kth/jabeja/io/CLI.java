@@ -4,8 +4,15 @@ import org.apache.log4j.Logger;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.CoolingSchedule;
+import se.kth.jabeja.config.GraphCachePolicy;
+import se.kth.jabeja.config.GraphFormat;
+import se.kth.jabeja.config.GraphStorage;
+import se.kth.jabeja.config.EngineMode;
 import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.config.GraphOrder;
 import se.kth.jabeja.config.NodeSelectionPolicy;
+import se.kth.jabeja.config.ResultFormat;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -51,9 +58,148 @@ public class CLI {
   private String NODE_SELECTION_POLICY = "HYBRID";
   private NodeSelectionPolicy nodeSelectionPolicy = NodeSelectionPolicy.HYBRID;
 
+  @Option(name = "-engine", usage = "How color degrees are computed. Supported, SCAN, HISTOGRAM")
+  private String ENGINE_MODE = "SCAN";
+  private EngineMode engineMode = EngineMode.SCAN;
+
+  @Option(name = "-threads", usage = "Number of worker threads per round.")
+  private int THREADS = 1;
+
+  @Option(name = "-syncRounds", usage = "With -threads, select all partners on the colors of the previous round and apply the swaps in node order. Reproducible for a given seed and number of threads.")
+  private boolean SYNC_ROUNDS = false;
+
+  @Option(name = "-verifyInterval", usage = "Recount edge cut and migrations every this many rounds and compare them with the tracked values. 0 disables it. Multithreaded rounds of the SCAN engine without -syncRounds do not track them and recount every round instead.")
+  private int VERIFY_INTERVAL = 0;
+
+  @Option(name = "-activeSet", usage = "Only sample and swap boundary nodes and nodes whose neighbourhood changed in the previous round. Single threaded only.")
+  private boolean ACTIVE_SET = false;
+
+  @Option(name = "-fullSweepInterval", usage = "With -activeSet, visit all nodes every this many rounds. 0 only visits all nodes in the first round.")
+  private int FULL_SWEEP_INTERVAL = 10;
+
+  @Option(name = "-ensemble", usage = "Number of runs on the same graph, with the seeds -seed, -seed + 1, ... Each run writes its results to <outputDir>/seed_<seed>.")
+  private int ENSEMBLE_SIZE = 1;
+
+  @Option(name = "-ensembleThreads", usage = "Number of ensemble runs executed concurrently.")
+  private int ENSEMBLE_THREADS = Runtime.getRuntime().availableProcessors();
+
+  @Option(name = "-sweep", usage = "Parameter grid file, runs every point of the grid on the same graph. Each point writes its results to <outputDir>/sweep_<point>.")
+  private String SWEEP_FILE = null;
+
+  @Option(name = "-sweepThreads", usage = "Number of sweep points executed concurrently.")
+  private int SWEEP_THREADS = Runtime.getRuntime().availableProcessors();
+
+  @Option(name = "-sweepCheckInterval", usage = "Compare the sweep points every this many rounds and stop the losing ones. 0 disables it.")
+  private int SWEEP_CHECK_INTERVAL = 0;
+
+  @Option(name = "-sweepStopMargin", usage = "Stop a sweep point if its edge cut is more than this fraction above the best edge cut at a check.")
+  private float SWEEP_STOP_MARGIN = 0.5f;
+
+  @Option(name = "-convergenceWindow", usage = "Stop the run if the edge cut did not improve for this many rounds. 0 always runs all rounds.")
+  private int CONVERGENCE_WINDOW = 0;
+
+  @Option(name = "-minSwapRate", usage = "With -convergenceWindow, also stop the run if there were fewer swaps per node and round over the window. 0 disables it.")
+  private float MIN_SWAP_RATE = 0;
+
+  @Option(name = "-stopAtTempFloor", usage = "Stop the run when the temperature reaches its minimum and there are no restarts left.")
+  private boolean STOP_AT_TEMP_FLOOR = false;
+
+  @Option(name = "-checkpointInterval", usage = "Write a checkpoint of the run to the output directory every this many rounds. 0 disables it.")
+  private int CHECKPOINT_INTERVAL = 0;
+
+  @Option(name = "-resume", usage = "Continue the run from its checkpoint in the output directory, if there is one. Takes the same arguments as the interrupted run. Not supported with -sweep.")
+  private boolean RESUME = false;
+
+  @Option(name = "-multilevel", usage = "Coarsen the graph, partition the coarsest graph and refine the partition level by level. Each level writes its results to <outputDir>/level_<level>.")
+  private boolean MULTILEVEL = false;
+
+  @Option(name = "-coarsenTo", usage = "With -multilevel, stop coarsening at this many nodes.")
+  private int COARSEN_TO = 1000;
+
+  @Option(name = "-maxLevels", usage = "With -multilevel, maximal number of coarsening steps.")
+  private int MAX_LEVELS = 10;
+
+  @Option(name = "-refineRounds", usage = "With -multilevel, rounds on every level finer than the coarsest one.")
+  private int REFINE_ROUNDS = 100;
+
+  @Option(name = "-refineTemp", usage = "With -multilevel, simulated annealing temperature of the refinement rounds.")
+  private float REFINE_TEMPERATURE = 1;
+
+  @Option(name = "-compareFlat", usage = "With -multilevel, also run plain JaBeJa on the input graph and report both.")
+  private boolean COMPARE_FLAT = false;
+
+  @Option(name = "-updates", usage = "File with batches of node and edge changes. After the rounds the changes are applied batch by batch and the partition is repaired locally after each batch.")
+  private String UPDATES_FILE = null;
+
+  @Option(name = "-localRounds", usage = "With -updates, maximal number of local rounds per batch.")
+  private int LOCAL_ROUNDS = 10;
+
+  @Option(name = "-localTemp", usage = "With -updates, simulated annealing temperature of the local rounds.")
+  private float LOCAL_TEMPERATURE = 1;
+
+  @Option(name = "-exportPartition", usage = "Write the final partition next to the result files, one color per line in the METIS format (<result file>.part.<partitions>).")
+  private boolean EXPORT_PARTITION = false;
+
+  @Option(name = "-exportInterval", usage = "With -exportPartition, also write the partition every this many rounds (<result file>_round_<round>.part.<partitions>). 0 only writes the final partition.")
+  private int EXPORT_INTERVAL = 0;
+
+  @Option(name = "-partition", usage = "Partition file to evaluate with PartitionEvaluator, one color per line in the METIS format.")
+  private String PARTITION_FILE = null;
+
+  @Option(name = "-metrics", usage = "Count and time the sample and swap steps and expose them, with heap and GC statistics, as JMX MBeans se.kth.jabeja:type=Jabeja. Off by default, uninstrumented rounds do not pay for it.")
+  private boolean METRICS = false;
+
+  @Option(name = "-metricsInterval", usage = "With -metrics, write the metrics of every this many rounds to <result file>_metrics. 0 writes no metrics file.")
+  private int METRICS_INTERVAL = 0;
+
+  @Option(name = "-shards", usage = "Simulate a shared-nothing cluster of this many hosts, which partition the graph by exchanging messages. 0 for a regular run.")
+  private int SHARDS = 0;
+
+  @Option(name = "-schedule", usage = "Cooling schedule and acceptance of swaps. Supported, AUTO, LINEAR, EXPONENTIAL, ADAPTIVE. AUTO is EXPONENTIAL with -enhanced, otherwise LINEAR")
+  private String COOLING_SCHEDULE = "AUTO";
+  private CoolingSchedule coolingSchedule = CoolingSchedule.AUTO;
+
+  @Option(name = "-reheatRate", usage = "With -schedule ADAPTIVE, reheat when the mean swaps per node of -iter_enh rounds differ by less than this fraction from those of the previous -iter_enh rounds.")
+  private float REHEAT_RATE = 0.001f;
+
+  @Option(name = "-reheatFactor", usage = "With -schedule ADAPTIVE, temperature of a reheat relative to the one of the previous reheat, starting from -temp_enh.")
+  private float REHEAT_FACTOR = 0.5f;
+
+  @Option(name = "-graphOrder", usage = "Renumber the nodes for cache locality before the run. Supported, NONE, BFS, RCM, DEGREE. Partition files keep the order of the graph file. Only with -graphStorage HEAP")
+  private String GRAPH_ORDER = "NONE";
+  private GraphOrder graphOrder = GraphOrder.NONE;
+
+  @Option(name = "-batchSize", usage = "Visit the nodes of a sequential round in batches of this many, first with their neighbours, then the ones without a partner with a uniform sample. 0 visits every node once with the node selection policy.")
+  private int BATCH_SIZE = 0;
+
+  @Option(name = "-resultFormat", usage = "Also write the results in this format. Supported, TEXT, CSV, JSON")
+  private String RESULT_FORMAT = "TEXT";
+  private ResultFormat resultFormat = ResultFormat.TEXT;
+
+  @Option(name = "-flushInterval", usage = "Milliseconds between flushes of the result files.")
+  private long FLUSH_INTERVAL = 1000;
+
+  @Option(name = "-asyncResults", usage = "Write the result files from a background thread.")
+  private boolean ASYNC_RESULTS = false;
+
   @Option(name = "-graph", usage = "Location of the input graph.")
   private static String GRAPH = "./graphs/ws-250.graph";
 
+  @Option(name = "-graphFormat", usage = "Format of the input graph. Supported, AUTO, METIS, EDGE_LIST")
+  private String GRAPH_FORMAT = "AUTO";
+  private GraphFormat graphFormat = GraphFormat.AUTO;
+
+  @Option(name = "-edgeBufferSize", usage = "Directed edges kept in memory while converting an edge list, before spilling to disk.")
+  private int EDGE_BUFFER_SIZE = 1 << 23;
+
+  @Option(name = "-graphCache", usage = "Binary cache of the graph file. Supported, USE, REBUILD, BYPASS")
+  private String GRAPH_CACHE_POLICY = "USE";
+  private GraphCachePolicy graphCachePolicy = GraphCachePolicy.USE;
+
+  @Option(name = "-graphStorage", usage = "Where the graph is kept. Supported, HEAP, DIRECT, MAPPED. DIRECT and MAPPED only for single runs")
+  private String GRAPH_STORAGE = "HEAP";
+  private GraphStorage graphStorage = GraphStorage.HEAP;
+
   @Option(name = "-outputDir", usage = "Location of the output file(s)")
   private static String OUTPUT_DIR = "./output";
 
@@ -80,6 +226,9 @@ public class CLI {
   private int RESTART_INTERVAL = Integer.MAX_VALUE;
   //-----------------Added by Denys Tykhoglo----------------------------
 
+  @Option(name = "-max_restarts", usage = "Maximal number of SA restarts. 0 means no limit.")
+  private int MAX_RESTARTS = 0;
+
   public Config parseArgs(String[] args) throws FileNotFoundException {
     CmdLineParser parser = new CmdLineParser(this);
     parser.setUsageWidth(80);
@@ -106,6 +255,78 @@ public class CLI {
         throw new IllegalArgumentException("Node selection policy is not supported");
       }
 
+      if (ENGINE_MODE.compareToIgnoreCase(EngineMode.SCAN.toString()) == 0) {
+        engineMode = EngineMode.SCAN;
+      } else if (ENGINE_MODE.compareToIgnoreCase(EngineMode.HISTOGRAM.toString()) == 0) {
+        engineMode = EngineMode.HISTOGRAM;
+      } else {
+        throw new IllegalArgumentException("Engine mode is not supported");
+      }
+
+      if (RESULT_FORMAT.compareToIgnoreCase(ResultFormat.TEXT.toString()) == 0) {
+        resultFormat = ResultFormat.TEXT;
+      } else if (RESULT_FORMAT.compareToIgnoreCase(ResultFormat.CSV.toString()) == 0) {
+        resultFormat = ResultFormat.CSV;
+      } else if (RESULT_FORMAT.compareToIgnoreCase(ResultFormat.JSON.toString()) == 0) {
+        resultFormat = ResultFormat.JSON;
+      } else {
+        throw new IllegalArgumentException("Result format is not supported");
+      }
+
+      if (GRAPH_FORMAT.compareToIgnoreCase(GraphFormat.AUTO.toString()) == 0) {
+        graphFormat = GraphFormat.AUTO;
+      } else if (GRAPH_FORMAT.compareToIgnoreCase(GraphFormat.METIS.toString()) == 0) {
+        graphFormat = GraphFormat.METIS;
+      } else if (GRAPH_FORMAT.compareToIgnoreCase(GraphFormat.EDGE_LIST.toString()) == 0) {
+        graphFormat = GraphFormat.EDGE_LIST;
+      } else {
+        throw new IllegalArgumentException("Graph format is not supported");
+      }
+
+      if (GRAPH_CACHE_POLICY.compareToIgnoreCase(GraphCachePolicy.USE.toString()) == 0) {
+        graphCachePolicy = GraphCachePolicy.USE;
+      } else if (GRAPH_CACHE_POLICY.compareToIgnoreCase(GraphCachePolicy.REBUILD.toString()) == 0) {
+        graphCachePolicy = GraphCachePolicy.REBUILD;
+      } else if (GRAPH_CACHE_POLICY.compareToIgnoreCase(GraphCachePolicy.BYPASS.toString()) == 0) {
+        graphCachePolicy = GraphCachePolicy.BYPASS;
+      } else {
+        throw new IllegalArgumentException("Graph cache policy is not supported");
+      }
+
+      if (GRAPH_STORAGE.compareToIgnoreCase(GraphStorage.HEAP.toString()) == 0) {
+        graphStorage = GraphStorage.HEAP;
+      } else if (GRAPH_STORAGE.compareToIgnoreCase(GraphStorage.DIRECT.toString()) == 0) {
+        graphStorage = GraphStorage.DIRECT;
+      } else if (GRAPH_STORAGE.compareToIgnoreCase(GraphStorage.MAPPED.toString()) == 0) {
+        graphStorage = GraphStorage.MAPPED;
+      } else {
+        throw new IllegalArgumentException("Graph storage is not supported");
+      }
+
+      if (COOLING_SCHEDULE.compareToIgnoreCase(CoolingSchedule.AUTO.toString()) == 0) {
+        coolingSchedule = CoolingSchedule.AUTO;
+      } else if (COOLING_SCHEDULE.compareToIgnoreCase(CoolingSchedule.LINEAR.toString()) == 0) {
+        coolingSchedule = CoolingSchedule.LINEAR;
+      } else if (COOLING_SCHEDULE.compareToIgnoreCase(CoolingSchedule.EXPONENTIAL.toString()) == 0) {
+        coolingSchedule = CoolingSchedule.EXPONENTIAL;
+      } else if (COOLING_SCHEDULE.compareToIgnoreCase(CoolingSchedule.ADAPTIVE.toString()) == 0) {
+        coolingSchedule = CoolingSchedule.ADAPTIVE;
+      } else {
+        throw new IllegalArgumentException("Cooling schedule is not supported");
+      }
+
+      if (GRAPH_ORDER.compareToIgnoreCase(GraphOrder.NONE.toString()) == 0) {
+        graphOrder = GraphOrder.NONE;
+      } else if (GRAPH_ORDER.compareToIgnoreCase(GraphOrder.BFS.toString()) == 0) {
+        graphOrder = GraphOrder.BFS;
+      } else if (GRAPH_ORDER.compareToIgnoreCase(GraphOrder.RCM.toString()) == 0) {
+        graphOrder = GraphOrder.RCM;
+      } else if (GRAPH_ORDER.compareToIgnoreCase(GraphOrder.DEGREE.toString()) == 0) {
+        graphOrder = GraphOrder.DEGREE;
+      } else {
+        throw new IllegalArgumentException("Graph order is not supported");
+      }
+
     } catch (Exception e) {
       logger.error(e.getMessage());
       parser.printUsage(System.err);
@@ -130,16 +351,61 @@ public class CLI {
             .setSeed(SEED)
             .setTemperature(TEMPERATURE)
             .setGraphFilePath(GRAPH)
+            .setGraphCachePolicy(graphCachePolicy)
+            .setGraphStorage(graphStorage)
+            .setGraphFormat(graphFormat)
+            .setEdgeBufferSize(EDGE_BUFFER_SIZE)
             .setNodeSelectionPolicy(nodeSelectionPolicy)
             .setGraphInitialColorPolicy(graphInitColorSelectionPolicy)
             .setOutputDir(OUTPUT_DIR)
             .setAlpha(ALPHA)
+            .setEngineMode(engineMode)
+            .setThreads(THREADS)
+            .setSyncRounds(SYNC_ROUNDS)
+            .setVerifyInterval(VERIFY_INTERVAL)
+            .setActiveSet(ACTIVE_SET)
+            .setFullSweepInterval(FULL_SWEEP_INTERVAL)
+            .setEnsembleSize(ENSEMBLE_SIZE)
+            .setEnsembleThreads(ENSEMBLE_THREADS)
+            .setSweepFile(SWEEP_FILE)
+            .setSweepThreads(SWEEP_THREADS)
+            .setSweepCheckInterval(SWEEP_CHECK_INTERVAL)
+            .setSweepStopMargin(SWEEP_STOP_MARGIN)
+            .setConvergenceWindow(CONVERGENCE_WINDOW)
+            .setMinSwapRate(MIN_SWAP_RATE)
+            .setStopAtTempFloor(STOP_AT_TEMP_FLOOR)
+            .setCheckpointInterval(CHECKPOINT_INTERVAL)
+            .setResume(RESUME)
+            .setMultilevel(MULTILEVEL)
+            .setCoarsenTo(COARSEN_TO)
+            .setMaxLevels(MAX_LEVELS)
+            .setRefineRounds(REFINE_ROUNDS)
+            .setRefineTemp(REFINE_TEMPERATURE)
+            .setCompareFlat(COMPARE_FLAT)
+            .setUpdatesFile(UPDATES_FILE)
+            .setLocalRounds(LOCAL_ROUNDS)
+            .setLocalTemp(LOCAL_TEMPERATURE)
+            .setExportPartition(EXPORT_PARTITION)
+            .setExportInterval(EXPORT_INTERVAL)
+            .setPartitionFile(PARTITION_FILE)
+            .setMetrics(METRICS)
+            .setMetricsInterval(METRICS_INTERVAL)
+            .setShards(SHARDS)
+            .setCoolingSchedule(coolingSchedule)
+            .setReheatRate(REHEAT_RATE)
+            .setReheatFactor(REHEAT_FACTOR)
+            .setGraphOrder(graphOrder)
+            .setBatchSize(BATCH_SIZE)
+            .setResultFormat(resultFormat)
+            .setFlushInterval(FLUSH_INTERVAL)
+            .setAsyncResults(ASYNC_RESULTS)
             .setEnhanced(ENHANCED)
             .setTempEnh(TEMPERATURE_ENH)
             .setMinTempEnh(MIN_TEMPERATURE_ENH)
             .setAlphaEnh(ALPHA_ENH)
             .setIterEnh(ITER_ENH)
             .setRestart(RESTART)
-            .setRestartInterval(RESTART_INTERVAL);
+            .setRestartInterval(RESTART_INTERVAL)
+            .setMaxRestarts(MAX_RESTARTS);
   }
 }
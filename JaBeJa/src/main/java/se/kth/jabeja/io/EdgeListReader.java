@@ -0,0 +1,350 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Reads an edge list, one "source target" pair per line separated by tabs or spaces
+ * (SNAP, Pajek style .net files without sections). Lines starting with # or % are
+ * comments, extra columns such as weights are ignored.
+ * <p>
+ * The file is streamed twice. The first pass collects the distinct node ids, which
+ * are then numbered densely in ascending id order. The second pass turns every edge
+ * into the two directed pairs (u, v) and (v, u), packed into a long. Pairs are
+ * collected in a buffer of bounded size; a full buffer is sorted, deduplicated and
+ * spilled to a temporary file. The sorted runs are finally merged, dropping
+ * duplicates, straight into the CSR arrays. Only the node ids, one buffer and the
+ * resulting graph have to fit in memory, not the edge list. Self loops are dropped.
+ */
+class EdgeListReader {
+  final static Logger logger = Logger.getLogger(EdgeListReader.class);
+
+  private final int bufferSize;
+
+  /**
+   * @param bufferSize number of directed pairs kept in memory before spilling to disk
+   */
+  EdgeListReader(int bufferSize) {
+    this.bufferSize = Math.max(bufferSize, 2);
+  }
+
+  ParsedGraph parse(File file) throws IOException {
+    // pass 1: distinct node ids
+    final IntSet idSet = new IntSet();
+    long edges = scan(file, new EdgeVisitor() {
+      @Override
+      public void visit(int u, int v) {
+        idSet.add(u);
+        idSet.add(v);
+      }
+    });
+    final int[] ids = idSet.toSortedArray();
+
+    // pass 2: symmetrise, sort and spill
+    final List<File> runs = new ArrayList<File>();
+    final long[] buffer = new long[bufferSize];
+    final int[] used = new int[1];
+    try {
+      scan(file, new EdgeVisitor() {
+        @Override
+        public void visit(int u, int v) throws IOException {
+          if (u == v) {
+            return;
+          }
+          long a = Arrays.binarySearch(ids, u);
+          long b = Arrays.binarySearch(ids, v);
+          if (used[0] + 2 > buffer.length) {
+            runs.add(spill(buffer, used[0]));
+            used[0] = 0;
+          }
+          buffer[used[0]++] = (a << 32) | b;
+          buffer[used[0]++] = (b << 32) | a;
+        }
+      });
+      int last = sortUnique(buffer, used[0]);
+
+      ParsedGraph graph = merge(runs, buffer, last, ids.length);
+      graph.ids = ids;
+      graph.numNodes = ids.length;
+      graph.numEdges = graph.adjacency.length / 2;
+      logger.info(file + ": " + edges + " edge lines, " + runs.size() + " spilled runs, " +
+              graph.numNodes + " nodes, " + graph.numEdges + " undirected edges");
+      return graph;
+    } finally {
+      for (File run : runs) {
+        if (!run.delete()) {
+          run.deleteOnExit();
+        }
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------
+
+  private interface EdgeVisitor {
+    void visit(int u, int v) throws IOException;
+  }
+
+  /**
+   * Streams the edges of the file to the visitor
+   *
+   * @return number of edges
+   */
+  private static long scan(File file, EdgeVisitor visitor) throws IOException {
+    InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+    long edges = 0;
+    long line = 1;
+    try {
+      long[] values = new long[2];
+      int count = 0;
+      long value = -1;
+      boolean lineStart = true;
+      boolean comment = false;
+      int c;
+      while (true) {
+        c = in.read();
+        if (lineStart && c != ' ' && c != '\t') {
+          comment = c == '#' || c == '%';
+          lineStart = false;
+        }
+        if (c == '\n' || c == -1) {
+          if (value >= 0 && count < 2) {
+            values[count++] = value;
+          }
+          if (!comment && count == 2) {
+            visitor.visit(toId(values[0], line), toId(values[1], line));
+            edges++;
+          } else if (!comment && count == 1) {
+            throw new IOException("Line " + line + " has only one node id");
+          }
+          if (c == -1) {
+            break;
+          }
+          count = 0;
+          value = -1;
+          lineStart = true;
+          comment = false;
+          line++;
+        } else if (comment || count == 2) {
+          // skip the rest of the line
+        } else if (c >= '0' && c <= '9') {
+          value = (value < 0 ? 0 : value * 10) + (c - '0');
+          if (value > Integer.MAX_VALUE) {
+            throw new IOException("Node id too large on line " + line);
+          }
+        } else if (c == ' ' || c == '\t' || c == '\r' || c == ',') {
+          if (value >= 0) {
+            values[count++] = value;
+            value = -1;
+          }
+        } else {
+          throw new IOException("Unexpected character '" + (char) c + "' on line " + line);
+        }
+      }
+    } finally {
+      in.close();
+    }
+    return edges;
+  }
+
+  private static int toId(long value, long line) throws IOException {
+    if (value < 0) {
+      throw new IOException("Invalid node id on line " + line);
+    }
+    return (int) value;
+  }
+
+  /**
+   * Sorts the first n values and removes duplicates
+   *
+   * @return number of distinct values
+   */
+  private static int sortUnique(long[] values, int n) {
+    Arrays.sort(values, 0, n);
+    int unique = 0;
+    for (int i = 0; i < n; i++) {
+      if (unique == 0 || values[i] != values[unique - 1]) {
+        values[unique++] = values[i];
+      }
+    }
+    return unique;
+  }
+
+  private static File spill(long[] buffer, int n) throws IOException {
+    int unique = sortUnique(buffer, n);
+    File run = File.createTempFile("jabeja-edges", ".run");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16));
+    try {
+      out.writeInt(unique);
+      for (int i = 0; i < unique; i++) {
+        out.writeLong(buffer[i]);
+      }
+    } finally {
+      out.close();
+    }
+    return run;
+  }
+
+  /**
+   * Merges the spilled runs and the sorted buffer into CSR arrays
+   */
+  private static ParsedGraph merge(List<File> runs, long[] buffer, int bufferUsed, int numNodes) throws IOException {
+    PriorityQueue<Run> queue = new PriorityQueue<Run>(runs.size() + 1);
+    List<Run> open = new ArrayList<Run>(runs.size());
+    try {
+      for (File file : runs) {
+        Run run = new Run(file);
+        open.add(run);
+        if (run.advance()) {
+          queue.add(run);
+        }
+      }
+      Run memory = new Run(buffer, bufferUsed);
+      if (memory.advance()) {
+        queue.add(memory);
+      }
+
+      int[] offsets = new int[numNodes + 1];
+      int[] adjacency = new int[Math.max(bufferUsed, 16)];
+      int entries = 0;
+      long previous = -1;
+      while (!queue.isEmpty()) {
+        Run run = queue.poll();
+        long pair = run.current;
+        if (run.advance()) {
+          queue.add(run);
+        }
+        if (pair == previous) {
+          continue;
+        }
+        previous = pair;
+
+        if (entries == adjacency.length) {
+          adjacency = Arrays.copyOf(adjacency, adjacency.length * 2);
+        }
+        adjacency[entries++] = (int) pair;
+        offsets[(int) (pair >>> 32) + 1]++;
+      }
+      for (int i = 0; i < numNodes; i++) {
+        offsets[i + 1] += offsets[i];
+      }
+
+      ParsedGraph graph = new ParsedGraph();
+      graph.offsets = offsets;
+      graph.adjacency = Arrays.copyOf(adjacency, entries);
+      return graph;
+    } finally {
+      for (Run run : open) {
+        run.close();
+      }
+    }
+  }
+
+  /**
+   * Cursor over a sorted run, either spilled to a file or in memory
+   */
+  private static class Run implements Comparable<Run> {
+    private final DataInputStream in;
+    private final long[] values;
+    private int remaining;
+    private int position;
+    long current;
+
+    Run(File file) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+      this.values = null;
+      this.remaining = in.readInt();
+    }
+
+    Run(long[] values, int n) {
+      this.in = null;
+      this.values = values;
+      this.remaining = n;
+    }
+
+    boolean advance() throws IOException {
+      if (remaining == 0) {
+        return false;
+      }
+      remaining--;
+      current = in != null ? in.readLong() : values[position++];
+      return true;
+    }
+
+    void close() throws IOException {
+      if (in != null) {
+        in.close();
+      }
+    }
+
+    @Override
+    public int compareTo(Run other) {
+      return current < other.current ? -1 : current > other.current ? 1 : 0;
+    }
+  }
+
+  /**
+   * Open addressing set of non-negative ints. The slot of a value is the top log2(capacity)
+   * bits of its Fibonacci hash, which depend on all bits of the value, so strided ids do
+   * not end up in a few long probe chains.
+   */
+  private static class IntSet {
+    private static final int FREE = -1;
+    private int[] table = newTable(1 << 16);
+    private int shift = shiftFor(table.length);
+    private int size;
+
+    /**
+     * @return 32 - log2(capacity), capacity being a power of two
+     */
+    private static int shiftFor(int capacity) {
+      return Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    private static int[] newTable(int capacity) {
+      int[] table = new int[capacity];
+      Arrays.fill(table, FREE);
+      return table;
+    }
+
+    void add(int value) {
+      int mask = table.length - 1;
+      int i = (value * 0x9E3779B9) >>> shift;
+      while (table[i] != FREE) {
+        if (table[i] == value) {
+          return;
+        }
+        i = (i + 1) & mask;
+      }
+      table[i] = value;
+      if (++size * 2 > table.length) {
+        int[] old = table;
+        table = newTable(old.length * 2);
+        shift = shiftFor(table.length);
+        size = 0;
+        for (int v : old) {
+          if (v != FREE) {
+            add(v);
+          }
+        }
+      }
+    }
+
+    int[] toSortedArray() {
+      int[] values = new int[size];
+      int n = 0;
+      for (int v : table) {
+        if (v != FREE) {
+          values[n++] = v;
+        }
+      }
+      Arrays.sort(values);
+      return values;
+    }
+  }
+}
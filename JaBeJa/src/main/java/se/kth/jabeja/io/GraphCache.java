@@ -0,0 +1,269 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.GraphFormat;
+import se.kth.jabeja.graph.OffHeapInts;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Binary copy of a parsed graph file, stored as [graph file].jbin next to it.
+ * <p>
+ * Layout, little endian:
+ * <pre>
+ * int  magic, int version, int format of the graph file, 0 METIS or 1 EDGE_LIST
+ * int  nodes and edges from the header of the graph file
+ * int  number of nodes, int number of neighbour entries, int 1 if node ids are stored
+ * long length, long last modified time and long CRC32 of the graph file
+ * int[number of nodes + 1] offsets
+ * int[number of neighbour entries] adjacency
+ * int[number of nodes] node ids, only if stored, otherwise node i has the id i + 1
+ * </pre>
+ * The cache is up to date if it was parsed in the same format and length and modification
+ * time of the graph file match. If only the modification time differs, e.g. after a copy,
+ * the checksum decides.
+ */
+class GraphCache {
+  final static Logger logger = Logger.getLogger(GraphCache.class);
+
+  static final String EXTENSION = ".jbin";
+  private static final int MAGIC = 0x4A424A47; // JBJG
+  private static final int VERSION = 3;
+  private static final int HEADER_SIZE = 8 * 4 + 3 * 8;
+  private static final int CHUNK_INTS = 1 << 27; // a mapping holds at most 2 GB
+
+  private final File source;
+  private final File cache;
+  private final GraphFormat format;
+
+  /**
+   * @param format the format the graph file is parsed in, METIS or EDGE_LIST
+   */
+  GraphCache(File source, GraphFormat format) {
+    if (format == GraphFormat.AUTO) {
+      throw new IllegalArgumentException("The format of " + source + " has to be resolved");
+    }
+    this.source = source;
+    this.cache = new File(source.getPath() + EXTENSION);
+    this.format = format;
+  }
+
+  /**
+   * @return the cached graph, null if there is no cache or it is out of date
+   */
+  ParsedGraph load() throws IOException {
+    if (!cache.isFile()) {
+      return null;
+    }
+    RandomAccessFile raf = new RandomAccessFile(cache, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      Header header = readHeader(channel);
+      if (header == null) {
+        return null;
+      }
+      ParsedGraph result = new ParsedGraph();
+      result.numNodes = header.numNodes;
+      result.numEdges = header.numEdges;
+      result.offsets = new int[header.size + 1];
+      result.adjacency = new int[header.entries];
+      long position = HEADER_SIZE;
+      position = read(channel, position, result.offsets);
+      position = read(channel, position, result.adjacency);
+      if (header.hasIds) {
+        result.ids = new int[header.size];
+        read(channel, position, result.ids);
+      }
+      return result;
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Reads values.length ints starting at position, mapping at most 2 GB at a time
+   *
+   * @return the position after the last int
+   */
+  private static long read(FileChannel channel, long position, int[] values) throws IOException {
+    for (int from = 0; from < values.length; from += CHUNK_INTS) {
+      int count = Math.min(values.length - from, CHUNK_INTS);
+      MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * count);
+      IntBuffer ints = bytes.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+      ints.get(values, from, count);
+      position += 4L * count;
+    }
+    return position;
+  }
+
+  /**
+   * Maps the topology of the cached graph instead of reading it into the heap
+   *
+   * @return the mapped graph, null if there is no cache or it is out of date
+   */
+  MappedGraph map() throws IOException {
+    if (!cache.isFile()) {
+      return null;
+    }
+    RandomAccessFile raf = new RandomAccessFile(cache, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      Header header = readHeader(channel);
+      if (header == null) {
+        return null;
+      }
+      MappedGraph result = new MappedGraph();
+      result.numNodes = header.numNodes;
+      result.numEdges = header.numEdges;
+      long position = HEADER_SIZE;
+      result.offsets = OffHeapInts.map(channel, FileChannel.MapMode.READ_ONLY, position, header.size + 1);
+      position += 4L * (header.size + 1);
+      result.adjacency = OffHeapInts.map(channel, FileChannel.MapMode.READ_ONLY, position, header.entries);
+      position += 4L * header.entries;
+      if (header.hasIds) {
+        result.ids = OffHeapInts.map(channel, FileChannel.MapMode.READ_ONLY, position, header.size);
+      }
+      return result;
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * @return the header of the cache, null if it is out of date or not a valid cache
+   */
+  private Header readHeader(FileChannel channel) throws IOException {
+    if (channel.size() < HEADER_SIZE) {
+      return null;
+    }
+    ByteBuffer bytes = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    while (bytes.hasRemaining()) {
+      if (channel.read(bytes, bytes.position()) < 0) {
+        return null;
+      }
+    }
+    bytes.flip();
+    if (bytes.getInt() != MAGIC || bytes.getInt() != VERSION) {
+      logger.info("Ignoring " + cache + ", unknown format");
+      return null;
+    }
+    if (bytes.getInt() != formatCode()) {
+      logger.info("Ignoring " + cache + ", the graph was not parsed as " + format);
+      return null;
+    }
+
+    Header header = new Header();
+    header.numNodes = bytes.getInt();
+    header.numEdges = bytes.getInt();
+    header.size = bytes.getInt();
+    header.entries = bytes.getInt();
+    header.hasIds = bytes.getInt() == 1;
+    long length = bytes.getLong();
+    long lastModified = bytes.getLong();
+    long checksum = bytes.getLong();
+
+    if (length != source.length()) {
+      return null;
+    }
+    if (lastModified != source.lastModified() && checksum != checksum(source)) {
+      return null;
+    }
+    if (channel.size() != HEADER_SIZE + 4L * (header.size + 1) + 4L * header.entries
+            + (header.hasIds ? 4L * header.size : 0)) {
+      logger.info("Ignoring " + cache + ", truncated");
+      return null;
+    }
+    return header;
+  }
+
+  /**
+   * Writes the cache. The file is written under a temporary name and then renamed,
+   * so concurrent runs never see a partially written cache.
+   */
+  void store(ParsedGraph graph) throws IOException {
+    File tmp = File.createTempFile(cache.getName(), ".tmp", cache.getAbsoluteFile().getParentFile());
+    try {
+      FileOutputStream out = new FileOutputStream(tmp);
+      try {
+        FileChannel channel = out.getChannel();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(formatCode())
+                .putInt(graph.numNodes).putInt(graph.numEdges)
+                .putInt(graph.size()).putInt(graph.adjacency.length).putInt(graph.ids != null ? 1 : 0)
+                .putLong(source.length()).putLong(source.lastModified()).putLong(checksum(source));
+        write(channel, buffer, graph.offsets);
+        write(channel, buffer, graph.adjacency);
+        if (graph.ids != null) {
+          write(channel, buffer, graph.ids);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        channel.force(false);
+      } finally {
+        out.close();
+      }
+      if (!tmp.renameTo(cache)) {
+        // renameTo does not replace an existing file on every platform
+        if (!cache.delete() || !tmp.renameTo(cache)) {
+          throw new IOException("Unable to move " + tmp + " to " + cache);
+        }
+      }
+    } finally {
+      if (tmp.exists() && !tmp.delete()) {
+        tmp.deleteOnExit();
+      }
+    }
+  }
+
+  private static void write(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+    for (int value : values) {
+      if (buffer.remaining() < 4) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        buffer.clear();
+      }
+      buffer.putInt(value);
+    }
+  }
+
+  File getFile() {
+    return cache;
+  }
+
+  private int formatCode() {
+    return format == GraphFormat.EDGE_LIST ? 1 : 0;
+  }
+
+  private static long checksum(File file) throws IOException {
+    CRC32 crc = new CRC32();
+    FileInputStream in = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[1 << 16];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        crc.update(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    return crc.getValue();
+  }
+
+  private static class Header {
+    int numNodes;
+    int numEdges;
+    int size;
+    int entries;
+    boolean hasIds;
+  }
+}
@@ -1,12 +1,18 @@
 package se.kth.jabeja.io;
 
 import org.apache.log4j.Logger;
-import se.kth.jabeja.Node;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.OffHeapGraph;
+import se.kth.jabeja.graph.OffHeapInts;
 import se.kth.jabeja.rand.RandNoGenerator;
+import se.kth.jabeja.config.GraphCachePolicy;
+import se.kth.jabeja.config.GraphFormat;
 import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.config.GraphStorage;
 
-import java.io.*;
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -17,78 +23,234 @@ public class GraphReader {
 
   final static Logger logger = Logger.getLogger(GraphReader.class);
 
-  public static final String DELIMETER = " ";
-  public static final String EMPTY_STRING = "";
+  private final RandNoGenerator rand;
+  private final int threads;
+  private GraphCachePolicy cachePolicy = GraphCachePolicy.BYPASS;
+  private GraphFormat format = GraphFormat.AUTO;
+  private int edgeBufferSize = 1 << 23;
+
+  /**
+   * @param rand    used by the {@link GraphInitColorPolicy#RANDOM} color policy
+   * @param threads number of threads parsing the file
+   */
+  public GraphReader(RandNoGenerator rand, int threads) {
+    this.rand = rand;
+    this.threads = threads;
+  }
+
+  public GraphReader(RandNoGenerator rand) {
+    this(rand, 1);
+  }
+
+  public GraphReader() {
+    this(null);
+  }
+
+  /**
+   * @param cachePolicy how to use the binary cache of the graph file, BYPASS by default
+   */
+  public GraphReader setCachePolicy(GraphCachePolicy cachePolicy) {
+    this.cachePolicy = cachePolicy;
+    return this;
+  }
+
+  /**
+   * @param format format of the graph file, AUTO by default
+   */
+  public GraphReader setFormat(GraphFormat format) {
+    this.format = format;
+    return this;
+  }
+
+  /**
+   * @param edgeBufferSize directed edges an edge list reader keeps in memory before spilling to disk
+   */
+  public GraphReader setEdgeBufferSize(int edgeBufferSize) {
+    this.edgeBufferSize = edgeBufferSize;
+    return this;
+  }
 
   /**
    * read graph form a file
-   * The file format is discussed here
+   * The METIS file format is discussed here
    * http://chriswalshaw.co.uk/jostle/jostle-exe.pdf
+   * Edge lists are read by {@link EdgeListReader}
    *
    * @param graphFilePath
    * @return
    */
-  public HashMap<Integer, Node> readGraph(final String graphFilePath, final GraphInitColorPolicy colorPolicy, final int noOfPartitions) {
-    final HashMap<Integer, Node> nodes = new HashMap<Integer, Node>();
+  public CsrGraph readGraph(final String graphFilePath, final GraphInitColorPolicy colorPolicy, final int noOfPartitions) {
+    ParsedGraph parsed;
     try {
-      String strLine;
-      FileInputStream fis = new FileInputStream(new File(graphFilePath));
-      DataInputStream dis = new DataInputStream(fis);
-      BufferedReader br = new BufferedReader(new InputStreamReader(dis));
-
-      int numNodes = 0;
-      int numEdges = 0;
-
-      // first uncommented line contain information about
-      // number of nodes and number of edges
-      while ((strLine = br.readLine()) != null) {
-        if (strLine.startsWith("%") || strLine.startsWith("#"))
-          continue;
-
-        String[] parts = strLine.split(DELIMETER);
-        numNodes = Integer.parseInt(parts[0]);
-        numEdges = Integer.parseInt(parts[1]);
-        break;
-      }
+      parsed = parse(new File(graphFilePath));
+    } catch (IOException e) {
+      System.err.println("can not read from file " + graphFilePath + ": " + e.getMessage());
+      parsed = new ParsedGraph();
+      parsed.offsets = new int[1];
+      parsed.adjacency = new int[0];
+    }
 
-      logger.info(graphFilePath + ". Nodes: " + numNodes + ", Edges: " + numEdges);
+    logger.info(graphFilePath + ". Nodes: " + parsed.numNodes + ", Edges: " + parsed.numEdges);
 
-      int id = 0;
-      int partitionSize = numNodes / noOfPartitions;
+    int size = parsed.size();
+    int[] ids = new int[size];
+    for (int i = 0; i < size; i++) {
+      ids[i] = parsed.getId(i);
+    }
+    int[] colors = getInitialColors(size, parsed.numNodes, colorPolicy, noOfPartitions);
 
-      while ((strLine = br.readLine()) != null) {
+    CsrGraph graph = new CsrGraph(ids, parsed.offsets, parsed.adjacency, colors);
+    printColorDistribution(graph);
+    return graph;
+  }
 
-        id++;
-        ArrayList<Integer> neighbours = new ArrayList<Integer>();
 
-        if (strLine.startsWith("%") || strLine.startsWith("#")) {
-          continue;
-        }
+  /**
+   * Reads a graph like {@link #readGraph(String, GraphInitColorPolicy, int)} and keeps it
+   * in the given storage. The colors are the same for every storage.
+   * <p>
+   * MAPPED ignores the cache policy, except that REBUILD writes a new cache first.
+   */
+  public Graph readGraph(final String graphFilePath, final GraphInitColorPolicy colorPolicy, final int noOfPartitions,
+                         final GraphStorage storage) {
+    if (storage == GraphStorage.HEAP) {
+      return readGraph(graphFilePath, colorPolicy, noOfPartitions);
+    }
+    if (storage == GraphStorage.DIRECT) {
+      CsrGraph heap = readGraph(graphFilePath, colorPolicy, noOfPartitions);
+      int size = heap.size();
+      OffHeapInts ids = OffHeapInts.allocate(size);
+      OffHeapInts offsets = OffHeapInts.allocate(size + 1);
+      OffHeapInts colors = OffHeapInts.allocate(size);
+      for (int v = 0; v < size; v++) {
+        ids.set(v, heap.getId(v));
+        offsets.set(v + 1, heap.neighbourEnd(v));
+        colors.set(v, heap.getColor(v));
+      }
+      OffHeapInts adjacency = OffHeapInts.allocate(size == 0 ? 0 : heap.neighbourEnd(size - 1));
+      for (int i = 0; i < adjacency.length(); i++) {
+        adjacency.set(i, heap.neighbourAt(i));
+      }
+      return new OffHeapGraph(ids, offsets, adjacency, colors);
+    }
 
-        String[] parts = strLine.split(DELIMETER);
-        for (int i = 0; i < parts.length; i++) {
-          if (parts[i].equals(EMPTY_STRING)) {
-            continue;
-          }
-          neighbours.add(Integer.parseInt(parts[i]));
-        }
+    MappedGraph mapped;
+    try {
+      mapped = map(new File(graphFilePath));
+    } catch (IOException e) {
+      throw new IllegalStateException("can not map " + graphFilePath + ": " + e.getMessage(), e);
+    }
+    logger.info(graphFilePath + ". Nodes: " + mapped.numNodes + ", Edges: " + mapped.numEdges);
 
+    int size = mapped.size();
+    OffHeapInts colors = OffHeapInts.allocate(size);
+    for (int i = 0; i < size; i++) {
+      colors.set(i, getColor(mapped.numNodes, noOfPartitions, i + 1, colorPolicy));
+    }
+    OffHeapGraph graph = new OffHeapGraph(mapped.ids, mapped.offsets, mapped.adjacency, colors);
+    printColorDistribution(graph);
+    return graph;
+  }
 
-        int color = getColor(numNodes, noOfPartitions, id, colorPolicy);
+  /**
+   * Draws new initial colors for a graph that was already read, the same way
+   * {@link #readGraph} does with the random stream of this reader. Colors are drawn in
+   * the order of the graph file, so a renumbered graph gets the colors its nodes would
+   * have had before renumbering.
+   */
+  public int[] getInitialColors(CsrGraph graph, GraphInitColorPolicy colorPolicy, int noOfPartitions) {
+    int[] fileColors = getInitialColors(graph.size(), graph.size(), colorPolicy, noOfPartitions);
+    int[] colors = new int[graph.size()];
+    for (int v = 0; v < colors.length; v++) {
+      colors[v] = fileColors[graph.getFileIndex(v)];
+    }
+    return colors;
+  }
 
-        Node node = new Node(id, color);
-        node.setNeighbours(neighbours);
-        nodes.put(id, node);
+  /**
+   * Colors are assigned in index order, as if node i had the id i + 1
+   */
+  private int[] getInitialColors(int size, int numNodes, GraphInitColorPolicy colorPolicy, int noOfPartitions) {
+    int[] colors = new int[size];
+    for (int i = 0; i < size; i++) {
+      colors[i] = getColor(numNodes, noOfPartitions, i + 1, colorPolicy);
+    }
+    return colors;
+  }
+
+  /**
+   * Loads the graph from the binary cache or parses the graph file,
+   * according to the cache policy
+   */
+  private ParsedGraph parse(File graphFile) throws IOException {
+    if (cachePolicy == GraphCachePolicy.BYPASS) {
+      return parseText(graphFile);
+    }
+
+    GraphCache cache = new GraphCache(graphFile, resolveFormat(graphFile));
+    if (cachePolicy == GraphCachePolicy.USE) {
+      try {
+        ParsedGraph cached = cache.load();
+        if (cached != null) {
+          logger.info("Loaded graph from " + cache.getFile());
+          return cached;
+        }
+      } catch (IOException e) {
+        logger.warn("Unable to read " + cache.getFile() + ": " + e.getMessage());
       }
+    }
 
-      fis.close();
+    ParsedGraph parsed = parseText(graphFile);
+    try {
+      cache.store(parsed);
+      logger.info("Wrote graph cache " + cache.getFile());
     } catch (IOException e) {
-      System.err.println("can not read from file " + graphFilePath);
+      logger.warn("Unable to write " + cache.getFile() + ": " + e.getMessage());
     }
-    printColorDistribution(nodes);
-    return nodes;
+    return parsed;
   }
 
+  /**
+   * Maps the binary cache of the graph file, writing it first if it is missing,
+   * out of date or the cache policy is REBUILD
+   */
+  private MappedGraph map(File graphFile) throws IOException {
+    GraphCache cache = new GraphCache(graphFile, resolveFormat(graphFile));
+    if (cachePolicy != GraphCachePolicy.REBUILD) {
+      MappedGraph mapped = cache.map();
+      if (mapped != null) {
+        logger.info("Mapped graph from " + cache.getFile());
+        return mapped;
+      }
+    }
+    cache.store(parseText(graphFile));
+    logger.info("Wrote graph cache " + cache.getFile());
+    MappedGraph mapped = cache.map();
+    if (mapped == null) {
+      throw new IOException("Unable to map " + cache.getFile());
+    }
+    return mapped;
+  }
+
+  private ParsedGraph parseText(File graphFile) throws IOException {
+    if (resolveFormat(graphFile) == GraphFormat.EDGE_LIST) {
+      return new EdgeListReader(edgeBufferSize).parse(graphFile);
+    }
+    return new MetisParser(threads).parse(graphFile);
+  }
+
+  /**
+   * @return the format the graph file is parsed in, METIS or EDGE_LIST
+   */
+  private GraphFormat resolveFormat(File graphFile) {
+    if (format == GraphFormat.AUTO) {
+      String name = graphFile.getName().toLowerCase();
+      return name.endsWith(".net") || name.endsWith(".edges") || name.endsWith(".el") || name.endsWith(".tsv")
+              ? GraphFormat.EDGE_LIST
+              : GraphFormat.METIS;
+    }
+    return format;
+  }
 
   /**
    * Generate a color according to the policy.
@@ -111,7 +273,10 @@ public class GraphReader {
       }
       throw new IllegalStateException(colorPolicy + " Unable to determine color for id: " + id);
     } else if (colorPolicy == GraphInitColorPolicy.RANDOM) {
-      return RandNoGenerator.nextInt(numPartitions);
+      if (rand == null) {
+        throw new IllegalStateException(colorPolicy + " color policy needs a random generator");
+      }
+      return rand.nextInt(numPartitions);
 
     } else if (colorPolicy == GraphInitColorPolicy.ROUND_ROBIN) {
       return id % numPartitions;
@@ -125,10 +290,10 @@ public class GraphReader {
    *
    * @param graph input graph
    */
-  private void printColorDistribution(HashMap<Integer, Node> graph) {
+  private void printColorDistribution(Graph graph) {
     Map<Integer, Integer> distribution = new HashMap<Integer, Integer>();
-    for (int i : graph.keySet()) {
-      int color = graph.get(i).getColor();
+    for (int v = 0; v < graph.size(); v++) {
+      int color = graph.getColor(v);
       Integer count = distribution.get(color);
       if (count == null) {
         count = new Integer(0);
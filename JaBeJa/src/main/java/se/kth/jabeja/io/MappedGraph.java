@@ -0,0 +1,19 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.graph.OffHeapInts;
+
+/**
+ * Topology of a graph mapped from its binary cache, like {@link ParsedGraph}
+ * but outside of the heap
+ */
+class MappedGraph {
+  int numNodes;          // as declared by the file
+  int numEdges;          // as declared by the file
+  OffHeapInts ids;       // original id of every node, null if node i has the id i + 1
+  OffHeapInts offsets;
+  OffHeapInts adjacency;
+
+  int size() {
+    return offsets.length() - 1;
+  }
+}
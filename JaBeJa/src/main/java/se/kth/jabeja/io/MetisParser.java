@@ -0,0 +1,314 @@
+package se.kth.jabeja.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a METIS/Chaco graph file straight from a memory mapped file into CSR arrays.
+ * <p>
+ * The body of the file, everything after the header line, is split into line aligned
+ * chunks. A first pass counts the nodes and neighbour entries of every chunk, which
+ * gives each chunk its slice of the offset and adjacency arrays. A second pass decodes
+ * the integers from the bytes directly into those slices. Both passes run one chunk
+ * per thread. Chunks are mapped separately, so files larger than 2 GB can be read.
+ */
+class MetisParser {
+  private static final long MAX_CHUNK_SIZE = 1L << 30;
+
+  private final int threads;
+
+  MetisParser(int threads) {
+    this.threads = Math.max(threads, 1);
+  }
+
+  ParsedGraph parse(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long length = channel.size();
+      ParsedGraph result = new ParsedGraph();
+
+      long bodyStart = parseHeader(channel, length, result);
+      final List<Chunk> chunks = split(channel, bodyStart, length);
+
+      // pass 1: count nodes and entries of every chunk
+      run(chunks, new ChunkTask() {
+        @Override
+        public void run(Chunk chunk) {
+          chunk.count();
+        }
+      });
+
+      int nodes = 0;
+      long entries = 0;
+      for (Chunk chunk : chunks) {
+        chunk.firstNode = nodes;
+        chunk.firstEntry = (int) entries;
+        nodes += chunk.nodes;
+        entries += chunk.entries;
+      }
+      if (entries > Integer.MAX_VALUE) {
+        throw new IOException("Too many neighbour entries: " + entries);
+      }
+
+      // pass 2: fill the slices of the arrays
+      final int[] offsets = new int[nodes + 1];
+      final int[] adjacency = new int[(int) entries];
+      final int numNodes = nodes;
+      run(chunks, new ChunkTask() {
+        @Override
+        public void run(Chunk chunk) throws IOException {
+          chunk.fill(offsets, adjacency, numNodes);
+        }
+      });
+      offsets[nodes] = (int) entries;
+
+      result.offsets = offsets;
+      result.adjacency = adjacency;
+      return result;
+    } finally {
+      raf.close();
+    }
+  }
+
+  //-------------------------------------------------------------------
+
+  /**
+   * Reads the first uncommented line, which holds the number of nodes and edges.
+   *
+   * @return position of the first byte after the header line
+   */
+  private long parseHeader(FileChannel channel, long length, ParsedGraph result) throws IOException {
+    long position = 0;
+    while (position < length) {
+      long end = findLineEnd(channel, position, length);
+      int size = (int) Math.min(end - position, 4096);
+      ByteBuffer line = ByteBuffer.allocate(size);
+      channel.read(line, position);
+      byte first = size > 0 ? line.get(0) : (byte) ' ';
+      position = Math.min(end + 1, length);
+      if (first == '%' || first == '#') {
+        continue;
+      }
+
+      long[] values = new long[2];
+      int count = 0;
+      long value = -1;
+      for (int i = 0; i < size && count < 2; i++) {
+        byte b = line.get(i);
+        if (b >= '0' && b <= '9') {
+          value = (value < 0 ? 0 : value * 10) + (b - '0');
+        } else if (value >= 0) {
+          values[count++] = value;
+          value = -1;
+        }
+      }
+      if (value >= 0 && count < 2) {
+        values[count++] = value;
+      }
+      if (count < 2) {
+        throw new IOException("Invalid header line, expected number of nodes and edges");
+      }
+      result.numNodes = (int) values[0];
+      result.numEdges = (int) values[1];
+      return position;
+    }
+    throw new IOException("No header line found");
+  }
+
+  /**
+   * Splits [start, length) into chunks that each end right after a new line
+   */
+  private List<Chunk> split(FileChannel channel, long start, long length) throws IOException {
+    long bodyLength = length - start;
+    int count = (int) Math.max(threads, (bodyLength + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+    List<Chunk> chunks = new ArrayList<Chunk>(count);
+    long from = start;
+    for (int i = 1; i <= count && from < length; i++) {
+      long to;
+      if (i == count) {
+        to = length;
+      } else {
+        long target = Math.max(start + bodyLength * i / count, from);
+        to = Math.min(findLineEnd(channel, target, length) + 1, length);
+      }
+      if (to > from) {
+        chunks.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), from));
+        from = to;
+      }
+    }
+    return chunks;
+  }
+
+  /**
+   * @return position of the next new line at or after position, or length if there is none
+   */
+  private static long findLineEnd(FileChannel channel, long position, long length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    while (position < length) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return position + i;
+        }
+      }
+      position += read;
+    }
+    return length;
+  }
+
+  private interface ChunkTask {
+    void run(Chunk chunk) throws IOException;
+  }
+
+  private void run(List<Chunk> chunks, final ChunkTask task) throws IOException {
+    if (threads == 1 || chunks.size() == 1) {
+      for (Chunk chunk : chunks) {
+        task.run(chunk);
+      }
+      return;
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, chunks.size()));
+    try {
+      List<Future<Void>> results = new ArrayList<Future<Void>>(chunks.size());
+      for (final Chunk chunk : chunks) {
+        results.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            task.run(chunk);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> result : results) {
+        result.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while parsing", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  //-------------------------------------------------------------------
+
+  /**
+   * A line aligned part of the body
+   */
+  private static class Chunk {
+    private final MappedByteBuffer bytes;
+    private final long position; // in the file, for error messages
+    int nodes;
+    long entries;
+    int firstNode;
+    int firstEntry;
+
+    Chunk(MappedByteBuffer bytes, long position) {
+      this.bytes = bytes;
+      this.position = position;
+    }
+
+    void count() {
+      int limit = bytes.limit();
+      boolean lineStart = true;
+      boolean comment = false;
+      boolean inNumber = false;
+      for (int i = 0; i < limit; i++) {
+        byte b = bytes.get(i);
+        if (lineStart) {
+          comment = b == '%' || b == '#';
+          lineStart = false;
+        }
+        if (b == '\n') {
+          if (!comment) {
+            nodes++;
+          }
+          lineStart = true;
+          inNumber = false;
+        } else if (!comment) {
+          boolean digit = b >= '0' && b <= '9';
+          if (digit && !inNumber) {
+            entries++;
+          }
+          inNumber = digit;
+        }
+      }
+      // a last line without new line
+      if (!lineStart && !comment) {
+        nodes++;
+      }
+    }
+
+    void fill(int[] offsets, int[] adjacency, int numNodes) throws IOException {
+      int limit = bytes.limit();
+      int node = firstNode;
+      int entry = firstEntry;
+      boolean lineStart = true;
+      boolean comment = false;
+      int value = -1;
+      for (int i = 0; i < limit; i++) {
+        byte b = bytes.get(i);
+        if (lineStart) {
+          comment = b == '%' || b == '#';
+          lineStart = false;
+          if (!comment) {
+            offsets[node] = entry;
+          }
+        }
+        if (comment) {
+          if (b == '\n') {
+            lineStart = true;
+          }
+          continue;
+        }
+
+        if (b >= '0' && b <= '9') {
+          value = (value < 0 ? 0 : value * 10) + (b - '0');
+          continue;
+        }
+        if (value >= 0) {
+          adjacency[entry++] = toIndex(value, numNodes, i);
+          value = -1;
+        }
+        if (b == '\n') {
+          node++;
+          lineStart = true;
+        } else if (b != ' ' && b != '\t' && b != '\r') {
+          throw new IOException("Unexpected character '" + (char) b + "' at byte " + (position + i));
+        }
+      }
+      if (value >= 0) {
+        adjacency[entry++] = toIndex(value, numNodes, limit);
+      }
+    }
+
+    private int toIndex(int id, int numNodes, int i) throws IOException {
+      if (id < 1 || id > numNodes) {
+        throw new IOException("Neighbour id " + id + " out of range at byte " + (position + i));
+      }
+      return id - 1;
+    }
+  }
+}
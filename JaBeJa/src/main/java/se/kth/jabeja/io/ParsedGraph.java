@@ -0,0 +1,21 @@
+package se.kth.jabeja.io;
+
+/**
+ * Topology of a graph as read from a file. Node i has the neighbours
+ * adjacency[offsets[i] .. offsets[i + 1]), given as node indices.
+ */
+class ParsedGraph {
+  int numNodes;  // as declared by the file
+  int numEdges;  // as declared by the file
+  int[] ids;     // original id of every node, null if node i has the id i + 1
+  int[] offsets;
+  int[] adjacency;
+
+  int size() {
+    return offsets.length - 1;
+  }
+
+  int getId(int i) {
+    return ids == null ? i + 1 : ids[i];
+  }
+}
@@ -0,0 +1,85 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.graph.Graph;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Partition files in the METIS format, e.g. graphs/add20.graph.part.4: line i holds the
+ * color of the i-th node of the graph file, which is the node with index i unless the
+ * nodes were renumbered.
+ */
+public class PartitionFile {
+
+  /**
+   * Writes the current colors of the graph. The file is written under a temporary name and
+   * renamed at the end, so it is never left half written.
+   */
+  public static void write(Graph graph, String path) throws IOException {
+    File file = new File(path);
+    File tmp = new File(path + ".tmp");
+    int[] colors = new int[graph.size()];
+    for (int v = 0; v < graph.size(); v++) {
+      colors[graph.getFileIndex(v)] = graph.getColor(v);
+    }
+    Writer writer = new BufferedWriter(new FileWriter(tmp), 1 << 16);
+    try {
+      for (int color : colors) {
+        writer.write(Integer.toString(color));
+        writer.write('\n');
+      }
+    } finally {
+      writer.close();
+    }
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Unable to replace " + file);
+    }
+    if (!tmp.renameTo(file)) {
+      throw new IOException("Unable to rename " + tmp + " to " + file);
+    }
+  }
+
+  /**
+   * @param numNodes number of nodes of the graph, the file has to have one color for each
+   * @return the color of every node
+   */
+  public static int[] read(String path, int numNodes) throws IOException {
+    int[] colors = new int[numNodes];
+    int count = 0;
+    BufferedReader reader = new BufferedReader(new FileReader(path), 1 << 16);
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty()) {
+          continue;
+        }
+        if (count == numNodes) {
+          throw new IOException(path + ": more than " + numNodes + " colors");
+        }
+        int color;
+        try {
+          color = Integer.parseInt(line);
+        } catch (NumberFormatException e) {
+          throw new IOException(path + ":" + (count + 1) + ": invalid color " + line);
+        }
+        if (color < 0) {
+          throw new IOException(path + ":" + (count + 1) + ": invalid color " + line);
+        }
+        colors[count++] = color;
+      }
+    } finally {
+      reader.close();
+    }
+    if (count != numNodes) {
+      throw new IOException(path + ": " + count + " colors for " + numNodes + " nodes");
+    }
+    return colors;
+  }
+}
@@ -0,0 +1,392 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.ResultFormat;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the per round results of a run into one file that stays open for the whole run.
+ * Rows are buffered and flushed every flushInterval milliseconds, on {@link #close()} and
+ * when the JVM shuts down. In asynchronous mode the rows are handed to a background
+ * thread that does the formatting and the writing.
+ */
+public class ResultWriter implements Closeable {
+  final static Logger logger = Logger.getLogger(ResultWriter.class);
+
+  /**
+   * Comment of the result files that have a Migrations column
+   */
+  public static final String MIGRATION_NOTE = "Migration is number of nodes that have changed color.";
+
+  private static final String DELIMITER = "\t\t";
+  private static final String[] END_OF_STREAM = new String[0];
+  private static final String[] FLUSH = new String[0];
+
+  private final String fileName;
+  private final ResultFormat format;
+  private final String comment; // null if the file has none
+  private final long flushInterval;
+  private final String[] columns;
+  private final Writer output;
+  private final BlockingQueue<String[]> queue; // null if synchronous
+  private final Thread writerThread; // null if synchronous
+  private final Thread shutdownHook;
+  private long lastFlush;
+  private volatile IOException failure;
+  private boolean closed;
+  private final Object flushLock = new Object();
+  private long flushRequests; // guarded by this
+  private long flushesDone; // guarded by flushLock
+
+  /**
+   * Creates the file, overwriting an existing one, and writes the header.
+   *
+   * @param fileName      path of the result file
+   * @param format        format of the rows
+   * @param comment       written above the column names of a TEXT file, null for none
+   * @param flushInterval milliseconds between flushes, 0 flushes every row
+   * @param async         write from a background thread
+   * @param columns       names of the columns of every row
+   * @throws IOException Thrown if the file can not be created
+   */
+  public ResultWriter(String fileName, ResultFormat format, String comment, long flushInterval, boolean async,
+                      String... columns) throws IOException {
+    this(fileName, format, comment, flushInterval, async, -1, columns);
+  }
+
+  /**
+   * @param keepRows -1 creates a new file, otherwise the existing file is cut after
+   *                 its header and the first keepRows rows and new rows are appended
+   */
+  private ResultWriter(String fileName, ResultFormat format, String comment, long flushInterval, boolean async,
+                       long keepRows, String... columns) throws IOException {
+    this.fileName = fileName;
+    this.format = format;
+    this.comment = comment;
+    this.flushInterval = flushInterval;
+    this.columns = columns;
+    if (keepRows >= 0) {
+      truncateAfterLines(new File(fileName), countLines(header()) + keepRows);
+    }
+    this.output = new BufferedWriter(new FileWriter(fileName, keepRows >= 0), 1 << 16);
+    this.lastFlush = System.currentTimeMillis();
+
+    if (keepRows < 0) {
+      output.write(header());
+    }
+    if (async) {
+      this.queue = new LinkedBlockingQueue<String[]>();
+      this.writerThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          drain();
+        }
+      }, "result-writer");
+      writerThread.setDaemon(true);
+      writerThread.start();
+    } else {
+      this.queue = null;
+      this.writerThread = null;
+    }
+
+    this.shutdownHook = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          close();
+        } catch (IOException e) {
+          System.err.println("can not close result file " + ResultWriter.this.fileName);
+        }
+      }
+    });
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  /**
+   * Adds one row. The values have to be in the order of the columns.
+   *
+   * @throws IOException Thrown if writing a previous row failed
+   */
+  public synchronized void write(Object... values) throws IOException {
+    checkFailure();
+    if (closed) {
+      throw new IOException("Result file " + fileName + " is closed");
+    }
+    String[] row = new String[values.length];
+    for (int i = 0; i < values.length; i++) {
+      row[i] = String.valueOf(values[i]);
+    }
+    if (queue != null) {
+      queue.add(row);
+    } else {
+      writeRow(row);
+    }
+  }
+
+  /**
+   * Writes all the pending rows to the file. In asynchronous mode this waits
+   * until the background thread has written the rows added so far.
+   */
+  public void flush() throws IOException {
+    long request;
+    synchronized (this) {
+      checkFailure();
+      if (closed) {
+        return;
+      }
+      if (queue == null) {
+        output.flush();
+        lastFlush = System.currentTimeMillis();
+        return;
+      }
+      request = ++flushRequests;
+      queue.add(FLUSH);
+    }
+    synchronized (flushLock) {
+      while (flushesDone < request && failure == null && writerThread.isAlive()) {
+        try {
+          flushLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while flushing " + fileName, e);
+        }
+      }
+    }
+    checkFailure();
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (queue != null) {
+        queue.add(END_OF_STREAM);
+      }
+    }
+    if (writerThread != null) {
+      try {
+        writerThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    output.close();
+    if (Thread.currentThread() != shutdownHook) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        // already shutting down
+      }
+    }
+    checkFailure();
+  }
+
+  //----------------------------------------------------------------------------------
+
+  private void drain() {
+    try {
+      while (true) {
+        String[] row = queue.poll(Math.max(flushInterval, 1), TimeUnit.MILLISECONDS);
+        if (row == END_OF_STREAM) {
+          break;
+        }
+        if (row == FLUSH) {
+          output.flush();
+          lastFlush = System.currentTimeMillis();
+          synchronized (flushLock) {
+            flushesDone++;
+            flushLock.notifyAll();
+          }
+        } else if (row != null) {
+          writeRow(row);
+        } else {
+          output.flush();
+          lastFlush = System.currentTimeMillis();
+        }
+      }
+      output.flush();
+    } catch (IOException e) {
+      failure = e;
+      logger.error("can not write to result file " + fileName, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeRow(String[] row) throws IOException {
+    output.write(format(row));
+    long now = System.currentTimeMillis();
+    if (now - lastFlush >= flushInterval) {
+      output.flush();
+      lastFlush = now;
+    }
+  }
+
+  private static int countLines(String text) {
+    int lines = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        lines++;
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Cuts the file right after its first lines lines
+   */
+  private static void truncateAfterLines(File file, long lines) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      InputStream in = new BufferedInputStream(new FileInputStream(raf.getFD()), 1 << 16);
+      long position = 0;
+      long found = 0;
+      int c;
+      while (found < lines && (c = in.read()) != -1) {
+        position++;
+        if (c == '\n') {
+          found++;
+        }
+      }
+      if (found < lines) {
+        throw new IOException(file + " has only " + found + " lines, expected at least " + lines);
+      }
+      raf.setLength(position);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private String header() {
+    StringBuilder sb = new StringBuilder();
+    switch (format) {
+      case TEXT:
+        if (comment != null) {
+          sb.append("# ").append(comment).append("\n\n");
+        }
+        for (int i = 0; i < columns.length; i++) {
+          sb.append(i == 0 ? "" : DELIMITER).append(columns[i]);
+        }
+        return sb.append("\n").toString();
+      case CSV:
+        for (int i = 0; i < columns.length; i++) {
+          sb.append(i == 0 ? "" : ",").append(columns[i]);
+        }
+        return sb.append("\n").toString();
+      default:
+        return "";
+    }
+  }
+
+  private String format(String[] row) {
+    StringBuilder sb = new StringBuilder();
+    switch (format) {
+      case TEXT:
+        for (int i = 0; i < row.length; i++) {
+          sb.append(i == 0 ? "" : DELIMITER).append(row[i]);
+        }
+        break;
+      case CSV:
+        for (int i = 0; i < row.length; i++) {
+          sb.append(i == 0 ? "" : ",").append(row[i]);
+        }
+        break;
+      case JSON:
+        sb.append("{");
+        for (int i = 0; i < row.length; i++) {
+          sb.append(i == 0 ? "\"" : ", \"").append(jsonKey(columns[i])).append("\": ").append(jsonValue(row[i]));
+        }
+        sb.append("}");
+        break;
+    }
+    return sb.append("\n").toString();
+  }
+
+  /**
+   * "Edge-Cut" becomes "edgeCut"
+   */
+  private static String jsonKey(String column) {
+    StringBuilder sb = new StringBuilder();
+    boolean upper = false;
+    for (char c : column.toCharArray()) {
+      if (c == '-' || c == '_' || c == ' ') {
+        upper = true;
+      } else {
+        sb.append(sb.length() == 0 ? Character.toLowerCase(c) : upper ? Character.toUpperCase(c) : c);
+        upper = false;
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Numbers as they are, everything else as a string. NaN and the infinities are not
+   * valid JSON numbers and become null.
+   */
+  private static String jsonValue(String value) {
+    try {
+      double number = Double.parseDouble(value);
+      return Double.isNaN(number) || Double.isInfinite(number) ? "null" : value;
+    } catch (NumberFormatException e) {
+      return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+  }
+
+  /**
+   * Opens a writer for the main TEXT result file and, if requested, for a
+   * second machine readable file with the same base name.
+   *
+   * @param basePath path of the result file without extension
+   * @param comment  written above the column names of the TEXT file, null for none
+   */
+  public static List<ResultWriter> open(String basePath, ResultFormat extraFormat, String comment,
+                                        long flushInterval, boolean async, String... columns) throws IOException {
+    List<ResultWriter> writers = new ArrayList<ResultWriter>(2);
+    writers.add(new ResultWriter(basePath + ResultFormat.TEXT.getExtension(), ResultFormat.TEXT, comment,
+            flushInterval, async, columns));
+    if (extraFormat != ResultFormat.TEXT) {
+      writers.add(new ResultWriter(basePath + extraFormat.getExtension(), extraFormat, comment,
+              flushInterval, async, columns));
+    }
+    return writers;
+  }
+
+  /**
+   * Opens the result files written by {@link #open} again to continue a run. Each file is
+   * cut after its header and the first keepRows rows, new rows are appended.
+   *
+   * @param basePath path of the result file without extension
+   * @param comment  the comment the files were opened with
+   */
+  public static List<ResultWriter> reopen(String basePath, ResultFormat extraFormat, String comment,
+                                          long flushInterval, boolean async, long keepRows, String... columns)
+          throws IOException {
+    List<ResultWriter> writers = new ArrayList<ResultWriter>(2);
+    writers.add(new ResultWriter(basePath + ResultFormat.TEXT.getExtension(), ResultFormat.TEXT, comment,
+            flushInterval, async, keepRows, columns));
+    if (extraFormat != ResultFormat.TEXT) {
+      writers.add(new ResultWriter(basePath + extraFormat.getExtension(), extraFormat, comment,
+              flushInterval, async, keepRows, columns));
+    }
+    return writers;
+  }
+}
@@ -0,0 +1,81 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.graph.GraphUpdate;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Reads batches of graph changes from a file, one batch at a time.
+ * <p>
+ * Every line is one change, batches are separated by empty lines:
+ * <pre>
+ * # lines starting with # are comments
+ * +n 15607        add node 15607
+ * +e 15607 12     add an edge between nodes 15607 and 12
+ * -e 3 4          remove an edge between nodes 3 and 4
+ * -n 77           remove node 77 and its edges
+ * </pre>
+ */
+public class UpdateReader implements Closeable {
+  private final File file;
+  private final BufferedReader reader;
+  private int lineNumber;
+
+  public UpdateReader(File file) throws IOException {
+    this.file = file;
+    this.reader = new BufferedReader(new FileReader(file));
+  }
+
+  /**
+   * @return the next batch, null at the end of the file
+   */
+  public GraphUpdate next() throws IOException {
+    GraphUpdate update = new GraphUpdate();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      line = line.trim();
+      if (line.startsWith("#")) {
+        continue;
+      }
+      if (line.isEmpty()) {
+        if (update.isEmpty()) {
+          continue;
+        }
+        return update;
+      }
+      parse(line, update);
+    }
+    return update.isEmpty() ? null : update;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  //-------------------------------------------------------------------
+
+  private void parse(String line, GraphUpdate update) throws IOException {
+    String[] tokens = line.split("\\s+");
+    try {
+      if (tokens[0].equals("+n") && tokens.length == 2) {
+        update.addNode(Integer.parseInt(tokens[1]));
+      } else if (tokens[0].equals("-n") && tokens.length == 2) {
+        update.removeNode(Integer.parseInt(tokens[1]));
+      } else if (tokens[0].equals("+e") && tokens.length == 3) {
+        update.addEdge(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+      } else if (tokens[0].equals("-e") && tokens.length == 3) {
+        update.removeEdge(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+      } else {
+        throw new IOException(file + ":" + lineNumber + ": expected +n, -n, +e or -e, got " + line);
+      }
+    } catch (NumberFormatException e) {
+      throw new IOException(file + ":" + lineNumber + ": invalid node id in " + line);
+    }
+  }
+}
@@ -0,0 +1,204 @@
+package se.kth.jabeja.metrics;
+
+import org.apache.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Collects the {@link RoundCounters} of every round of a run, together with the wall time
+ * of the rounds and the heap and garbage collector statistics of the JVM.
+ * <p>
+ * The totals of the run can be read through JMX once the metrics are registered, the
+ * counters since the last row through {@link #intervalRow()}. The counters of the
+ * threads are only added at the end of each round, so JMX clients see the state after
+ * the last complete round.
+ */
+public class JabejaMetrics implements JabejaMetricsMBean {
+  final static Logger logger = Logger.getLogger(JabejaMetrics.class);
+
+  /**
+   * Columns of {@link #intervalRow()}
+   */
+  public static final String[] COLUMNS = {"Round", "Round-Millis", "Candidates", "Acceptance-Rate",
+          "Local-Partners", "Random-Partners", "Sample-Millis", "Score-Millis", "Swap-Millis",
+          "Heap-Used-MB", "GC-Count", "GC-Millis"};
+
+  private final RoundCounters total = new RoundCounters();
+  private final RoundCounters interval = new RoundCounters();
+  private int round;
+  private int edgeCut;
+  private long lastRoundNanos;
+  private long roundNanos;
+  private long intervalRoundNanos;
+  private ObjectName objectName; // null while not registered
+
+  /**
+   * Adds the counters of a finished round and clears them for the next one
+   *
+   * @param nanos wall time of the round
+   */
+  public synchronized void endRound(int round, int edgeCut, long nanos, RoundCounters... counters) {
+    for (RoundCounters c : counters) {
+      c.addTo(total);
+      c.addTo(interval);
+      c.clear();
+    }
+    this.round = round;
+    this.edgeCut = edgeCut;
+    this.lastRoundNanos = nanos;
+    this.roundNanos += nanos;
+    this.intervalRoundNanos += nanos;
+  }
+
+  /**
+   * @return the values of {@link #COLUMNS} since the last row, the counters start over
+   */
+  public synchronized Object[] intervalRow() {
+    Object[] row = {round, millis(intervalRoundNanos), interval.getCandidates(),
+            String.format("%.4f", interval.getAcceptanceRate()),
+            interval.getLocalPartners(), interval.getRandomPartners(),
+            millis(interval.getSampleNanos()), millis(interval.getScoreNanos()), millis(interval.getSwapNanos()),
+            getHeapUsedBytes() >> 20, getGcCount(), getGcMillis()};
+    interval.clear();
+    intervalRoundNanos = 0;
+    return row;
+  }
+
+  /**
+   * Registers the metrics with the platform MBean server as se.kth.jabeja:type=Jabeja,name=name,
+   * replacing metrics registered under the same name before
+   */
+  public void register(String name) {
+    try {
+      ObjectName on = new ObjectName("se.kth.jabeja:type=Jabeja,name=" + ObjectName.quote(name));
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(on)) {
+        server.unregisterMBean(on);
+      }
+      server.registerMBean(this, on);
+      objectName = on;
+    } catch (JMException e) {
+      logger.warn("Unable to register the metrics of " + name + ": " + e.getMessage());
+    }
+  }
+
+  public void unregister() {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    } catch (JMException e) {
+      logger.warn("Unable to unregister " + objectName + ": " + e.getMessage());
+    }
+    objectName = null;
+  }
+
+  @Override
+  public synchronized int getRound() {
+    return round;
+  }
+
+  @Override
+  public synchronized int getEdgeCut() {
+    return edgeCut;
+  }
+
+  @Override
+  public synchronized long getCandidates() {
+    return total.getCandidates();
+  }
+
+  @Override
+  public synchronized long getAccepted() {
+    return total.getAccepted();
+  }
+
+  @Override
+  public synchronized double getAcceptanceRate() {
+    return total.getAcceptanceRate();
+  }
+
+  @Override
+  public synchronized long getLocalPartners() {
+    return total.getLocalPartners();
+  }
+
+  @Override
+  public synchronized long getRandomPartners() {
+    return total.getRandomPartners();
+  }
+
+  @Override
+  public synchronized long getSwaps() {
+    return total.getSwaps();
+  }
+
+  @Override
+  public synchronized double getLastRoundMillis() {
+    return lastRoundNanos / 1e6;
+  }
+
+  @Override
+  public synchronized double getRoundMillis() {
+    return roundNanos / 1e6;
+  }
+
+  @Override
+  public synchronized double getSampleMillis() {
+    return total.getSampleNanos() / 1e6;
+  }
+
+  @Override
+  public synchronized double getScoreMillis() {
+    return total.getScoreNanos() / 1e6;
+  }
+
+  @Override
+  public synchronized double getSwapMillis() {
+    return total.getSwapNanos() / 1e6;
+  }
+
+  @Override
+  public long getHeapUsedBytes() {
+    return heapUsage().getUsed();
+  }
+
+  @Override
+  public long getHeapCommittedBytes() {
+    return heapUsage().getCommitted();
+  }
+
+  @Override
+  public long getGcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(gc.getCollectionCount(), 0);
+    }
+    return count;
+  }
+
+  @Override
+  public long getGcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(gc.getCollectionTime(), 0);
+    }
+    return millis;
+  }
+
+  //-------------------------------------------------------------------
+
+  private static MemoryUsage heapUsage() {
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.3f", nanos / 1e6);
+  }
+}
@@ -0,0 +1,42 @@
+package se.kth.jabeja.metrics;
+
+/**
+ * JMX view of a running {@link se.kth.jabeja.Jabeja}, see {@link JabejaMetrics}.
+ * Times are in milliseconds, totals are since the start of the run.
+ */
+public interface JabejaMetricsMBean {
+
+  int getRound();
+
+  int getEdgeCut();
+
+  long getCandidates();
+
+  long getAccepted();
+
+  double getAcceptanceRate();
+
+  long getLocalPartners();
+
+  long getRandomPartners();
+
+  long getSwaps();
+
+  double getLastRoundMillis();
+
+  double getRoundMillis();
+
+  double getSampleMillis();
+
+  double getScoreMillis();
+
+  double getSwapMillis();
+
+  long getHeapUsedBytes();
+
+  long getHeapCommittedBytes();
+
+  long getGcCount();
+
+  long getGcMillis();
+}
@@ -0,0 +1,122 @@
+package se.kth.jabeja.metrics;
+
+/**
+ * Counters and timers of the sample and swap steps of one thread. Every thread running
+ * sample and swap owns one instance, so counting needs no synchronization. Not thread safe.
+ */
+public class RoundCounters {
+  private long candidates;
+  private long accepted;
+  private long localPartners;
+  private long randomPartners;
+  private long swaps;
+  private long sampleNanos;
+  private long scoreNanos;
+  private long swapNanos;
+
+  /**
+   * @param nanos time spent drawing candidates
+   */
+  public void sampled(long nanos) {
+    sampleNanos += nanos;
+  }
+
+  /**
+   * @param count number of candidates whose swap benefit was computed
+   * @param nanos time spent computing it
+   */
+  public void scored(int count, long nanos) {
+    candidates += count;
+    scoreNanos += nanos;
+  }
+
+  /**
+   * One candidate passed the acceptance test
+   */
+  public void accepted() {
+    accepted++;
+  }
+
+  /**
+   * @param local true if the partner is one of the sampled neighbours, false if it is from the uniform sample
+   */
+  public void partnerFound(boolean local) {
+    if (local) {
+      localPartners++;
+    } else {
+      randomPartners++;
+    }
+  }
+
+  /**
+   * @param nanos time spent exchanging the colors and updating the counts
+   */
+  public void swapped(long nanos) {
+    swaps++;
+    swapNanos += nanos;
+  }
+
+  /**
+   * Adds all counters to total
+   */
+  public void addTo(RoundCounters total) {
+    total.candidates += candidates;
+    total.accepted += accepted;
+    total.localPartners += localPartners;
+    total.randomPartners += randomPartners;
+    total.swaps += swaps;
+    total.sampleNanos += sampleNanos;
+    total.scoreNanos += scoreNanos;
+    total.swapNanos += swapNanos;
+  }
+
+  public void clear() {
+    candidates = 0;
+    accepted = 0;
+    localPartners = 0;
+    randomPartners = 0;
+    swaps = 0;
+    sampleNanos = 0;
+    scoreNanos = 0;
+    swapNanos = 0;
+  }
+
+  public long getCandidates() {
+    return candidates;
+  }
+
+  public long getAccepted() {
+    return accepted;
+  }
+
+  /**
+   * @return accepted candidates per evaluated candidate, 0 if none was evaluated
+   */
+  public double getAcceptanceRate() {
+    return candidates > 0 ? (double) accepted / candidates : 0;
+  }
+
+  public long getLocalPartners() {
+    return localPartners;
+  }
+
+  public long getRandomPartners() {
+    return randomPartners;
+  }
+
+  public long getSwaps() {
+    return swaps;
+  }
+
+  public long getSampleNanos() {
+    return sampleNanos;
+  }
+
+  public long getScoreNanos() {
+    return scoreNanos;
+  }
+
+  public long getSwapNanos() {
+    return swapNanos;
+  }
+}
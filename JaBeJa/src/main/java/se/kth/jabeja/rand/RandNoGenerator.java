@@ -1,31 +1,96 @@
 package se.kth.jabeja.rand;
 
-import java.util.Random;
-
 /**
  * Created by salman on 10/24/16.
  */
+
+/**
+ * Seeded random number stream.
+ * <p>
+ * A stream produces exactly the same numbers as a {@link java.util.Random}
+ * created with the same seed, but it is not thread safe and therefore
+ * does not pay for the atomic update of the seed. Every thread has to use
+ * its own stream, which it gets from {@link #split(long)}.
+ */
 public class RandNoGenerator {
-    private static long seed = 0;
-    private static Random rand = null;
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+    private long state;
+
+    public RandNoGenerator(long seed) {
+        this.seed = seed;
+        this.state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * Derives an independent stream. The derived stream only depends on the
+     * seed of this stream and the stream id, not on how many numbers have
+     * been drawn from this stream so far.
+     *
+     * @param streamId e.g. the worker or the round the stream is used for
+     * @return a new stream
+     */
+    public RandNoGenerator split(long streamId) {
+        return new RandNoGenerator(mix64(seed + GOLDEN_GAMMA * (streamId + 1)));
+    }
+
+    public long getSeed() {
+        return seed;
+    }
 
-    private RandNoGenerator(){};
+    /**
+     * @return the internal state, e.g. to save it in a checkpoint
+     */
+    public long getState() {
+        return state;
+    }
 
-    public static void setSeed(long seed){
-        if(rand == null) {
-            rand = new Random(seed);
-        }else{
-            throw new UnsupportedOperationException("The seed can be set only once");
+    /**
+     * Continues the stream from a state returned by {@link #getState()}
+     * of a stream with the same seed
+     */
+    public void setState(long state) {
+        if ((state & ~MASK) != 0) {
+            throw new IllegalArgumentException("invalid state");
         }
+        this.state = state;
     }
 
-    public static int nextInt(int number){
-        return rand.nextInt(number);
+    public int nextInt(int number) {
+        if (number <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        if ((number & -number) == number) {
+            return (int) ((number * (long) next(31)) >> 31);
+        }
+        int bits, val;
+        do {
+            bits = next(31);
+            val = bits % number;
+        } while (bits - val + (number - 1) < 0);
+        return val;
     }
 
-    public static double nextDouble(double number){
-        return rand.nextDouble() * number;
+    public double nextDouble(double number) {
+        return ((((long) next(26)) << 27) + next(27)) * DOUBLE_UNIT * number;
     }
 
+    private int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
 
+    /**
+     * SplitMix64 finalizer
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 }
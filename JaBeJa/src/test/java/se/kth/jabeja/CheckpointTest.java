@@ -0,0 +1,209 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import se.kth.jabeja.graph.Graph;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CheckpointTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File outputDir;
+
+  @Before
+  public void setUp() {
+    Logger.getRootLogger().setLevel(Level.WARN);
+    outputDir = folder.getRoot();
+  }
+
+  @Test
+  public void loadsWhatWasSaved() throws IOException {
+    Checkpoint checkpoint = new Checkpoint(new File(outputDir, "run").getPath());
+    checkpoint.save(new Values(42, 7L, "seven"));
+
+    Values loaded = new Values(0, 0L, "");
+    assertTrue(checkpoint.load(loaded));
+    assertEquals(42, loaded.number);
+    assertEquals(7L, loaded.big);
+    assertEquals("seven", loaded.text);
+  }
+
+  @Test
+  public void missingCheckpointIsNotLoaded() throws IOException {
+    Values values = new Values(1, 2L, "three");
+    assertFalse(new Checkpoint(new File(outputDir, "run").getPath()).load(values));
+    assertEquals(1, values.number);
+  }
+
+  @Test
+  public void damagedCheckpointIsRejectedBeforeTheStateIsRead() throws IOException {
+    Checkpoint checkpoint = new Checkpoint(new File(outputDir, "run").getPath());
+    checkpoint.save(new Values(42, 7L, "seven"));
+    flipByte(checkpoint.getFile(), 12);
+
+    Values values = new Values(1, 2L, "three");
+    try {
+      checkpoint.load(values);
+      fail("loaded a damaged checkpoint");
+    } catch (IOException expected) {
+      // checksum mismatch
+    }
+    assertEquals(0, values.reads);
+  }
+
+  @Test
+  public void resumedRunContinuesFromTheCheckpoint() throws IOException {
+    Jabeja first = newJabeja();
+    first.runRounds(10);
+    int[] colors = colors(first.getGraph());
+    first.close();
+
+    Jabeja resumed = newJabeja();
+    assertTrue(resumed.resume());
+    assertEquals(10, resumed.getRound());
+    assertEquals(first.getEdgeCut(), resumed.getEdgeCut());
+    assertArrayEquals(colors, colors(resumed.getGraph()));
+    resumed.close();
+  }
+
+  @Test
+  public void damagedCheckpointLeavesTheRunUntouched() throws IOException {
+    Jabeja first = newJabeja();
+    first.runRounds(10);
+    first.close();
+    File checkpoint = new File(outputDir, new File(first.getResultBasePath()).getName() + Checkpoint.EXTENSION);
+    flipByte(checkpoint, (int) (checkpoint.length() / 2));
+
+    Jabeja fresh = newJabeja();
+    int[] colors = colors(fresh.getGraph());
+    int edgeCut = fresh.getEdgeCut();
+    try {
+      fresh.resume();
+      fail("resumed from a damaged checkpoint");
+    } catch (IOException expected) {
+      // checksum mismatch
+    }
+    assertEquals(0, fresh.getRound());
+    assertEquals(edgeCut, fresh.getEdgeCut());
+    assertArrayEquals(colors, colors(fresh.getGraph()));
+    fresh.close();
+  }
+
+  @Test
+  public void mismatchedCheckpointLeavesTheRunUntouched() throws IOException {
+    Jabeja first = newJabeja();
+    first.runRounds(10);
+    first.close();
+
+    Jabeja other = newJabeja(outputDir, "-enhanced");
+    int[] colors = colors(other.getGraph());
+    int edgeCut = other.getEdgeCut();
+    try {
+      other.resume();
+      fail("resumed from the checkpoint of another schedule");
+    } catch (IOException expected) {
+      // the checkpoint has the LINEAR schedule, -enhanced runs the EXPONENTIAL one
+    }
+    assertEquals(0, other.getRound());
+    assertEquals(edgeCut, other.getEdgeCut());
+    assertArrayEquals(colors, colors(other.getGraph()));
+    other.close();
+  }
+
+  @Test
+  public void resumedRunWritesTheResultsOfAnUninterruptedRun() throws IOException {
+    File uninterruptedDir = new File(outputDir, "uninterrupted");
+    Jabeja uninterrupted = newJabeja(uninterruptedDir);
+    uninterrupted.runRounds(50);
+    uninterrupted.close();
+
+    File resumedDir = new File(outputDir, "resumed");
+    Jabeja interrupted = newJabeja(resumedDir);
+    // the rows of rounds 11 and 12 are written after the last checkpoint
+    interrupted.runRounds(12);
+    interrupted.close();
+    Jabeja resumed = newJabeja(resumedDir);
+    assertTrue(resumed.resume());
+    assertEquals(10, resumed.getRound());
+    resumed.runRounds(50);
+    resumed.close();
+
+    String name = new File(uninterrupted.getResultBasePath()).getName() + ".txt";
+    assertArrayEquals(Files.readAllBytes(new File(uninterruptedDir, name).toPath()),
+            Files.readAllBytes(new File(resumedDir, name).toPath()));
+  }
+
+  private Jabeja newJabeja(String... args) throws IOException {
+    return newJabeja(outputDir, args);
+  }
+
+  private static Jabeja newJabeja(File dir, String... args) throws IOException {
+    return TestRuns.newJabeja(dir, "graphs/add20.graph",
+            TestRuns.concat(new String[]{"-rounds", "50", "-checkpointInterval", "5"}, args));
+  }
+
+  private static int[] colors(Graph graph) {
+    int[] colors = new int[graph.size()];
+    for (int v = 0; v < colors.length; v++) {
+      colors[v] = graph.getColor(v);
+    }
+    return colors;
+  }
+
+  private static void flipByte(File file, int position) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.seek(position);
+      int b = raf.read();
+      raf.seek(position);
+      raf.write(b ^ 0xFF);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static class Values implements Checkpoint.State {
+    int number;
+    long big;
+    String text;
+    int reads;
+
+    Values(int number, long big, String text) {
+      this.number = number;
+      this.big = big;
+      this.text = text;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+      out.writeInt(number);
+      out.writeLong(big);
+      out.writeUTF(text);
+    }
+
+    @Override
+    public void read(DataInput in) throws IOException {
+      reads++;
+      number = in.readInt();
+      big = in.readLong();
+      text = in.readUTF();
+    }
+  }
+}
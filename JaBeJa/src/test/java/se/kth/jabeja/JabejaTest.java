@@ -0,0 +1,154 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JabejaTest {
+  private static final int K = 4;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Jabeja jabeja;
+
+  @Before
+  public void setUp() {
+    Logger.getRootLogger().setLevel(Level.WARN);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (jabeja != null) {
+      jabeja.close();
+    }
+  }
+
+  @Test
+  public void swapDeltaMatchesRecount() throws IOException {
+    assertSwapsMatchRecount(randomGraph(1, false, false), "SCAN");
+  }
+
+  @Test
+  public void swapDeltaMatchesRecountWithSelfLoops() throws IOException {
+    CsrGraph graph = randomGraph(2, true, false);
+    assertTrue(graph.hasSelfLoops());
+    assertSwapsMatchRecount(graph, "SCAN");
+  }
+
+  @Test
+  public void swapDeltaMatchesRecountWithEdgeWeights() throws IOException {
+    CsrGraph graph = randomGraph(3, true, true);
+    assertTrue(graph.hasEdgeWeights());
+    assertSwapsMatchRecount(graph, "SCAN");
+  }
+
+  @Test
+  public void swapDeltaMatchesRecountWithHistogram() throws IOException {
+    assertSwapsMatchRecount(randomGraph(4, true, true), "HISTOGRAM");
+  }
+
+  /**
+   * Swaps random pairs, including neighbours and nodes of the same color, and compares
+   * the tracked edge cut and migrations with counts from scratch after every swap
+   */
+  private void assertSwapsMatchRecount(CsrGraph graph, String engine) throws IOException {
+    jabeja = new Jabeja(graph, TestRuns.config(folder.getRoot(), "graphs/add20.graph",
+            "-numPartitions", String.valueOf(K), "-engine", engine), new RandNoGenerator(0));
+    assertEquals(edgeCut(graph), jabeja.getEdgeCut());
+    assertEquals(0, jabeja.getMigrations());
+
+    RandNoGenerator rand = new RandNoGenerator(5);
+    for (int i = 0; i < 2000; i++) {
+      int p = rand.nextInt(graph.size());
+      int q = graph.getDegree(p) > 0 && rand.nextInt(2) == 0
+              ? graph.neighbourAt(graph.neighbourStart(p) + rand.nextInt(graph.getDegree(p)))
+              : rand.nextInt(graph.size());
+      jabeja.swapColors(p, q);
+      assertEquals("swap " + i, edgeCut(graph), jabeja.getEdgeCut());
+      assertEquals("swap " + i, migrations(graph), jabeja.getMigrations());
+    }
+  }
+
+  private static int edgeCut(Graph graph) {
+    int cut = 0;
+    for (int v = 0; v < graph.size(); v++) {
+      for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+        if (graph.getColor(v) != graph.getColor(graph.neighbourAt(i))) {
+          cut += graph.edgeWeightAt(i);
+        }
+      }
+    }
+    return cut / 2;
+  }
+
+  private static int migrations(Graph graph) {
+    int migrations = 0;
+    for (int v = 0; v < graph.size(); v++) {
+      if (graph.getColor(v) != graph.getInitColor(v)) {
+        migrations++;
+      }
+    }
+    return migrations;
+  }
+
+  /**
+   * @return a random graph of 60 nodes with parallel edges, optionally with self loops,
+   * which are listed once by their node, and with edge weights in [1, 3]
+   */
+  private static CsrGraph randomGraph(long seed, boolean selfLoops, boolean weighted) {
+    RandNoGenerator rand = new RandNoGenerator(seed);
+    int n = 60;
+    List<List<int[]>> lists = new ArrayList<List<int[]>>();
+    for (int v = 0; v < n; v++) {
+      lists.add(new ArrayList<int[]>());
+    }
+    for (int e = 0; e < 240; e++) {
+      int u = rand.nextInt(n);
+      int v = rand.nextInt(n);
+      int weight = weighted ? 1 + rand.nextInt(3) : 1;
+      if (u == v) {
+        if (selfLoops) {
+          lists.get(u).add(new int[]{u, weight});
+        }
+        continue;
+      }
+      lists.get(u).add(new int[]{v, weight});
+      lists.get(v).add(new int[]{u, weight});
+    }
+
+    int[] ids = new int[n];
+    int[] offsets = new int[n + 1];
+    int[] colors = new int[n];
+    for (int v = 0; v < n; v++) {
+      ids[v] = v + 1;
+      colors[v] = rand.nextInt(K);
+      offsets[v + 1] = offsets[v] + lists.get(v).size();
+    }
+    int[] adjacency = new int[offsets[n]];
+    int[] weights = weighted ? new int[offsets[n]] : null;
+    for (int v = 0; v < n; v++) {
+      for (int i = 0; i < lists.get(v).size(); i++) {
+        adjacency[offsets[v] + i] = lists.get(v).get(i)[0];
+        if (weights != null) {
+          weights[offsets[v] + i] = lists.get(v).get(i)[1];
+        }
+      }
+    }
+    return new CsrGraph(ids, offsets, adjacency, colors, null, weights);
+  }
+}
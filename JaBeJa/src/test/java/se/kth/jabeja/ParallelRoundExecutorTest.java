@@ -0,0 +1,91 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import se.kth.jabeja.graph.ColorHistogram;
+import se.kth.jabeja.graph.Graph;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelRoundExecutorTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Jabeja jabeja;
+
+  @Before
+  public void setUp() {
+    Logger.getRootLogger().setLevel(Level.WARN);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (jabeja != null) {
+      jabeja.close();
+    }
+  }
+
+  @Test
+  public void histogramMatchesColorsAfterLockedRounds() throws IOException {
+    jabeja = newJabeja("-threads", "2", "-engine", "HISTOGRAM");
+    for (int round = 0; round < 50; round++) {
+      jabeja.runRound();
+      assertHistogramMatchesColors(jabeja.getGraph(), jabeja.getHistogram(), round);
+    }
+  }
+
+  @Test
+  public void histogramMatchesColorsAfterSynchronousRounds() throws IOException {
+    jabeja = newJabeja("-threads", "2", "-engine", "HISTOGRAM", "-syncRounds");
+    for (int round = 0; round < 20; round++) {
+      jabeja.runRound();
+      assertHistogramMatchesColors(jabeja.getGraph(), jabeja.getHistogram(), round);
+    }
+  }
+
+  @Test
+  public void tracksCountsInLockedHistogramRounds() throws IOException {
+    jabeja = newJabeja("-threads", "4", "-engine", "HISTOGRAM");
+    Graph graph = jabeja.getGraph();
+    for (int round = 0; round < 30; round++) {
+      jabeja.runRound();
+      int edgeCut = 0;
+      int migrations = 0;
+      for (int v = 0; v < graph.size(); v++) {
+        for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+          if (graph.getColor(v) != graph.getColor(graph.neighbourAt(i))) {
+            edgeCut += graph.edgeWeightAt(i);
+          }
+        }
+        if (graph.getColor(v) != graph.getInitColor(v)) {
+          migrations++;
+        }
+      }
+      assertEquals("round " + round, edgeCut / 2, jabeja.getEdgeCut());
+      assertEquals("round " + round, migrations, jabeja.getMigrations());
+    }
+  }
+
+  private static void assertHistogramMatchesColors(Graph graph, ColorHistogram histogram, int round) {
+    for (int v = 0; v < graph.size(); v++) {
+      int[] expected = new int[4];
+      for (int i = graph.neighbourStart(v), end = graph.neighbourEnd(v); i < end; i++) {
+        expected[graph.getColor(graph.neighbourAt(i))]++;
+      }
+      for (int c = 0; c < expected.length; c++) {
+        assertEquals("round " + round + ", node " + v + ", color " + c, expected[c], histogram.getDegree(v, c));
+      }
+    }
+  }
+
+  private Jabeja newJabeja(String... args) throws IOException {
+    return TestRuns.newJabeja(folder.getRoot(), "graphs/twitter.graph", args);
+  }
+}
@@ -0,0 +1,41 @@
+package se.kth.jabeja;
+
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.io.CLI;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Runs of the tests, configured like on the command line, without the graph cache
+ */
+final class TestRuns {
+  private TestRuns() {
+  }
+
+  static Config config(File outputDir, String graph, String... args) throws IOException {
+    return new CLI().parseArgs(concat(
+            new String[]{"-graph", graph, "-graphCache", "BYPASS", "-outputDir", outputDir.getPath()}, args));
+  }
+
+  static String[] concat(String[] first, String[] second) {
+    String[] all = new String[first.length + second.length];
+    System.arraycopy(first, 0, all, 0, first.length);
+    System.arraycopy(second, 0, all, first.length, second.length);
+    return all;
+  }
+
+  /**
+   * @return a run on the graph file, colored like {@link Main} does
+   */
+  static Jabeja newJabeja(File outputDir, String graph, String... args) throws IOException {
+    Config config = config(outputDir, graph, args);
+    RandNoGenerator rand = new RandNoGenerator(config.getSeed());
+    CsrGraph csr = new GraphReader(rand).readGraph(config.getGraphFilePath(),
+            config.getGraphInitialColorPolicy(), config.getNumPartitions());
+    return new Jabeja(csr, config, rand);
+  }
+}
@@ -0,0 +1,21 @@
+package se.kth.jabeja.cost;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PowerCostTest {
+
+  @Test
+  public void tableMatchesMathPow() {
+    PowerCost cost = new PowerCost(2.5, 4);
+    for (int d = 0; d <= 8; d++) {
+      assertEquals(Math.pow(d, 2.5), cost.power(d), 1e-9);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void rejectsNegativeDegree() {
+    new PowerCost(2, 4).power(-1);
+  }
+}
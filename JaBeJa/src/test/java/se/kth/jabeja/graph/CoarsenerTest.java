@@ -0,0 +1,88 @@
+package se.kth.jabeja.graph;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.config.GraphOrder;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoarsenerTest {
+  private CsrGraph fine;
+
+  @Before
+  public void setUp() {
+    Logger.getRootLogger().setLevel(Level.WARN);
+    fine = new GraphReader(new RandNoGenerator(0)).readGraph("graphs/add20.graph",
+            GraphInitColorPolicy.ROUND_ROBIN, 4);
+  }
+
+  @Test
+  public void mergesParallelEdgesIntoWeights() {
+    CsrGraph coarse = new Coarsener(fine, new RandNoGenerator(1)).getCoarseGraph();
+    CsrGraph coarser = new Coarsener(coarse, new RandNoGenerator(2)).getCoarseGraph();
+
+    for (CsrGraph graph : new CsrGraph[]{coarse, coarser}) {
+      assertTrue(graph.size() < fine.size());
+      assertFalse(graph.hasParallelEdges());
+      assertFalse(graph.hasSelfLoops());
+      assertTrue(graph.hasEdgeWeights());
+    }
+  }
+
+  @Test
+  public void coarseEdgeCutIsEdgeCutOfProjection() {
+    Coarsener first = new Coarsener(fine, new RandNoGenerator(1));
+    Coarsener second = new Coarsener(first.getCoarseGraph(), new RandNoGenerator(2));
+    CsrGraph coarsest = second.getCoarseGraph();
+    RandNoGenerator rand = new RandNoGenerator(3);
+    int[] colors = new int[coarsest.size()];
+    for (int v = 0; v < colors.length; v++) {
+      colors[v] = rand.nextInt(4);
+    }
+    CsrGraph colored = coarsest.withColors(colors);
+
+    CsrGraph middle = first.getCoarseGraph().withColors(second.projectColors(colored));
+    CsrGraph projected = fine.withColors(first.projectColors(middle));
+
+    long cut = PartitionQuality.evaluate(colored, 4, 1).getEdgeCut();
+    assertEquals(cut, PartitionQuality.evaluate(middle, 4, 1).getEdgeCut());
+    assertEquals(cut, PartitionQuality.evaluate(projected, 4, 1).getEdgeCut());
+  }
+
+  @Test
+  public void permuteKeepsEdgeWeights() {
+    CsrGraph coarse = new Coarsener(fine, new RandNoGenerator(1)).getCoarseGraph();
+    int[] order = Reordering.order(coarse, GraphOrder.RCM);
+    CsrGraph permuted = coarse.permute(order);
+
+    for (int v = 0; v < permuted.size(); v++) {
+      int old = order[v];
+      long weights = 0;
+      for (int i = coarse.neighbourStart(old); i < coarse.neighbourEnd(old); i++) {
+        weights += coarse.edgeWeightAt(i);
+      }
+      long permutedWeights = 0;
+      for (int i = permuted.neighbourStart(v); i < permuted.neighbourEnd(v); i++) {
+        permutedWeights += permuted.edgeWeightAt(i);
+        assertEquals(weightOf(coarse, old, order[permuted.neighbourAt(i)]), permuted.edgeWeightAt(i));
+      }
+      assertEquals(weights, permutedWeights);
+    }
+  }
+
+  private static int weightOf(CsrGraph graph, int v, int w) {
+    for (int i = graph.neighbourStart(v); i < graph.neighbourEnd(v); i++) {
+      if (graph.neighbourAt(i) == w) {
+        return graph.edgeWeightAt(i);
+      }
+    }
+    return 0;
+  }
+}
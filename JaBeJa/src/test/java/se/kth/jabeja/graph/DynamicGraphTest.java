@@ -0,0 +1,128 @@
+package se.kth.jabeja.graph;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DynamicGraphTest {
+  private static final int K = 4;
+
+  private DynamicGraph graph;
+
+  @Before
+  public void setUp() {
+    Logger.getRootLogger().setLevel(Level.WARN);
+    CsrGraph csr = new GraphReader(new RandNoGenerator(0)).readGraph("graphs/add20.graph",
+            GraphInitColorPolicy.RANDOM, K);
+    graph = DynamicGraph.fromCsr(csr, K);
+  }
+
+  @Test
+  public void fromCsrCountsEdgeCut() {
+    assertCounts();
+    assertEquals(0, graph.getMigrations());
+  }
+
+  @Test
+  public void addAndRemoveKeepCounts() {
+    RandNoGenerator rand = new RandNoGenerator(1);
+    List<Integer> ids = new ArrayList<Integer>();
+    for (int v = 0; v < graph.size(); v++) {
+      ids.add(graph.getId(v));
+    }
+    int nextId = Integer.MAX_VALUE / 2;
+
+    for (int step = 0; step < 5000; step++) {
+      int op = rand.nextInt(6);
+      int a = ids.get(rand.nextInt(ids.size()));
+      int b = ids.get(rand.nextInt(ids.size()));
+      switch (op) {
+        case 0:
+          graph.addNode(nextId, rand.nextInt(K));
+          ids.add(nextId++);
+          break;
+        case 1:
+          graph.removeNode(a);
+          ids.remove(Integer.valueOf(a));
+          break;
+        case 2:
+          if (a != b) {
+            graph.addEdge(a, b);
+          }
+          break;
+        case 3:
+          int v = graph.indexOf(a);
+          if (graph.getDegree(v) > 0) {
+            int w = graph.getNeighbour(v, rand.nextInt(graph.getDegree(v)));
+            assertTrue(graph.removeEdge(a, graph.getId(w)));
+          }
+          break;
+        default:
+          graph.setColor(graph.indexOf(a), rand.nextInt(K));
+          break;
+      }
+      if (step % 100 == 0) {
+        assertCounts();
+      }
+    }
+    assertCounts();
+  }
+
+  @Test
+  public void removeEdgeOfParallelEdgesKeepsTheOther() {
+    int a = graph.getId(0);
+    int b = graph.getId(1);
+    graph.addEdge(a, b);
+    graph.addEdge(a, b);
+    int edges = graph.getNumEdges();
+
+    assertTrue(graph.removeEdge(a, b));
+    assertEquals(edges - 1, graph.getNumEdges());
+    assertCounts();
+    assertTrue(graph.removeEdge(a, b));
+    assertCounts();
+  }
+
+  @Test
+  public void removeMissingEdge() {
+    int id = 1000000;
+    graph.addNode(id, 0);
+    assertFalse(graph.removeEdge(id, graph.getId(0)));
+    assertCounts();
+  }
+
+  /**
+   * Compares the tracked counts with counts from scratch
+   */
+  private void assertCounts() {
+    assertEquals(graph.countEdgeCut(), graph.getEdgeCut());
+
+    int migrations = 0;
+    int entries = 0;
+    int[] sizes = new int[K];
+    for (int v = 0; v < graph.size(); v++) {
+      if (graph.getColor(v) != graph.getInitColor(v)) {
+        migrations++;
+      }
+      sizes[graph.getColor(v)]++;
+      entries += graph.getDegree(v);
+      assertEquals(v, graph.indexOf(graph.getId(v)));
+    }
+    assertEquals(migrations, graph.getMigrations());
+    assertEquals(entries, 2 * graph.getNumEdges());
+    for (int c = 0; c < K; c++) {
+      assertEquals(sizes[c], graph.getPartitionSize(c));
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package se.kth.jabeja.graph;
+
+import org.junit.Test;
+import se.kth.jabeja.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class NodeGraphAdapterTest {
+
+  @Test
+  public void fromNodesKeepsInitialColors() {
+    HashMap<Integer, Node> nodes = new HashMap<Integer, Node>();
+    nodes.put(7, node(7, 0, 1, 3));
+    nodes.put(3, node(3, 1, 0, 7, 9));
+    nodes.put(9, node(9, 1, 1, 3));
+
+    CsrGraph graph = NodeGraphAdapter.fromNodes(nodes);
+
+    assertEquals(3, graph.size());
+    for (int v = 0; v < graph.size(); v++) {
+      Node node = nodes.get(graph.getId(v));
+      assertEquals(node.getColor(), graph.getColor(v));
+      assertEquals(node.getInitColor(), graph.getInitColor(v));
+    }
+    graph.resetColors();
+    assertEquals(1, graph.getColor(0)); // node 3
+    assertEquals(0, graph.getColor(1)); // node 7
+  }
+
+  @Test
+  public void roundTripKeepsColorsAndNeighbours() {
+    HashMap<Integer, Node> nodes = new HashMap<Integer, Node>();
+    nodes.put(1, node(1, 0, 1, 2, 2));
+    nodes.put(2, node(2, 1, 1, 1, 1));
+
+    HashMap<Integer, Node> copy = NodeGraphAdapter.toNodes(NodeGraphAdapter.fromNodes(nodes));
+
+    for (Node node : nodes.values()) {
+      Node other = copy.get(node.getId());
+      assertEquals(node.getColor(), other.getColor());
+      assertEquals(node.getInitColor(), other.getInitColor());
+      assertEquals(node.getNeighbours(), other.getNeighbours());
+    }
+  }
+
+  /**
+   * @return a node with the initial color that was then recolored
+   */
+  private static Node node(int id, int initColor, int color, Integer... neighbours) {
+    Node node = new Node(id, initColor);
+    node.setColor(color);
+    node.setNeighbours(new ArrayList<Integer>(Arrays.asList(neighbours)));
+    return node;
+  }
+}
@@ -0,0 +1,112 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EdgeListReaderTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File dir;
+
+  @Before
+  public void setUp() {
+    Logger.getRootLogger().setLevel(Level.WARN);
+    dir = folder.getRoot();
+  }
+
+  @Test
+  public void readsEdgesIntoSymmetricCsr() throws IOException {
+    File file = write("edges.net", "# comment\n% other comment\n30 10\n10\t20 1.5\n20 30\n30 10\n20 20\n");
+    ParsedGraph graph = new EdgeListReader(1 << 10).parse(file);
+
+    assertArrayEquals(new int[]{10, 20, 30}, graph.ids);
+    assertEquals(3, graph.numNodes);
+    assertEquals(3, graph.numEdges);
+    assertArrayEquals(new int[]{0, 2, 4, 6}, graph.offsets);
+    assertArrayEquals(new int[]{1, 2, 0, 2, 0, 1}, graph.adjacency);
+  }
+
+  @Test
+  public void spilledRunsGiveTheSameGraph() throws IOException {
+    StringBuilder edges = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      edges.append(i).append(' ').append((i * 7 + 3) % 500).append('\n');
+      edges.append((i * 13 + 1) % 500).append(' ').append(i).append('\n');
+    }
+    File file = write("edges.net", edges.toString());
+
+    ParsedGraph inMemory = new EdgeListReader(1 << 16).parse(file);
+    ParsedGraph spilled = new EdgeListReader(64).parse(file);
+
+    assertArrayEquals(inMemory.ids, spilled.ids);
+    assertArrayEquals(inMemory.offsets, spilled.offsets);
+    assertArrayEquals(inMemory.adjacency, spilled.adjacency);
+  }
+
+  @Test
+  public void numbersStridedIdsDensely() throws IOException {
+    int nodes = 200000;
+    StringBuilder edges = new StringBuilder();
+    for (int i = 0; i + 1 < nodes; i++) {
+      edges.append(i << 10).append(' ').append((i + 1) << 10).append('\n');
+    }
+    File file = write("strided.net", edges.toString());
+    ParsedGraph graph = new EdgeListReader(1 << 20).parse(file);
+
+    assertEquals(nodes, graph.size());
+    for (int i = 0; i < nodes; i++) {
+      assertEquals(i << 10, graph.ids[i]);
+    }
+    assertEquals(nodes - 1, graph.numEdges);
+  }
+
+  @Test
+  public void edgeListOfMetisGraphHasTheSameEdges() throws IOException {
+    ParsedGraph metis = new MetisParser(2).parse(new File("graphs/add20.graph"));
+    StringBuilder edges = new StringBuilder();
+    for (int v = 0; v < metis.size(); v++) {
+      for (int i = metis.offsets[v]; i < metis.offsets[v + 1]; i++) {
+        if (v < metis.adjacency[i]) {
+          edges.append(metis.getId(v)).append('\t').append(metis.getId(metis.adjacency[i])).append('\n');
+        }
+      }
+    }
+    ParsedGraph list = new EdgeListReader(1 << 12).parse(write("add20.el", edges.toString()));
+
+    // add20 has no isolated nodes, so every node appears in the edge list
+    assertEquals(metis.size(), list.size());
+    for (int v = 0; v < list.size(); v++) {
+      assertEquals(v + 1, list.getId(v));
+      int[] expected = Arrays.copyOfRange(metis.adjacency, metis.offsets[v], metis.offsets[v + 1]);
+      Arrays.sort(expected);
+      assertArrayEquals("node " + (v + 1),
+              expected, Arrays.copyOfRange(list.adjacency, list.offsets[v], list.offsets[v + 1]));
+    }
+  }
+
+  private File write(String name, String content) throws IOException {
+    File file = new File(dir, name);
+    Writer writer = new BufferedWriter(new FileWriter(file));
+    try {
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+}
@@ -0,0 +1,115 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import se.kth.jabeja.config.GraphFormat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class GraphCacheTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File dir;
+  private File source;
+
+  @Before
+  public void setUp() throws IOException {
+    Logger.getRootLogger().setLevel(Level.WARN);
+    dir = folder.getRoot();
+    source = new File(dir, "square.graph");
+    write(source, "4 4\n2 4\n1 3\n2 4\n1 3\n");
+  }
+
+  @Test
+  public void loadsWhatWasStored() throws IOException {
+    ParsedGraph parsed = new MetisParser(1).parse(source);
+    new GraphCache(source, GraphFormat.METIS).store(parsed);
+
+    ParsedGraph loaded = new GraphCache(source, GraphFormat.METIS).load();
+    assertNotNull(loaded);
+    assertEquals(parsed.numNodes, loaded.numNodes);
+    assertEquals(parsed.numEdges, loaded.numEdges);
+    assertArrayEquals(parsed.offsets, loaded.offsets);
+    assertArrayEquals(parsed.adjacency, loaded.adjacency);
+    assertNull(loaded.ids);
+  }
+
+  @Test
+  public void mappedCacheMatchesStoredGraph() throws IOException {
+    ParsedGraph parsed = new MetisParser(1).parse(source);
+    new GraphCache(source, GraphFormat.METIS).store(parsed);
+
+    MappedGraph mapped = new GraphCache(source, GraphFormat.METIS).map();
+    assertNotNull(mapped);
+    for (int i = 0; i < parsed.adjacency.length; i++) {
+      assertEquals(parsed.adjacency[i], mapped.adjacency.get(i));
+    }
+  }
+
+  @Test
+  public void ignoresCacheOfChangedSource() throws IOException {
+    new GraphCache(source, GraphFormat.METIS).store(new MetisParser(1).parse(source));
+    write(source, "3 2\n2\n1 3\n2\n");
+
+    assertNull(new GraphCache(source, GraphFormat.METIS).load());
+  }
+
+  @Test
+  public void ignoresCacheOfCopiedSourceOnlyIfContentDiffers() throws IOException {
+    new GraphCache(source, GraphFormat.METIS).store(new MetisParser(1).parse(source));
+    source.setLastModified(source.lastModified() - 10000);
+
+    // same length and content, the checksum still matches
+    assertNotNull(new GraphCache(source, GraphFormat.METIS).load());
+
+    // same length, other content
+    write(source, "4 4\n2 3\n1 4\n1 4\n2 3\n");
+    source.setLastModified(source.lastModified() - 20000);
+    assertNull(new GraphCache(source, GraphFormat.METIS).load());
+  }
+
+  @Test
+  public void ignoresCacheOfOtherFormat() throws IOException {
+    new GraphCache(source, GraphFormat.METIS).store(new MetisParser(1).parse(source));
+
+    assertNull(new GraphCache(source, GraphFormat.EDGE_LIST).load());
+    assertNull(new GraphCache(source, GraphFormat.EDGE_LIST).map());
+  }
+
+  @Test
+  public void ignoresTruncatedCache() throws IOException {
+    GraphCache cache = new GraphCache(source, GraphFormat.METIS);
+    cache.store(new MetisParser(1).parse(source));
+    RandomAccessFile raf = new RandomAccessFile(cache.getFile(), "rw");
+    try {
+      raf.setLength(raf.length() - 4);
+    } finally {
+      raf.close();
+    }
+
+    assertNull(new GraphCache(source, GraphFormat.METIS).load());
+  }
+
+  private static void write(File file, String content) throws IOException {
+    Writer writer = new FileWriter(file);
+    try {
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+  }
+}
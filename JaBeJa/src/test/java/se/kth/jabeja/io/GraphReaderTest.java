@@ -0,0 +1,34 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.config.GraphOrder;
+import se.kth.jabeja.graph.CsrGraph;
+import se.kth.jabeja.graph.Reordering;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import static org.junit.Assert.assertEquals;
+
+public class GraphReaderTest {
+
+  @Before
+  public void setUp() {
+    Logger.getRootLogger().setLevel(Level.WARN);
+  }
+
+  @Test
+  public void initialColorsOfRenumberedGraphFollowTheFile() {
+    for (GraphInitColorPolicy policy : GraphInitColorPolicy.values()) {
+      CsrGraph read = new GraphReader(new RandNoGenerator(7)).readGraph("graphs/add20.graph", policy, 4);
+      CsrGraph renumbered = Reordering.reorder(read, GraphOrder.BFS);
+
+      int[] colors = new GraphReader(new RandNoGenerator(7)).getInitialColors(renumbered, policy, 4);
+      for (int v = 0; v < renumbered.size(); v++) {
+        assertEquals(policy + ", node " + renumbered.getId(v), renumbered.getColor(v), colors[v]);
+      }
+    }
+  }
+}
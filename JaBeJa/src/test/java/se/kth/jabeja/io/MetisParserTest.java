@@ -0,0 +1,174 @@
+package se.kth.jabeja.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MetisParserTest {
+  private static final int[] THREADS = {1, 2, 3, 16};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File dir;
+
+  @Before
+  public void setUp() {
+    dir = folder.getRoot();
+  }
+
+  @Test
+  public void matchesLineParserForAnyNumberOfThreads() throws IOException {
+    for (String name : new String[]{"graphs/add20.graph", "graphs/3elt.graph", "graphs/twitter.graph"}) {
+      File file = new File(name);
+      ParsedGraph expected = parseLines(file);
+      for (int threads : THREADS) {
+        assertSameGraph(name + ", " + threads + " threads", expected, new MetisParser(threads).parse(file));
+      }
+    }
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    ParsedGraph graph = new MetisParser(4).parse(new File("graphs/add20.graph"));
+    File file = new File(dir, "copy.graph");
+    write(file, graph);
+
+    for (int threads : THREADS) {
+      assertSameGraph(threads + " threads", graph, new MetisParser(threads).parse(file));
+    }
+  }
+
+  @Test
+  public void readsCommentsEmptyLinesAndCrLf() throws IOException {
+    File file = text("small.graph",
+            "% comment\r\n4 3\r\n2 3\r\n# comment\r\n1\r\n1  4 \r\n\r\n% comment at the end\r\n");
+    ParsedGraph expected = parseLines(file);
+    // the empty line is the last node, without neighbours
+    assertArrayEquals(new int[]{0, 2, 3, 5, 5}, expected.offsets);
+    for (int threads : THREADS) {
+      ParsedGraph graph = new MetisParser(threads).parse(file);
+      assertEquals(4, graph.numNodes);
+      assertEquals(3, graph.numEdges);
+      assertSameGraph(threads + " threads", expected, graph);
+    }
+  }
+
+  @Test
+  public void readsLastLineWithoutNewLine() throws IOException {
+    File file = text("last.graph", "3 2\n2\n1 3\n2");
+    for (int threads : THREADS) {
+      ParsedGraph graph = new MetisParser(threads).parse(file);
+      assertArrayEquals(new int[]{0, 1, 3, 4}, graph.offsets);
+      assertArrayEquals(new int[]{1, 0, 2, 1}, graph.adjacency);
+    }
+  }
+
+  @Test
+  public void rejectsNeighbourOutOfRange() throws IOException {
+    File file = text("range.graph", "2 1\n2\n3\n");
+    try {
+      new MetisParser(1).parse(file);
+      fail("Expected an IOException");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("Neighbour id 3 out of range"));
+    }
+  }
+
+  /**
+   * Reads the file line by line, the reference for the chunked parser
+   */
+  private static ParsedGraph parseLines(File file) throws IOException {
+    ParsedGraph graph = new ParsedGraph();
+    List<Integer> offsets = new ArrayList<Integer>();
+    List<Integer> adjacency = new ArrayList<Integer>();
+    boolean header = true;
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("%") || line.startsWith("#")) {
+          continue;
+        }
+        String[] tokens = line.trim().isEmpty() ? new String[0] : line.trim().split("\\s+");
+        if (header) {
+          graph.numNodes = Integer.parseInt(tokens[0]);
+          graph.numEdges = Integer.parseInt(tokens[1]);
+          header = false;
+          continue;
+        }
+        offsets.add(adjacency.size());
+        for (String token : tokens) {
+          adjacency.add(Integer.parseInt(token) - 1);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    offsets.add(adjacency.size());
+    graph.offsets = toArray(offsets);
+    graph.adjacency = toArray(adjacency);
+    return graph;
+  }
+
+  private static void write(File file, ParsedGraph graph) throws IOException {
+    Writer out = new BufferedWriter(new FileWriter(file));
+    try {
+      out.write(graph.numNodes + " " + graph.numEdges + "\n");
+      for (int v = 0; v < graph.size(); v++) {
+        StringBuilder line = new StringBuilder();
+        for (int i = graph.offsets[v]; i < graph.offsets[v + 1]; i++) {
+          if (line.length() > 0) {
+            line.append(' ');
+          }
+          line.append(graph.adjacency[i] + 1);
+        }
+        out.write(line.append('\n').toString());
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private File text(String name, String content) throws IOException {
+    File file = new File(dir, name);
+    Writer out = new FileWriter(file);
+    try {
+      out.write(content);
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  private static void assertSameGraph(String message, ParsedGraph expected, ParsedGraph actual) {
+    assertEquals(message, expected.numNodes, actual.numNodes);
+    assertEquals(message, expected.numEdges, actual.numEdges);
+    assertArrayEquals(message, expected.offsets, actual.offsets);
+    assertArrayEquals(message, expected.adjacency, actual.adjacency);
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+}
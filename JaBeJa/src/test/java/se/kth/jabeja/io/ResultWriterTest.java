@@ -0,0 +1,95 @@
+package se.kth.jabeja.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import se.kth.jabeja.config.ResultFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResultWriterTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File dir;
+
+  @Before
+  public void setUp() {
+    dir = folder.getRoot();
+  }
+
+  @Test
+  public void textHeaderHasTheCommentOfTheCaller() throws IOException {
+    String base = new File(dir, "results").getPath();
+    close(ResultWriter.open(base, ResultFormat.TEXT, ResultWriter.MIGRATION_NOTE, 0, false, "Round", "Migrations"));
+    assertEquals("# Migration is number of nodes that have changed color.\n\nRound\t\tMigrations\n",
+            read(base + ".txt"));
+
+    close(ResultWriter.open(base, ResultFormat.TEXT, null, 0, false, "Level", "Edge-Cut"));
+    assertEquals("Level\t\tEdge-Cut\n", read(base + ".txt"));
+  }
+
+  @Test
+  public void nonFiniteNumbersAreNullInJson() throws IOException {
+    String base = new File(dir, "results").getPath();
+    List<ResultWriter> writers = ResultWriter.open(base, ResultFormat.JSON, null, 0, false,
+            "Round", "Acceptance-Rate", "Speedup", "Stop-Reason");
+    for (ResultWriter writer : writers) {
+      writer.write(1, Double.NaN, Double.POSITIVE_INFINITY, "ROUNDS");
+      writer.write(2, 0.5, 1.5e3, "NaN reason");
+    }
+    close(writers);
+
+    assertEquals("{\"round\": 1, \"acceptanceRate\": null, \"speedup\": null, \"stopReason\": \"ROUNDS\"}\n" +
+                    "{\"round\": 2, \"acceptanceRate\": 0.5, \"speedup\": 1500.0, \"stopReason\": \"NaN reason\"}\n",
+            read(base + ResultFormat.JSON.getExtension()));
+  }
+
+  @Test
+  public void reopenKeepsHeaderAndFirstRows() throws IOException {
+    String base = new File(dir, "results").getPath();
+    List<ResultWriter> writers = ResultWriter.open(base, ResultFormat.TEXT, ResultWriter.MIGRATION_NOTE, 0, false,
+            "Round", "Migrations");
+    for (int round = 0; round < 5; round++) {
+      writers.get(0).write(round, round * 10);
+    }
+    close(writers);
+
+    writers = ResultWriter.reopen(base, ResultFormat.TEXT, ResultWriter.MIGRATION_NOTE, 0, false, 2,
+            "Round", "Migrations");
+    writers.get(0).write(2, 99);
+    close(writers);
+
+    assertEquals("# Migration is number of nodes that have changed color.\n\nRound\t\tMigrations\n" +
+            "0\t\t0\n1\t\t10\n2\t\t99\n", read(base + ".txt"));
+  }
+
+  private static void close(List<ResultWriter> writers) throws IOException {
+    for (ResultWriter writer : writers) {
+      writer.close();
+    }
+  }
+
+  private static String read(String path) throws IOException {
+    InputStream in = new FileInputStream(path);
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        bytes.write(buffer, 0, read);
+      }
+      return bytes.toString("UTF-8");
+    } finally {
+      in.close();
+    }
+  }
+}